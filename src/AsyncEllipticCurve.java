@@ -0,0 +1,230 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.crypto.AEADBadTagException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Asynchronous facade of {@link EllipticCurve} for event-loop based callers. Every operation runs on
+ * a dedicated pool of CPU workers and returns a {@link CompletableFuture} right away, so the caller
+ * never blocks on a scalar multiplication.
+ * <br>
+ * Waiting operations are held in a bounded queue. When it is full a new operation is not queued but
+ * fails at once with a {@link RejectedExecutionException}, so an overloaded service sheds load
+ * instead of piling up latency. The queue depth and rejections can be watched through the getters, and
+ * with {@code -Dcrypto.metrics=true} also as the JMX MBean {@code Cryptography:type=AsyncEllipticCurve,name=ec-N}.
+ * <br>
+ * Cryptograms and signatures are in the binary formats of {@link Cryptogram#toBytes()} and
+ * {@link Signature#toBytes()}.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class AsyncEllipticCurve implements AsyncEllipticCurveMBean, AutoCloseable {
+    /** Numbers the facades for their thread and MBean names. */
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    /** The elliptic curve cryptography doing the work. */
+    private final EllipticCurve ec;
+    /** The workers. */
+    private final ThreadPoolExecutor workers;
+    /** The capacity of the queue of waiting operations. */
+    private final int queueCapacity;
+    /** Operations rejected because the queue was full. */
+    private final LongAdder rejected = new LongAdder();
+    /** The MBean name, or null if it is not registered. */
+    private final ObjectName mbeanName;
+
+    /**
+     * Constructs the facade with one worker per tuned thread and a queue of four operations per worker.
+     */
+    public AsyncEllipticCurve() {
+        this(new EllipticCurve(), Tuning.current().getThreads(), 4 * Tuning.current().getThreads());
+    }
+
+    /**
+     * Constructs the facade.
+     *
+     * @param theEc            the elliptic curve cryptography doing the work
+     * @param theThreads       the number of workers
+     * @param theQueueCapacity the most operations that may wait for a worker
+     * @throws IllegalArgumentException if the number of workers or the capacity is not positive
+     */
+    public AsyncEllipticCurve(final EllipticCurve theEc, final int theThreads, final int theQueueCapacity) {
+        if (theThreads <= 0 || theQueueCapacity <= 0) {
+            throw new IllegalArgumentException("Threads and queue capacity must be positive.");
+        }
+        ec = theEc;
+        queueCapacity = theQueueCapacity;
+        final String name = "ec-" + INSTANCES.incrementAndGet();
+        final AtomicInteger threadCount = new AtomicInteger();
+        workers = new ThreadPoolExecutor(theThreads, theThreads, 0L, TimeUnit.MILLISECONDS,
+                                         new ArrayBlockingQueue<>(theQueueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, name + "-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        mbeanName = register(name);
+    }
+
+    /**
+     * Encrypts a message under a public key.
+     *
+     * @param theMessage   message to encrypt as byte array
+     * @param thePublicKey the public key V
+     * @return the future binary cryptogram Z || c || t
+     */
+    public CompletableFuture<byte[]> encrypt(final byte[] theMessage, final EllipticCurvePoint thePublicKey) {
+        return submit(() -> ec.encrypt(theMessage, thePublicKey).toBytes());
+    }
+
+    /**
+     * Decrypts a binary cryptogram with the private key of a passphrase.
+     *
+     * @param theCryptogram the binary cryptogram Z || c || t
+     * @param thePassphrase the passphrase from the key pair
+     * @return the future plaintext, completing exceptionally with an {@link AEADBadTagException} if t != t'
+     */
+    public CompletableFuture<byte[]> decrypt(final byte[] theCryptogram, final String thePassphrase) {
+        return submit(() -> {
+            byte[] dec = ec.decrypt(Cryptogram.fromBytes(theCryptogram), thePassphrase);
+            // the last byte just encodes whether t = t'
+            if (dec[dec.length - 1] != 1) {
+                throw new CompletionException(new AEADBadTagException("Tag mismatch."));
+            }
+            byte[] m = new byte[dec.length - 1];
+            System.arraycopy(dec, 0, m, 0, m.length);
+            return m;
+        });
+    }
+
+    /**
+     * Signs a message with the private key of a passphrase.
+     *
+     * @param theMessage    the message
+     * @param thePassphrase the passphrase from the key pair
+     * @return the future binary signature h || z
+     */
+    public CompletableFuture<byte[]> sign(final byte[] theMessage, final String thePassphrase) {
+        return submit(() -> ec.sign(theMessage, thePassphrase).toBytes());
+    }
+
+    /**
+     * Verifies a binary signature of a message under a public key.
+     *
+     * @param theMessage   the message
+     * @param theSignature the binary signature h || z
+     * @param thePublicKey the public key V
+     * @return the future result, true if the signature verifies
+     */
+    public CompletableFuture<Boolean> verify(final byte[] theMessage, final byte[] theSignature, final EllipticCurvePoint thePublicKey) {
+        return submit(() -> ec.verifySignature(theMessage, Signature.fromBytes(theSignature), thePublicKey));
+    }
+
+    /**
+     * Queues an operation, or fails it at once if the queue is full.
+     *
+     * @param theOperation the operation
+     * @param <T>          the type of the result
+     * @return the future result
+     */
+    private <T> CompletableFuture<T> submit(final Supplier<T> theOperation) {
+        try {
+            return CompletableFuture.supplyAsync(theOperation, workers);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Registers the MBean of this facade when metrics are on.
+     *
+     * @param theName the name of this facade
+     * @return the MBean name, or null if it is not registered
+     */
+    private ObjectName register(final String theName) {
+        if (!CryptoMetrics.ENABLED) {
+            return null;
+        }
+        try {
+            ObjectName name = new ObjectName("Cryptography:type=AsyncEllipticCurve,name=" + theName);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            System.err.println("Cannot register async metrics: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getThreads() {
+        return workers.getCorePoolSize();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueDepth() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getActiveCount() {
+        return workers.getActiveCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCompletedCount() {
+        return workers.getCompletedTaskCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops taking new operations. Queued operations still run to completion.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException e) {
+                // already gone
+            }
+        }
+    }
+}
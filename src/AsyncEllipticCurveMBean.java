@@ -0,0 +1,50 @@
+/**
+ * JMX management interface of an {@link AsyncEllipticCurve}, for shedding load before the queue
+ * of waiting operations turns into latency.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public interface AsyncEllipticCurveMBean {
+    /**
+     * Gets the worker threads.
+     *
+     * @return the number of worker threads
+     */
+    int getThreads();
+
+    /**
+     * Gets the operations waiting for a worker.
+     *
+     * @return the queue depth
+     */
+    int getQueueDepth();
+
+    /**
+     * Gets the most operations that may wait for a worker before new ones are rejected.
+     *
+     * @return the queue capacity
+     */
+    int getQueueCapacity();
+
+    /**
+     * Gets the operations running right now.
+     *
+     * @return the number of busy workers
+     */
+    int getActiveCount();
+
+    /**
+     * Gets the operations finished so far, successfully or not.
+     *
+     * @return the number of completed operations
+     */
+    long getCompletedCount();
+
+    /**
+     * Gets the operations rejected because the queue was full.
+     *
+     * @return the number of rejected operations
+     */
+    long getRejectedCount();
+}
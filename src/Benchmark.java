@@ -0,0 +1,215 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how fast the engines run on this host and picks the implementation choices for it.
+ * Every measurement is a short warm-up followed by as many operations as fit in a fixed time.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class Benchmark {
+    /** How long every measurement runs. */
+    private static final long MEASURE_NANOS = 300_000_000L;
+    /** How long the JIT gets before every measurement. */
+    private static final long WARM_UP_NANOS = 100_000_000L;
+    /** Message sizes of the KMAC measurements. */
+    private static final int[] KMAC_SIZES = {64, 1024, 64 * 1024, 1024 * 1024};
+    /** Cryptograms in one batch of the thread measurement. */
+    private static final int BATCH = 64;
+    /** Passphrase of the thread measurement. */
+    private static final String PASSPHRASE = "bench";
+
+    /** Where the results are reported. */
+    private final PrintStream out;
+
+    /**
+     * Constructs a benchmark.
+     *
+     * @param theOut where the results are reported
+     */
+    public Benchmark(final PrintStream theOut) {
+        out = theOut;
+    }
+
+    /**
+     * Runs all measurements and picks the fastest choices.
+     *
+     * @return the tuning for this host
+     */
+    public Tuning run() {
+        KeccakBackend backend = null;
+        double best = 0;
+        for (KeccakBackend candidate : KeccakBackends.available()) {
+            double rate = keccak(candidate);
+            out.printf("Keccak-f[1600], %s backend (%d lanes):  %,.0f permutations/s%n", candidate.name(), candidate.lanes(), rate);
+            if (rate > best) {
+                best = rate;
+                backend = candidate;
+            }
+        }
+        for (int size : KMAC_SIZES) {
+            out.printf("KMACXOF256 %7s: %8.2f MB/s%n", size(size), kmac(size));
+        }
+
+        int windowWidth = 0;
+        best = 0;
+        for (int w = 2; w <= 6; w++) {
+            double rate = variableBase(w);
+            out.printf("variable base, window %d:  %,8.1f multiplications/s%n", w, rate);
+            if (rate > best) {
+                best = rate;
+                windowWidth = w;
+            }
+        }
+        int generatorWindowWidth = 0;
+        best = 0;
+        for (int w = 2; w <= Tuning.MAX_WINDOW_WIDTH; w++) {
+            double rate = fixedBase(w);
+            out.printf("fixed base, window %d (%3d points):  %,8.1f multiplications/s%n", w, 1 << w, rate);
+            if (rate > best) {
+                best = rate;
+                generatorWindowWidth = w;
+            }
+        }
+
+        int threads = 1;
+        best = 0;
+        for (int n : threadCounts()) {
+            double rate = decryptions(n);
+            out.printf("batch decryption, %2d threads:  %,8.1f cryptograms/s%n", n, rate);
+            // another thread has to pay for itself, otherwise fewer threads leave room for other work
+            if (rate > best * 1.05) {
+                best = rate;
+                threads = n;
+            }
+        }
+        return new Tuning(windowWidth, generatorWindowWidth, backend.name(), threads);
+    }
+
+    /**
+     * Measures the Keccak permutation of one backend, on as many states as it permutes at once.
+     * KMAC below runs on the backend selected at startup.
+     *
+     * @param theBackend the backend
+     * @return permutations of single states per second
+     */
+    private static double keccak(final KeccakBackend theBackend) {
+        byte[][] states = new byte[theBackend.lanes()][200];
+        return rate(() -> theBackend.permuteAll(states, 24)) * states.length;
+    }
+
+    /**
+     * Measures KMACXOF256 over messages of one size.
+     *
+     * @param theSize the message size in bytes
+     * @return megabytes hashed per second
+     */
+    private static double kmac(final int theSize) {
+        byte[] key = new byte[64];
+        byte[] message = new byte[theSize];
+        return rate(() -> KMAC.KMACXOF256(key, message, 512, "T")) * theSize / 1e6;
+    }
+
+    /**
+     * Measures variable-base scalar multiplication with one window width.
+     *
+     * @param theWidth the window width
+     * @return multiplications per second, including building the table of the base
+     */
+    private static double variableBase(final int theWidth) {
+        EllipticCurvePoint base = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(EllipticCurve.randomScalar());
+        Scalar s = EllipticCurve.randomScalar();
+        return rate(() -> EllipticCurvePoint.multiplyByScalar(s, EllipticCurvePoint.windowTable(base, theWidth), theWidth));
+    }
+
+    /**
+     * Measures fixed-base scalar multiplication of G with one table size.
+     *
+     * @param theWidth the window width of the table
+     * @return multiplications per second
+     */
+    private static double fixedBase(final int theWidth) {
+        EllipticCurvePoint[] table = EllipticCurvePoint.windowTable(EllipticCurvePoint.getPublicGenerator(), theWidth);
+        Scalar s = EllipticCurve.randomScalar();
+        return rate(() -> EllipticCurvePoint.multiplyByScalar(s, table, theWidth));
+    }
+
+    /**
+     * Measures batch decryption with a number of threads.
+     *
+     * @param theThreads the number of threads
+     * @return cryptograms decrypted per second
+     */
+    private static double decryptions(final int theThreads) {
+        EllipticCurve ec = new EllipticCurve();
+        EllipticCurvePoint pk = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(EllipticCurve.privateKey(PASSPHRASE.getBytes()));
+        List<Cryptogram> batch = new ArrayList<>();
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(ec.encrypt(new byte[64], pk));
+        }
+        return BATCH * rate(() -> {
+            try {
+                ec.decryptAll(batch.iterator(), PASSPHRASE, theThreads, result -> { });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Gets the thread counts worth measuring: powers of two up to the number of CPUs, and the number of CPUs.
+     *
+     * @return the thread counts in increasing order
+     */
+    private static List<Integer> threadCounts() {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<>();
+        for (int n = 1; n < cpus; n *= 2) {
+            counts.add(n);
+        }
+        counts.add(cpus);
+        return counts;
+    }
+
+    /**
+     * Runs an operation repeatedly after a warm-up.
+     *
+     * @param theOperation the operation
+     * @return operations per second
+     */
+    private static double rate(final Runnable theOperation) {
+        repeat(theOperation, WARM_UP_NANOS);
+        long start = System.nanoTime();
+        long count = repeat(theOperation, MEASURE_NANOS);
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Runs an operation until a time has passed, at least once.
+     *
+     * @param theOperation the operation
+     * @param theNanos     the time
+     * @return how often the operation ran
+     */
+    private static long repeat(final Runnable theOperation, final long theNanos) {
+        long end = System.nanoTime() + theNanos;
+        long count = 0;
+        do {
+            theOperation.run();
+            count++;
+        } while (System.nanoTime() < end);
+        return count;
+    }
+
+    /**
+     * Formats a size in bytes.
+     *
+     * @param theBytes the size
+     * @return the size with a unit
+     */
+    private static String size(final int theBytes) {
+        return theBytes >= 1024 * 1024 ? theBytes / (1024 * 1024) + " MiB" : theBytes >= 1024 ? theBytes / 1024 + " KiB" : theBytes + " B";
+    }
+}
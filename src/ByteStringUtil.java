@@ -1,4 +1,5 @@
 import java.io.PrintStream;
+import java.math.BigInteger;
 
 public final class ByteStringUtil {
     /** Hexadecimal values in char array. */
@@ -50,4 +51,38 @@ public final class ByteStringUtil {
 
         return b;
     }
+
+    /**
+     * Writes a non-negative integer as a fixed-width little-endian unsigned byte string.
+     *
+     * @param theValue  the non-negative integer
+     * @param theOut    the output byte array
+     * @param theOffset where in the output the encoding starts
+     * @param theLength the width of the encoding in bytes
+     */
+    public static void toLittleEndian(final BigInteger theValue, final byte[] theOut, final int theOffset, final int theLength) {
+        if (theValue.signum() < 0 || theValue.bitLength() > 8 * theLength) {
+            throw new IllegalArgumentException("Value does not fit in " + theLength + " unsigned bytes.");
+        }
+        byte[] be = theValue.toByteArray(); // big-endian, possibly with a leading sign byte
+        for (int i = 0; i < theLength; i++) {
+            theOut[theOffset + i] = i < be.length ? be[be.length - 1 - i] : 0;
+        }
+    }
+
+    /**
+     * Reads a fixed-width little-endian unsigned byte string as a non-negative integer.
+     *
+     * @param theIn     the input byte array
+     * @param theOffset where in the input the encoding starts
+     * @param theLength the width of the encoding in bytes
+     * @return the non-negative integer
+     */
+    public static BigInteger fromLittleEndian(final byte[] theIn, final int theOffset, final int theLength) {
+        byte[] be = new byte[theLength];
+        for (int i = 0; i < theLength; i++) {
+            be[i] = theIn[theOffset + theLength - 1 - i];
+        }
+        return new BigInteger(1, be);
+    }
 }
@@ -1,3 +1,5 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 /**
@@ -9,32 +11,73 @@ import java.util.Arrays;
  * @version 1.0.0
  */
 public final class CSHAKE implements SHAKE {
-    /** Round Constant. Taken from Markku-Juhani Saarinen. (line 14 in sha.c) */
-    private static final long[] keccakf_rndc = {
-            0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
-            0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L,
-            0x8000000080008081L, 0x8000000000008009L, 0x000000000000008aL,
-            0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
-            0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L,
-            0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
-            0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L,
-            0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
-    };
-    /** Round Constant. Taken from Markku-Juhani Saarinen. (line 24 in sha.c)*/
-    private static final int[] keccakf_rotc = {
-            1,  3,  6,  10, 15, 21, 28, 36, 45, 55, 2,  14, 27, 41, 56, 8,  25, 43, 62, 18, 39, 61, 20, 44
-    };
-    /** Round Constant. Taken from Markku-Juhani Saarinen. (line 28 in sha.c)*/
-    private static final  int[] keccakf_piln = {
-            10, 7,  11, 17, 18, 3, 5,  16, 8,  21, 24, 4, 15, 23, 19, 13, 12, 2, 20, 14, 22, 9,  6,  1
-    };
     /** Keccak rounds. */
     private static final int KECCAKF_ROUNDS = 24;
+    /** Keccak-p rounds of TurboSHAKE. */
+    private static final int TURBOSHAKE_ROUNDS = 12;
+    /** right_encode(0), the padding of every KMACXOF256, shared so finishing allocates nothing. */
+    private static final byte[] RIGHT_ENCODE_ZERO = {0, 1};
     /** For kmac instead. */
     private boolean kmac;
     /** For cshake with extension. */
     private boolean ext;
 
+    /**
+     * Constructs a sponge, to be initialized with one of the init methods.
+     */
+    public CSHAKE() {
+    }
+
+    /**
+     * Constructs a copy of another sponge, so a copy of its context can be finished the same way.
+     *
+     * @param theOther the sponge to copy
+     */
+    public CSHAKE(final CSHAKE theOther) {
+        kmac = theOther.kmac;
+        ext = theOther.ext;
+    }
+
+    /**
+     * Overwrites the flags of this sponge with another one without allocating, to go with
+     * {@link SHA3Context#copyFrom(SHA3Context)} when rewinding to a snapshot.
+     *
+     * @param theOther the sponge to copy
+     */
+    public void copyFrom(final CSHAKE theOther) {
+        kmac = theOther.kmac;
+        ext = theOther.ext;
+    }
+
+    /**
+     * Tests if this sponge finishes as KMAC, with right_encode(L) before the padding.
+     *
+     * @return true after {@link #kinit256}
+     */
+    boolean isKmac() {
+        return kmac;
+    }
+
+    /**
+     * Tests if this sponge finishes as cSHAKE rather than SHAKE.
+     *
+     * @return true if a function name or customization was absorbed
+     */
+    boolean isExt() {
+        return ext;
+    }
+
+    /**
+     * Sets how this sponge finishes, when a context is restored from a checkpoint.
+     *
+     * @param theKmac whether it finishes as KMAC
+     * @param theExt  whether it finishes as cSHAKE
+     */
+    void setMode(final boolean theKmac, final boolean theExt) {
+        kmac = theKmac;
+        ext = theExt;
+    }
+
     /**
      * Initializes cShake256 using definition from NIST.
      *
@@ -73,6 +116,42 @@ public final class CSHAKE implements SHAKE {
         kmac = true;
     }
 
+    /**
+     * Initializes cSHAKE256 exactly as NIST SP 800-185 defines it. Unlike {@link #cShake256_init},
+     * the lengths in encode_string are big-endian for every size, so a function name or customization
+     * of 32 bytes or more also gives the NIST results. The strings are encoded as UTF-8.
+     *
+     * @param c the sha3 context
+     * @param N function name bit-string
+     * @param S customization bit-string
+     */
+    void cShake256_init_nist(SHA3Context c, String N, String S) {
+        sha3_init(c, 32);
+        if (N.length() != 0 || S.length() != 0) {
+            ext = true;
+            // padding <- bytepad(encode_string(N) || encode_string(S), 136)
+            byte[] padding = bytepad(ByteStringUtil.concat(encode_string_nist(N.getBytes(StandardCharsets.UTF_8)),
+                                                           encode_string_nist(S.getBytes(StandardCharsets.UTF_8))), 136);
+            sha3_update(c, padding, padding.length);
+        }
+    }
+
+    /**
+     * Initializes KMAC256 and KMACXOF256 exactly as NIST SP 800-185 defines them, with big-endian
+     * lengths for keys and customizations of every size. See {@link #cShake256_init_nist}.
+     *
+     * @param c the sha3 context
+     * @param K MAC key
+     * @param S customization bit-string
+     */
+    void kinit256_nist(SHA3Context c, byte[] K, String S) {
+        cShake256_init_nist(c, "KMAC", S);
+        // newX <- bytepad(encode_string(K), 136) || X || right_encode(L)
+        byte[] k_encoded = bytepad(encode_string_nist(K), 136);
+        sha3_update(c, k_encoded, k_encoded.length);
+        kmac = true;
+    }
+
     /**
      * Switch from absorbing to extensible squeezing.
      * Code is used from both the slides and Markku-Juhani Saarinen (line 168 in sha.c).
@@ -80,9 +159,20 @@ public final class CSHAKE implements SHAKE {
      * @param c the sha3 context
      */
     public void xof(SHA3Context c) {
+        xof(c, 0);
+    }
+
+    /**
+     * Switch from absorbing to squeezing, for KMAC256 with a fixed output length L.
+     * KMACXOF256 is the case L = 0.
+     *
+     * @param c the sha3 context
+     * @param L the requested output bit-length encoded into KMAC, or 0 for the XOF
+     */
+    public void xof(SHA3Context c, int L) {
         if (kmac) {
-            byte[] right_encode_0 = right_encode(0);
-            sha3_update(c, right_encode_0, right_encode_0.length); // mandatory padding as per the NIST specification
+            byte[] right_encode_L = L == 0 ? RIGHT_ENCODE_ZERO : right_encode(L);
+            sha3_update(c, right_encode_L, right_encode_L.length); // mandatory padding as per the NIST specification
         }
         // the (binary) cSHAKE suffix is 00, while the (binary) SHAKE suffix is 1111
         c.getB()[c.getPt()] ^= (byte) (ext ? 0x04 : 0x1F);
@@ -92,7 +182,7 @@ public final class CSHAKE implements SHAKE {
         c.getB()[c.getRsiz() - 1] ^= 0x80;
         // little-endian interpretation (left-to-right):
         // 1000 0000 = suffix 1, left-padded with 0*
-        keccak(c.getB());
+        keccak(c.getB(), c.getRounds());
         c.setPt(0);
     }
 
@@ -111,10 +201,53 @@ public final class CSHAKE implements SHAKE {
         c.setMdlen(mdlen);
         c.setRsiz(200 - 2 * mdlen);
         c.setPt(0);
+        c.setRounds(KECCAKF_ROUNDS);
         ext = false;
         kmac = false;
     }
 
+    /**
+     * Finalizes SHA3 by padding and switching to squeezing. The digest is the first md length bytes
+     * of {@link #shake_out}. Code is taken from Markku-Juhani Saarinen (line 138 in sha.c).
+     *
+     * @param c the sha3 context
+     */
+    public void sha3_final(SHA3Context c) {
+        // the SHA3 suffix is 01, padded with 1 and 0*: 0x06
+        c.getB()[c.getPt()] ^= 0x06;
+        c.getB()[c.getRsiz() - 1] ^= (byte) 0x80;
+        keccak(c.getB(), c.getRounds());
+        c.setPt(0);
+    }
+
+    // TurboSHAKE
+    /**
+     * Initializes TurboSHAKE, the sponge of Keccak-p[1600] reduced to its last 12 rounds (RFC 9861).
+     * TurboSHAKE128 has a md length of 16 and a rate of 168 bytes while TurboSHAKE256 has
+     * a md length of 32 and a rate of 136 bytes.
+     *
+     * @param c     the sha3 context
+     * @param mdlen the md length
+     */
+    public void turboShake_init(SHA3Context c, int mdlen) {
+        sha3_init(c, mdlen);
+        c.setRounds(TURBOSHAKE_ROUNDS);
+    }
+
+    /**
+     * Switch from absorbing to extensible squeezing for TurboSHAKE.
+     *
+     * @param c the sha3 context
+     * @param D the domain separation byte, from 0x01 to 0x7F
+     */
+    public void turboShake_xof(SHA3Context c, byte D) {
+        // M || D || 00* || 80, D has its highest bit clear so it never collides with the final 1 bit
+        c.getB()[c.getPt()] ^= D;
+        c.getB()[c.getRsiz() - 1] ^= (byte) 0x80;
+        keccak(c.getB(), c.getRounds());
+        c.setPt(0);
+    }
+
     /**
      * Updates the context with (internal state) with new input data. Repeated use of this method
      * concatenates by appending the new input data with the current context.
@@ -125,13 +258,26 @@ public final class CSHAKE implements SHAKE {
      * @param len  the length of the desired output
      */
     public void sha3_update(SHA3Context c, byte[] data, int len) {
+        sha3_update(c, data, 0, len);
+    }
+
+    /**
+     * Updates the context with a range of the input data, without copying the range out first.
+     *
+     * @param c    the sha3 context
+     * @param data the data
+     * @param off  the index of the first byte of the range
+     * @param len  the length of the range
+     */
+    public void sha3_update(SHA3Context c, byte[] data, int off, int len) {
+        CryptoMetrics.absorbed(len);
         int j = c.getPt();
 
-        for (int i = 0; i < len; i++) {
+        for (int i = off; i < off + len; i++) {
             c.getB()[j++] ^= data[i];
 
             if (j >= c.getRsiz()) {
-                keccak(c.getB());
+                keccak(c.getB(), c.getRounds());
                 j = 0;
             }
         }
@@ -146,10 +292,23 @@ public final class CSHAKE implements SHAKE {
      * @param len the length of the requested output
      */
     public void shake_out(SHA3Context c, byte[] out, int len) {
+        shake_out(c, out, 0, len);
+    }
+
+    /**
+     * Outputs the hash value into a range of an array.
+     *
+     * @param c   the sha3 context
+     * @param out the output array
+     * @param off the index of the first output byte
+     * @param len the length of the requested output
+     */
+    public void shake_out(SHA3Context c, byte[] out, int off, int len) {
+        CryptoMetrics.squeezed(len);
         int j = c.getPt();
-        for (int i = 0; i < len; i++) {
+        for (int i = off; i < off + len; i++) {
             if (j >= c.getRsiz()) {
-                keccak(c.getB());
+                keccak(c.getB(), c.getRounds());
                 j = 0;
             }
             out[i] = c.getB()[j++];
@@ -158,81 +317,181 @@ public final class CSHAKE implements SHAKE {
     }
 
     /**
-     * {@inheritDoc}
-     * <br>
-     * Code is taken directly from Markku-Juhani Saarinen 's C code and translated to Java (line 11 in sha.c).
+     * Squeezes output and XORs it into a range, out = in XOR output. The ranges may be the same
+     * array at the same offset, so a keystream can encrypt in place without a keystream buffer.
+     *
+     * @param c      the sha3 context
+     * @param in     the input array
+     * @param inOff  the index of the first input byte
+     * @param out    the output array
+     * @param outOff the index of the first output byte
+     * @param len    the length of the ranges
      */
-    @Override
-    public void keccak(byte[] b) {
-        int i, j, r;
-        long t;
-        long[] st = new long[25];
-        long[] bc = new long[5];
-
-        // endianess conversion. this is redundant on little-endian targets
-        for (i = 0, j = 0; i < 25; i++, j += 8) {
-            st[i] = (((long)b[j    ] & 0xFFL)      ) | (((long)b[j + 1] & 0xFFL) <<  8) |
-                    (((long)b[j + 2] & 0xFFL) << 16) | (((long)b[j + 3] & 0xFFL) << 24) |
-                    (((long)b[j + 4] & 0xFFL) << 32) | (((long)b[j + 5] & 0xFFL) << 40) |
-                    (((long)b[j + 6] & 0xFFL) << 48) | (((long)b[j + 7] & 0xFFL) << 56);
+    public void shake_xor(SHA3Context c, byte[] in, int inOff, byte[] out, int outOff, int len) {
+        CryptoMetrics.squeezed(len);
+        int j = c.getPt();
+        for (int i = 0; i < len; i++) {
+            if (j >= c.getRsiz()) {
+                keccak(c.getB(), c.getRounds());
+                j = 0;
+            }
+            out[outOff + i] = (byte) (in[inOff + i] ^ c.getB()[j++]);
         }
+        c.setPt(j);
+    }
 
-        for (r = 0; r < KECCAKF_ROUNDS; r++) {
-
-            // Theta
-            for (i = 0; i < 5; i++)
-                bc[i] = st[i] ^ st[i + 5] ^ st[i + 10] ^ st[i + 15] ^ st[i + 20];
-
-            for (i = 0; i < 5; i++) {
-                t = bc[(i + 4) % 5] ^ ROTL64(bc[(i + 1) % 5], 1);
-                for (j = 0; j < 25; j += 5)
-                    st[j + i] ^= t;
+    /**
+     * Squeezes output and compares it with an expected range in constant time, e.g. to check a tag
+     * without squeezing it into a buffer first.
+     *
+     * @param c        the sha3 context
+     * @param expected the array holding the expected output
+     * @param off      the index of the first expected byte
+     * @param len      the length of the expected output
+     * @return true if the output equals the expected range
+     */
+    public boolean shake_verify(SHA3Context c, byte[] expected, int off, int len) {
+        CryptoMetrics.squeezed(len);
+        int diff = 0;
+        int j = c.getPt();
+        for (int i = off; i < off + len; i++) {
+            if (j >= c.getRsiz()) {
+                keccak(c.getB(), c.getRounds());
+                j = 0;
             }
+            diff |= expected[i] ^ c.getB()[j++];
+        }
+        c.setPt(j);
+        return diff == 0;
+    }
 
-            // Rho Pi
-            t = st[1];
-            for (i = 0; i < 24; i++) {
-                j = keccakf_piln[i];
-                bc[0] = st[j];
-                st[j] = ROTL64(t, keccakf_rotc[i]);
-                t = bc[0];
+    /**
+     * Updates the context with a range of a buffer at absolute indices, leaving its position alone.
+     * Buffers backed by an array are absorbed straight from the array.
+     *
+     * @param c     the sha3 context
+     * @param data  the buffer
+     * @param index the index of the first byte of the range
+     * @param len   the length of the range
+     */
+    public void sha3_update(SHA3Context c, ByteBuffer data, int index, int len) {
+        if (data.hasArray()) {
+            sha3_update(c, data.array(), data.arrayOffset() + index, len);
+            return;
+        }
+        CryptoMetrics.absorbed(len);
+        int j = c.getPt();
+        for (int i = index; i < index + len; i++) {
+            c.getB()[j++] ^= data.get(i);
+            if (j >= c.getRsiz()) {
+                keccak(c.getB(), c.getRounds());
+                j = 0;
             }
+        }
+        c.setPt(j);
+    }
 
-            //  Chi
-            for (j = 0; j < 25; j += 5) {
-                for (i = 0; i < 5; i++)
-                    bc[i] = st[j + i];
-                for (i = 0; i < 5; i++)
-                    st[j + i] ^= (~bc[(i + 1) % 5]) & bc[(i + 2) % 5];
+    /**
+     * Outputs the hash value into a range of a buffer at absolute indices, leaving its position alone.
+     *
+     * @param c     the sha3 context
+     * @param out   the output buffer
+     * @param index the index of the first output byte
+     * @param len   the length of the requested output
+     */
+    public void shake_out(SHA3Context c, ByteBuffer out, int index, int len) {
+        if (out.hasArray()) {
+            shake_out(c, out.array(), out.arrayOffset() + index, len);
+            return;
+        }
+        CryptoMetrics.squeezed(len);
+        int j = c.getPt();
+        for (int i = index; i < index + len; i++) {
+            if (j >= c.getRsiz()) {
+                keccak(c.getB(), c.getRounds());
+                j = 0;
             }
+            out.put(i, c.getB()[j++]);
+        }
+        c.setPt(j);
+    }
 
-            //  Iota
-            st[0] ^= keccakf_rndc[r];
+    /**
+     * Squeezes output and XORs it into a range of a buffer at absolute indices, out = in XOR output.
+     * The ranges may be the same memory, so a keystream can encrypt a buffer in place.
+     *
+     * @param c        the sha3 context
+     * @param in       the input buffer
+     * @param inIndex  the index of the first input byte
+     * @param out      the output buffer
+     * @param outIndex the index of the first output byte
+     * @param len      the length of the ranges
+     */
+    public void shake_xor(SHA3Context c, ByteBuffer in, int inIndex, ByteBuffer out, int outIndex, int len) {
+        if (in.hasArray() && out.hasArray()) {
+            shake_xor(c, in.array(), in.arrayOffset() + inIndex, out.array(), out.arrayOffset() + outIndex, len);
+            return;
+        }
+        CryptoMetrics.squeezed(len);
+        int j = c.getPt();
+        for (int i = 0; i < len; i++) {
+            if (j >= c.getRsiz()) {
+                keccak(c.getB(), c.getRounds());
+                j = 0;
+            }
+            out.put(outIndex + i, (byte) (in.get(inIndex + i) ^ c.getB()[j++]));
         }
+        c.setPt(j);
+    }
 
-        // endianess conversion. this is redundant on little-endian targets
-        for (i = 0, j = 0; i < 25; i++, j += 8) {
-            t = st[i];
-            b[j    ] = (byte)((t      ) & 0xFF);
-            b[j + 1] = (byte)((t >>  8) & 0xFF);
-            b[j + 2] = (byte)((t >> 16) & 0xFF);
-            b[j + 3] = (byte)((t >> 24) & 0xFF);
-            b[j + 4] = (byte)((t >> 32) & 0xFF);
-            b[j + 5] = (byte)((t >> 40) & 0xFF);
-            b[j + 6] = (byte)((t >> 48) & 0xFF);
-            b[j + 7] = (byte)((t >> 56) & 0xFF);
+    /**
+     * Squeezes output and compares it with an expected range of a buffer in constant time.
+     *
+     * @param c        the sha3 context
+     * @param expected the buffer holding the expected output
+     * @param index    the index of the first expected byte
+     * @param len      the length of the expected output
+     * @return true if the output equals the expected range
+     */
+    public boolean shake_verify(SHA3Context c, ByteBuffer expected, int index, int len) {
+        if (expected.hasArray()) {
+            return shake_verify(c, expected.array(), expected.arrayOffset() + index, len);
         }
+        CryptoMetrics.squeezed(len);
+        int diff = 0;
+        int j = c.getPt();
+        for (int i = index; i < index + len; i++) {
+            if (j >= c.getRsiz()) {
+                keccak(c.getB(), c.getRounds());
+                j = 0;
+            }
+            diff |= expected.get(i) ^ c.getB()[j++];
+        }
+        c.setPt(j);
+        return diff == 0;
     }
 
     /**
-     * Used for the keccak algorithm. Markku-Juhani Saarinen (line 15 in sha.h).
+     * {@inheritDoc}
+     * <br>
+     * Runs on the Keccak backend selected at startup, see {@link KeccakBackends}.
+     */
+    @Override
+    public void keccak(byte[] b) {
+        keccak(b, KECCAKF_ROUNDS);
+    }
+
+    /**
+     * Keccak-p[1600, n_r] permutation, the last n_r rounds of Keccak-f[1600]. With 24 rounds it is
+     * Keccak-f[1600] itself, with 12 rounds it is the permutation of TurboSHAKE and KangarooTwelve.
+     * Runs on the Keccak backend selected at startup.
      *
-     * @param x the x
-     * @param y the y
-     * @return the rot
+     * @param b      the state
+     * @param rounds the number of rounds n_r, from 1 to 24
      */
-    private long ROTL64(long x, int y) {
-        return ((x << y) | (x >>> (64 - y)));
+    public void keccak(byte[] b, int rounds) {
+        CryptoMetrics.permutation();
+        KeccakBackends.current().permute(b, rounds);
     }
 
     // override methods for byte padding
@@ -302,17 +561,45 @@ public final class CSHAKE implements SHAKE {
         return x_encoded;
     }
 
+    /**
+     * Encodes a byte array with its bit-length in big-endian left_encode, as NIST SP 800-185 requires.
+     *
+     * @param s byte array
+     * @return left_encode(len(s)) || s
+     */
+    byte[] encode_string_nist(byte[] s) {
+        return ByteStringUtil.concat(left_encode_nist((long) s.length << 3), s);
+    }
+
+    /**
+     * Encodes x in big-endian left_encode, as NIST SP 800-185 requires. {@link #left_encode} is
+     * little-endian, which only agrees for x below 256.
+     *
+     * @param x the integer, at least 0
+     * @return n || x in n bytes, most significant first
+     */
+    static byte[] left_encode_nist(long x) {
+        int n = Math.max(1, (64 - Long.numberOfLeadingZeros(x) + 7) >>> 3);
+        byte[] x_encoded = new byte[n + 1];
+        x_encoded[0] = (byte) n;
+        for (int i = 1; i <= n; i++) {
+            x_encoded[i] = (byte) (x >>> (8 * (n - i)));
+        }
+        return x_encoded;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public byte[] right_encode(int x) {
         byte[] x_encoded = new byte[(int) Math.ceil(Integer.toBinaryString(x).length() / 8D) + 1];
-        int index = 0;
+        int index = x_encoded.length - 2;
 
-        // converts x to its byte string representation in little endian
+        // converts x to its byte string representation in big endian, as NIST SP 800-185 requires
+        // (only KMAC256 encodes an x above 255, KMACXOF256 always encodes 0)
         while(x > 0) {
-            x_encoded[index++] = (byte) (x & 0xFF);
+            x_encoded[index--] = (byte) (x & 0xFF);
             x >>= 8;
         }
         // insert length of byte string after the byte string representation of x
@@ -0,0 +1,765 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Non-interactive command line with subcommands. Every subcommand accepts many files, globs or
+ * directory trees in one invocation and processes them concurrently on a worker pool, so scripts
+ * pay for one JVM launch and warm-up instead of one per file.
+ * <br>
+ * Files are processed as raw bytes. Cryptograms, signatures and keys are written in the same text
+ * formats as the interactive menu, so files can be exchanged between the two.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class CommandLine {
+    /** The subcommands. */
+    private static final List<String> COMMANDS = List.of("hash", "mac", "encrypt", "decrypt", "keygen", "sign", "verify", "serve", "bench");
+    /** Exit status when everything succeeded. */
+    private static final int OK = 0;
+    /** Exit status when at least one file failed. */
+    private static final int FAILED = 1;
+    /** Exit status when the arguments are wrong. */
+    private static final int USAGE = 2;
+
+    /** The subcommand. */
+    private final String command;
+    /** The passphrase, or null. */
+    private String passphrase;
+    /** The public key files, or null. */
+    private String publicKeys;
+    /** The directory for output files, or null to write them next to the inputs. */
+    private Path outDir;
+    /** How many files are processed at the same time. */
+    private int parallelism = Tuning.current().getThreads();
+    /** Whether sign and verify use the prehashed single-pass mode. */
+    private boolean prehash;
+    /** Whether hash uses KangarooTwelve instead of KMACXOF256. */
+    private boolean k12;
+    /** Whether encrypt writes version 2 cryptograms of the single-pass duplex mode. */
+    private boolean duplex;
+    /** Bytes between two checkpoints of a resumable hash, or 0 to hash without checkpoints. */
+    private long checkpointBytes;
+    /** Whether hash, encrypt and decrypt stream each file through a reader, crypto and writer stage. */
+    private boolean pipeline;
+    /** Whether hash uses the Merkle tree mode with a sidecar index. */
+    private boolean merkle;
+    /** The modified byte ranges of a Merkle hash as {offset, length}, or null to compare every leaf. */
+    private long[][] dirtyRanges;
+    /** The socket of a running daemon to send the work to, or null to do it in this process. */
+    private Path socket;
+    /** The file arguments, globs and directories. */
+    private final List<String> operands = new ArrayList<>();
+
+    /**
+     * Constructs the command line for a subcommand.
+     *
+     * @param theCommand the subcommand
+     */
+    private CommandLine(final String theCommand) {
+        command = theCommand;
+    }
+
+    /**
+     * Tests if an argument is one of the subcommands.
+     *
+     * @param theArgument the first command line argument
+     * @return true if it is a subcommand
+     */
+    public static boolean isCommand(final String theArgument) {
+        return COMMANDS.contains(theArgument);
+    }
+
+    /**
+     * Runs a subcommand.
+     *
+     * @param theArgs the subcommand followed by its options and files
+     * @return the exit status: 0 on success, 1 if any file failed and 2 for wrong arguments
+     */
+    public static int run(final String[] theArgs) {
+        CommandLine cli = new CommandLine(theArgs[0]);
+        try {
+            cli.parse(Arrays.copyOfRange(theArgs, 1, theArgs.length));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            return USAGE;
+        }
+        return cli.execute();
+    }
+
+    /**
+     * Parses the options and operands of the subcommand.
+     *
+     * @param theArgs the arguments after the subcommand
+     * @throws IllegalArgumentException if an option is unknown or missing its value
+     */
+    private void parse(final String[] theArgs) {
+        for (int i = 0; i < theArgs.length; i++) {
+            String arg = theArgs[i];
+            switch (arg) {
+                case "-p", "--passphrase" -> passphrase = value(theArgs, ++i, arg);
+                case "-k", "--key" -> publicKeys = value(theArgs, ++i, arg);
+                case "-o", "--out-dir" -> outDir = Paths.get(value(theArgs, ++i, arg));
+                case "-j", "--parallelism" -> {
+                    try {
+                        parallelism = Integer.parseInt(value(theArgs, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Parallelism must be a number.");
+                    }
+                    if (parallelism <= 0) {
+                        throw new IllegalArgumentException("Parallelism must be positive.");
+                    }
+                }
+                case "--prehash" -> prehash = true;
+                case "--k12" -> k12 = true;
+                case "--duplex" -> duplex = true;
+                case "--checkpoint" -> {
+                    try {
+                        checkpointBytes = (long) (Double.parseDouble(value(theArgs, ++i, arg)) * (1L << 30));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Checkpoint interval must be a number of GiB.");
+                    }
+                    if (checkpointBytes <= 0) {
+                        throw new IllegalArgumentException("Checkpoint interval must be positive.");
+                    }
+                }
+                case "--pipeline" -> pipeline = true;
+                case "--merkle" -> merkle = true;
+                case "--dirty" -> dirtyRanges = ranges(value(theArgs, ++i, arg));
+                case "-s", "--socket" -> socket = Paths.get(value(theArgs, ++i, arg));
+                default -> {
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("Unknown option \"" + arg + "\".");
+                    }
+                    operands.add(arg);
+                }
+            }
+        }
+        if (command.equals("serve")) {
+            if (socket == null) {
+                throw new IllegalArgumentException("\"serve\" needs a socket file (-s).");
+            }
+            return;
+        }
+        if (command.equals("bench")) {
+            if (operands.size() > 1) {
+                throw new IllegalArgumentException("\"bench\" takes at most one profile file.");
+            }
+            return;
+        }
+        boolean needsPassphrase = !command.equals("hash") && !command.equals("verify")
+                                  && !(command.equals("encrypt") && publicKeys != null);
+        if (checkpointBytes > 0 && (!command.equals("hash") || k12)) {
+            throw new IllegalArgumentException("\"--checkpoint\" only works with the KMACXOF256 hash.");
+        }
+        if (merkle && (!command.equals("hash") || k12 || checkpointBytes > 0)) {
+            throw new IllegalArgumentException("\"--merkle\" only works with hash, without --k12 or --checkpoint.");
+        }
+        boolean pipelined = command.equals("hash") && !k12 && !merkle && checkpointBytes == 0
+                            || command.equals("encrypt") && publicKeys == null && !duplex
+                            || command.equals("decrypt");
+        if (pipeline && !pipelined) {
+            throw new IllegalArgumentException("\"--pipeline\" only works with the KMACXOF256 hash and the passphrase encrypt and decrypt.");
+        }
+        if (dirtyRanges != null && !merkle) {
+            throw new IllegalArgumentException("\"--dirty\" only works with --merkle.");
+        }
+        if (needsPassphrase && passphrase == null) {
+            throw new IllegalArgumentException("\"" + command + "\" needs a passphrase (-p).");
+        }
+        if (command.equals("verify") && publicKeys == null) {
+            throw new IllegalArgumentException("\"verify\" needs a public key file (-k).");
+        }
+        if (command.equals("verify") && publicKeys.contains(",")) {
+            throw new IllegalArgumentException("\"verify\" takes exactly one public key file (-k).");
+        }
+        if (command.equals("keygen") && operands.size() != 2) {
+            throw new IllegalArgumentException("\"keygen\" needs a private key file and a public key file.");
+        }
+        if (operands.isEmpty()) {
+            throw new IllegalArgumentException("No input files.");
+        }
+    }
+
+    /**
+     * Parses dirty ranges.
+     *
+     * @param theValue the ranges as offset:length,...
+     * @return the ranges as {offset, length}
+     * @throws IllegalArgumentException if a range is malformed
+     */
+    private static long[][] ranges(final String theValue) {
+        String[] parts = theValue.split(",");
+        long[][] ranges = new long[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            String[] range = parts[i].split(":");
+            try {
+                ranges[i] = new long[] {Long.parseLong(range[0].trim()), Long.parseLong(range[1].trim())};
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Dirty ranges must look like offset:length,...");
+            }
+            if (range.length != 2 || ranges[i][0] < 0 || ranges[i][1] < 0) {
+                throw new IllegalArgumentException("Dirty ranges must look like offset:length,...");
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Gets the value of an option.
+     *
+     * @param theArgs   the arguments
+     * @param theIndex  the index of the value
+     * @param theOption the option
+     * @return the value
+     * @throws IllegalArgumentException if the value is missing
+     */
+    private static String value(final String[] theArgs, final int theIndex, final String theOption) {
+        if (theIndex >= theArgs.length) {
+            throw new IllegalArgumentException("Option \"" + theOption + "\" needs a value.");
+        }
+        return theArgs[theIndex];
+    }
+
+    /**
+     * Runs the subcommand on every input file and prints a throughput summary.
+     *
+     * @return the exit status
+     */
+    private int execute() {
+        if (command.equals("serve")) {
+            try {
+                new Daemon().serve(socket);
+            } catch (IOException e) {
+                System.err.println("Sorry, cannot listen on \"" + socket + "\": " + e.getMessage());
+                return FAILED;
+            }
+            return OK;
+        }
+        if (command.equals("bench")) {
+            return bench();
+        }
+        if (command.equals("keygen")) {
+            try (PrintStream priv = new PrintStream(operands.get(0)); PrintStream pub = new PrintStream(operands.get(1))) {
+                new EllipticCurve().generateKeyPairToFile(passphrase, priv, pub);
+            } catch (IOException e) {
+                System.err.println("Sorry, cannot write key files: " + e.getMessage());
+                return FAILED;
+            }
+            return OK;
+        }
+
+        final List<Path> files;
+        final List<EllipticCurvePoint> keys;
+        try {
+            files = expand(operands);
+            keys = publicKeys == null ? List.of() : readPublicKeys(publicKeys);
+        } catch (IOException | IllegalArgumentException | NoSuchElementException e) {
+            System.err.println("Sorry, cannot read input: " + e.getMessage());
+            return FAILED;
+        }
+        if (outDir != null) {
+            // the outputs are named after the inputs, so two inputs of one name would overwrite each other
+            String clash = duplicateName(files);
+            if (clash != null) {
+                System.err.println("Sorry, more than one input is named \"" + clash + "\", so their outputs would collide in \"" + outDir + "\".");
+                return FAILED;
+            }
+        }
+
+        final EllipticCurve ec = new EllipticCurve();
+        final ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        final long start = System.nanoTime();
+        long bytes = 0;
+        int failures = 0;
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(workers.submit(() -> process(ec, file, keys)));
+            }
+            // results are printed in the order of the input files as they become ready
+            for (int i = 0; i < files.size(); i++) {
+                try {
+                    String line = results.get(i).get();
+                    if (line.startsWith("FAILED")) {
+                        failures++;
+                    }
+                    System.out.println(line);
+                    bytes += Files.size(files.get(i));
+                } catch (ExecutionException | IOException e) {
+                    failures++;
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    System.out.println("FAILED  " + files.get(i) + "  (" + cause.getMessage() + ")");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FAILED;
+        } finally {
+            workers.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%s: %d files, %d bytes in %.3f s (%.2f MB/s, %d failed)%n",
+                          command, files.size(), bytes, seconds, bytes / 1e6 / Math.max(seconds, 1e-9), failures);
+        return failures == 0 ? OK : FAILED;
+    }
+
+    /**
+     * Runs the subcommand on one file.
+     *
+     * @param theEc   the elliptic curve cryptography
+     * @param theFile the input file
+     * @param theKeys the public keys
+     * @return the line to print for the file
+     * @throws IOException if reading or writing a file fails
+     */
+    private String process(final EllipticCurve theEc, final Path theFile, final List<EllipticCurvePoint> theKeys) throws IOException {
+        // the daemon has no prehashed, KangarooTwelve, duplex, resumable, Merkle, pipelined or multi-recipient operations, those always run here
+        if (socket != null && !prehash && !k12 && !duplex && checkpointBytes == 0 && !merkle && !pipeline && theKeys.size() <= 1) {
+            try (DaemonClient client = new DaemonClient(socket)) {
+                String line = processRemote(client, theFile, theKeys);
+                if (line != null) {
+                    return line;
+                }
+            }
+        }
+        switch (command) {
+            case "hash" -> {
+                if (k12) {
+                    // h <- KT128(data, “”, 256)
+                    return hex(KangarooTwelve.KT128(Files.readAllBytes(theFile), "".getBytes(), 32)) + "  " + theFile;
+                }
+                if (checkpointBytes > 0) {
+                    // streamed, resuming from <file>.ckpt if an earlier run was stopped
+                    Path checkpoint = output(theFile, theFile.getFileName() + ".ckpt");
+                    return hex(ResumableHash.kmacXof256(theFile, "".getBytes(), 512, "D", checkpoint, checkpointBytes)) + "  " + theFile;
+                }
+                if (merkle) {
+                    return hex(merkleHash(theFile)) + "  " + theFile;
+                }
+                if (pipeline) {
+                    return hex(FilePipeline.hash(theFile)) + "  " + theFile;
+                }
+                // h <- KMACXOF256(“”, data, 512, “D”)
+                return hex(KMAC.KMACXOF256("".getBytes(), Files.readAllBytes(theFile), 512, "D")) + "  " + theFile;
+            }
+            case "mac" -> {
+                // t <- KMACXOF256(passphrase, data, 512, “T”)
+                byte[] key = new CSHAKE().encode_string(passphrase);
+                return hex(KMAC.KMACXOF256(key, Files.readAllBytes(theFile), 512, "T")) + "  " + theFile;
+            }
+            case "encrypt" -> {
+                Path target = output(theFile, theFile.getFileName() + ".enc");
+                if (pipeline) {
+                    FilePipeline.encrypt(theFile, target, passphrase);
+                    return "OK  " + theFile + " -> " + target;
+                }
+                byte[] data = Files.readAllBytes(theFile);
+                try (PrintStream out = new PrintStream(Files.newOutputStream(target))) {
+                    if (theKeys.isEmpty()) {
+                        ByteStringUtil.printHexadecimals(duplex ? KMAC.encryptDuplex(data, passphrase) : KMAC.encrypt(data, passphrase), out);
+                    } else if (duplex && theKeys.size() == 1) {
+                        theEc.encryptDuplex(data, theKeys.get(0), out);
+                    } else if (theKeys.size() == 1) {
+                        theEc.encrypt(data, theKeys.get(0), out);
+                    } else {
+                        theEc.encrypt(data, theKeys, out);
+                    }
+                }
+                return "OK  " + theFile + " -> " + target;
+            }
+            case "decrypt" -> {
+                String name = theFile.getFileName().toString();
+                Path target = output(theFile, (name.endsWith(".enc") ? name.substring(0, name.length() - 4) : name) + ".dec");
+                if (pipeline && FilePipeline.canDecrypt(theFile)) {
+                    // streamed, the plaintext only replaces <file>.dec if t = t'
+                    boolean verified = FilePipeline.decrypt(theFile, target, passphrase);
+                    return (verified ? "OK  " + theFile + " -> " + target : "FAILED  " + theFile);
+                }
+                byte[] dec = decrypt(theEc, theFile);
+                // the last byte just encodes whether t = t'
+                if (dec[dec.length - 1] != 1) {
+                    return "FAILED  " + theFile;
+                }
+                Files.write(target, Arrays.copyOf(dec, dec.length - 1));
+                return "OK  " + theFile + " -> " + target;
+            }
+            case "sign" -> {
+                Path target = output(theFile, theFile.getFileName() + ".sig");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(target))) {
+                    if (prehash) {
+                        try (InputStream in = new BufferedInputStream(Files.newInputStream(theFile))) {
+                            theEc.fileSignaturePrehashed(in, passphrase, out);
+                        }
+                    } else {
+                        theEc.fileSignature(Files.readAllBytes(theFile), passphrase, out);
+                    }
+                }
+                return "OK  " + theFile + " -> " + target;
+            }
+            case "verify" -> {
+                Signature sig = readSignature(output(theFile, theFile.getFileName() + ".sig"));
+                boolean verified;
+                if (prehash) {
+                    try (InputStream in = new BufferedInputStream(Files.newInputStream(theFile))) {
+                        verified = theEc.verifySignaturePrehashed(in, sig, theKeys.get(0));
+                    }
+                } else {
+                    verified = theEc.verifySignature(Files.readAllBytes(theFile), sig, theKeys.get(0));
+                }
+                return (verified ? "OK  " : "FAILED  ") + theFile;
+            }
+            default -> throw new IllegalStateException("Unknown command " + command);
+        }
+    }
+
+    /**
+     * Runs the subcommand on one file through a daemon.
+     *
+     * @param theClient the connection to the daemon
+     * @param theFile   the input file
+     * @param theKeys   the public keys, at most one
+     * @return the line to print for the file, or null if the daemon cannot process this file
+     * @throws IOException if reading or writing a file or the connection fails
+     */
+    private String processRemote(final DaemonClient theClient, final Path theFile, final List<EllipticCurvePoint> theKeys) throws IOException {
+        byte[] pw = passphrase == null ? null : passphrase.getBytes();
+        switch (command) {
+            case "hash" -> {
+                return hex(theClient.call(Daemon.HASH, Files.readAllBytes(theFile))) + "  " + theFile;
+            }
+            case "mac" -> {
+                return hex(theClient.call(Daemon.MAC, pw, Files.readAllBytes(theFile))) + "  " + theFile;
+            }
+            case "encrypt" -> {
+                Path target = output(theFile, theFile.getFileName() + ".enc");
+                byte[] data = Files.readAllBytes(theFile);
+                try (PrintStream out = new PrintStream(Files.newOutputStream(target))) {
+                    if (theKeys.isEmpty()) {
+                        ByteStringUtil.printHexadecimals(theClient.call(Daemon.ENCRYPT, pw, data), out);
+                    } else {
+                        EllipticCurve.printCryptogram(Cryptogram.fromBytes(theClient.call(Daemon.EC_ENCRYPT, theKeys.get(0).toBytes(), data)), out);
+                    }
+                }
+                return "OK  " + theFile + " -> " + target;
+            }
+            case "decrypt" -> {
+                String name = theFile.getFileName().toString();
+                Path target = output(theFile, (name.endsWith(".enc") ? name.substring(0, name.length() - 4) : name) + ".dec");
+                byte[] m;
+                try (Scanner in = new Scanner(theFile)) {
+                    String header = in.nextLine();
+                    if (header.equals(Cryptogram.HEADER)) {
+                        EllipticCurvePoint Z = EllipticCurvePoint.of(new BigInteger(in.nextLine()), new BigInteger(in.nextLine()));
+                        Cryptogram crypt = new Cryptogram(Z, ByteStringUtil.hexToBytes(in.nextLine()), ByteStringUtil.hexToBytes(in.nextLine()));
+                        m = theClient.call(Daemon.EC_DECRYPT, pw, crypt.toBytes());
+                    } else if (header.equals(EllipticCurve.MULTI_RECIPIENT_HEADER) || header.equals(Cryptogram.DUPLEX_HEADER)) {
+                        return null;
+                    } else {
+                        m = theClient.call(Daemon.DECRYPT, pw, ByteStringUtil.hexToBytes(header));
+                    }
+                }
+                if (m == null) {
+                    return "FAILED  " + theFile;
+                }
+                Files.write(target, m);
+                return "OK  " + theFile + " -> " + target;
+            }
+            case "sign" -> {
+                Path target = output(theFile, theFile.getFileName() + ".sig");
+                Signature sig = Signature.fromBytes(theClient.call(Daemon.SIGN, pw, Files.readAllBytes(theFile)));
+                try (PrintStream out = new PrintStream(Files.newOutputStream(target))) {
+                    EllipticCurve.printSignature(sig, out);
+                }
+                return "OK  " + theFile + " -> " + target;
+            }
+            case "verify" -> {
+                Signature sig = readSignature(output(theFile, theFile.getFileName() + ".sig"));
+                byte[] verified = theClient.call(Daemon.VERIFY, theKeys.get(0).toBytes(), sig.toBytes(), Files.readAllBytes(theFile));
+                return (verified != null ? "OK  " : "FAILED  ") + theFile;
+            }
+            default -> {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Decrypts a cryptogram file, telling the formats apart by their first line.
+     *
+     * @param theEc   the elliptic curve cryptography
+     * @param theFile the cryptogram file
+     * @return the plaintext message as byte string || 0 or 1 depending on if t = t'
+     * @throws IOException if reading the file fails
+     */
+    private byte[] decrypt(final EllipticCurve theEc, final Path theFile) throws IOException {
+        try (Scanner in = new Scanner(theFile)) {
+            String header = in.nextLine();
+            int version = Cryptogram.version(header);
+            if (version != 0) {
+                EllipticCurvePoint Z = EllipticCurvePoint.of(new BigInteger(in.nextLine()), new BigInteger(in.nextLine()));
+                byte[] c = ByteStringUtil.hexToBytes(in.nextLine());
+                byte[] t = ByteStringUtil.hexToBytes(in.nextLine());
+                return theEc.decrypt(new Cryptogram(Z, c, t, version), passphrase);
+            }
+            if (header.equals(EllipticCurve.MULTI_RECIPIENT_HEADER)) {
+                EllipticCurvePoint Z = EllipticCurvePoint.of(new BigInteger(in.nextLine()), new BigInteger(in.nextLine()));
+                int n = Integer.parseInt(in.nextLine());
+                List<byte[]> wrappedKeys = new ArrayList<>();
+                List<byte[]> wrapTags = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    wrappedKeys.add(ByteStringUtil.hexToBytes(in.nextLine()));
+                    wrapTags.add(ByteStringUtil.hexToBytes(in.nextLine()));
+                }
+                byte[] c = ByteStringUtil.hexToBytes(in.nextLine());
+                byte[] t = ByteStringUtil.hexToBytes(in.nextLine());
+                return theEc.decrypt(new MultiRecipientCryptogram(Z, wrappedKeys, wrapTags, c, t), passphrase);
+            }
+            // symmetric cryptogram [header ||] z || c || t as one line of hexadecimals
+            return KMAC.decrypt(ByteStringUtil.hexToBytes(header), passphrase);
+        }
+    }
+
+    /**
+     * Computes the Merkle hash of a file, updating its index <file>.mtree if there is a usable one and
+     * building it from scratch otherwise.
+     *
+     * @param theFile the file
+     * @return the content hash
+     * @throws IOException if reading the file or writing the index fails
+     */
+    private byte[] merkleHash(final Path theFile) throws IOException {
+        Path index = output(theFile, theFile.getFileName() + ".mtree");
+        MerkleHash tree = null;
+        if (Files.isRegularFile(index)) {
+            try {
+                tree = MerkleHash.load(index);
+                tree.update(theFile, dirtyRanges);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Warning! Ignoring Merkle index \"" + index + "\": " + e.getMessage());
+                tree = null;
+            }
+        }
+        if (tree == null) {
+            tree = MerkleHash.build(theFile, MerkleHash.DEFAULT_LEAF_BYTES);
+        }
+        tree.save(index);
+        return tree.hash();
+    }
+
+    /**
+     * Gets where an output file goes: into the output directory if there is one, otherwise next to the input.
+     *
+     * @param theInput the input file
+     * @param theName  the output file name
+     * @return the output file
+     * @throws IOException if the output directory cannot be created
+     */
+    private Path output(final Path theInput, final String theName) throws IOException {
+        if (outDir == null) {
+            return theInput.resolveSibling(theName);
+        }
+        Files.createDirectories(outDir);
+        return outDir.resolve(theName);
+    }
+
+    /**
+     * Finds a file name shared by two inputs, whose outputs would go to the same file of the output directory.
+     *
+     * @param theFiles the input files
+     * @return the first shared file name, or null if every name is unique
+     */
+    static String duplicateName(final List<Path> theFiles) {
+        Set<String> names = new HashSet<>();
+        for (Path file : theFiles) {
+            String name = file.getFileName().toString();
+            // the decryption of x.enc is named like the decryption of x
+            String base = name.endsWith(".enc") ? name.substring(0, name.length() - 4) : name;
+            if (!names.add(base)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Expands the operands into regular files. Directories are walked recursively, and operands
+     * with glob characters are matched against the files under their longest literal directory.
+     *
+     * @param theOperands the files, globs and directories
+     * @return the regular files in the order they were given, each directory and glob sorted
+     * @throws IOException if a directory cannot be walked
+     * @throws IllegalArgumentException if a file does not exist or a glob matches nothing
+     */
+    static List<Path> expand(final List<String> theOperands) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String operand : theOperands) {
+            int glob = indexOfGlob(operand);
+            if (glob >= 0) {
+                int slash = operand.lastIndexOf('/', glob);
+                Path base = slash < 0 ? Paths.get(".") : Paths.get(operand.substring(0, slash + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + operand);
+                int before = files.size();
+                try (Stream<Path> walk = Files.walk(base)) {
+                    walk.filter(Files::isRegularFile)
+                        .map(p -> slash < 0 ? base.relativize(p) : p)
+                        .filter(matcher::matches)
+                        .sorted()
+                        .forEach(files::add);
+                }
+                if (files.size() == before) {
+                    throw new IllegalArgumentException("No files match \"" + operand + "\".");
+                }
+            } else {
+                Path path = Paths.get(operand);
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> walk = Files.walk(path)) {
+                        walk.filter(Files::isRegularFile).sorted().forEach(files::add);
+                    }
+                } else if (Files.isRegularFile(path)) {
+                    files.add(path);
+                } else {
+                    throw new IllegalArgumentException("Cannot find \"" + operand + "\".");
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Finds the first glob character of an operand.
+     *
+     * @param theOperand the operand
+     * @return the index of the first of * ? [ {, or -1 if there is none
+     */
+    private static int indexOfGlob(final String theOperand) {
+        for (int i = 0; i < theOperand.length(); i++) {
+            if ("*?[{".indexOf(theOperand.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads public key files in the format written by keygen.
+     *
+     * @param theFileNames the public key file names separated by commas
+     * @return the public keys
+     * @throws IOException if a file cannot be read
+     */
+    private static List<EllipticCurvePoint> readPublicKeys(final String theFileNames) throws IOException {
+        List<EllipticCurvePoint> keys = new ArrayList<>();
+        for (String name : theFileNames.split(",")) {
+            try (Scanner in = new Scanner(Paths.get(name))) {
+                in.nextLine();
+                keys.add(EllipticCurvePoint.of(new BigInteger(in.nextLine()), new BigInteger(in.nextLine())));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Reads a signature file in the format written by sign.
+     *
+     * @param theFile the signature file
+     * @return the signature
+     * @throws IOException if the file cannot be read
+     */
+    private static Signature readSignature(final Path theFile) throws IOException {
+        try (Scanner in = new Scanner(theFile)) {
+            in.nextLine();
+            return new Signature(new BigInteger(in.nextLine()), new BigInteger(in.nextLine()));
+        }
+    }
+
+    /**
+     * Converts bytes to hexadecimals.
+     *
+     * @param theBytes the bytes
+     * @return the hexadecimals without a line break
+     */
+    private static String hex(final byte[] theBytes) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteStringUtil.printHexadecimals(theBytes, new PrintStream(bytes));
+        return bytes.toString().strip();
+    }
+
+    /**
+     * Benchmarks this host and saves the fastest choices as the tuning profile.
+     *
+     * @return the exit status
+     */
+    private int bench() {
+        Path profile = operands.isEmpty() ? Tuning.path() : Paths.get(operands.get(0));
+        Tuning tuning = new Benchmark(System.out).run();
+        try {
+            tuning.save(profile);
+        } catch (IOException e) {
+            System.err.println("Sorry, cannot write tuning profile \"" + profile + "\": " + e.getMessage());
+            return FAILED;
+        }
+        System.out.println("Tuning profile saved to \"" + profile + "\":\n" + tuning);
+        return OK;
+    }
+
+    /**
+     * Prints how to use the subcommands.
+     */
+    private static void usage() {
+        System.err.println("""
+                Usage: Main <command> [options] <files, globs or directories>...
+                  hash                            print the KMACXOF256 hash of every file
+                  mac     -p <passphrase>         print the KMACXOF256 MAC of every file
+                  encrypt -p <passphrase>         encrypt every file to <file>.enc
+                  encrypt -k <public key>[,...]   encrypt every file to <file>.enc for one or more public keys
+                  decrypt -p <passphrase>         decrypt every <file>.enc to <file>.dec
+                  keygen  -p <passphrase> <private key file> <public key file>
+                  sign    -p <passphrase>         sign every file to <file>.sig
+                  verify  -k <public key>         verify every file against <file>.sig (in the -o dir if given)
+                Options:
+                  -j, --parallelism <n>           files processed at the same time (default: tuned, or number of CPUs)
+                  -o, --out-dir <dir>             write output files into dir instead of next to the inputs (the input
+                                  names must then be unique)
+                      --prehash                   sign and verify in the prehashed single-pass mode
+                      --k12                       hash with KangarooTwelve (KT128, 256 bits) instead of KMACXOF256
+                      --duplex                    encrypt in the single-pass duplex sponge mode (version 2 cryptograms)
+                      --checkpoint <GiB>          stream the hash and save a checkpoint <file>.ckpt every GiB, resuming
+                                                  from it if an earlier run was stopped
+                      --pipeline                  stream hash and passphrase encrypt and decrypt through overlapping read,
+                                                  crypto and write stages, for large files
+                      --merkle                    hash as a Merkle tree of 1 MiB leaves indexed in <file>.mtree, so a
+                                                  modified file only re-hashes its changed leaves
+                      --dirty <off:len>[,...]     with --merkle, re-hash only the leaves in these byte ranges
+                  -s, --socket <file>             send the work to a daemon listening on this Unix domain socket
+                Daemon:
+                  serve   -s <socket file>        keep the engines warm and serve requests on the socket
+                Tuning:
+                  bench   [profile file]          measure this host and save the fastest settings to the profile
+                                                  (default: ~/.cryptography/tuning.properties, or -Dcrypto.tuning)
+                Without a command, Main <input file> <output file> <passphrase> starts the interactive menu.""");
+    }
+}
@@ -0,0 +1,233 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of the cryptographic hot paths, published as the JMX MBean
+ * {@code Cryptography:type=CryptoMetrics}. Counts sponge traffic and Keccak permutations in
+ * {@link CSHAKE}, scalar multiplications, point additions and field inversions in
+ * {@link EllipticCurvePoint}, and keeps latency histograms of the KMAC and elliptic curve operations.
+ * <br>
+ * Metrics are off unless the JVM is started with {@code -Dcrypto.metrics=true}. The flag is a
+ * static final constant, so when it is off the JIT removes the hooks from the hot paths entirely.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class CryptoMetrics implements CryptoMetricsMBean {
+    /** Whether metrics are collected. */
+    static final boolean ENABLED = Boolean.getBoolean("crypto.metrics");
+
+    /**
+     * The operations with latency histograms.
+     */
+    public enum Operation {
+        KMAC_ENCRYPT,
+        KMAC_DECRYPT,
+        EC_KEYGEN,
+        EC_ENCRYPT,
+        EC_DECRYPT,
+        EC_SIGN,
+        EC_VERIFY
+    }
+
+    /** Number of histogram buckets, one per power of two of nanoseconds. */
+    private static final int BUCKETS = 64;
+
+    /** Bytes absorbed into sponges. */
+    private static final LongAdder ABSORBED = new LongAdder();
+    /** Bytes squeezed out of sponges. */
+    private static final LongAdder SQUEEZED = new LongAdder();
+    /** Keccak permutations. */
+    private static final LongAdder PERMUTATIONS = new LongAdder();
+    /** Scalar multiplications. */
+    private static final LongAdder SCALAR_MULTIPLICATIONS = new LongAdder();
+    /** Point additions. */
+    private static final LongAdder POINT_ADDITIONS = new LongAdder();
+    /** Field inversions. */
+    private static final LongAdder INVERSIONS = new LongAdder();
+    /** Latency histograms, one row of buckets per operation. */
+    private static final AtomicLongArray HISTOGRAMS = new AtomicLongArray(Operation.values().length * BUCKETS);
+    /** Total latency in nanoseconds per operation. */
+    private static final AtomicLongArray TOTAL_NANOS = new AtomicLongArray(Operation.values().length);
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new CryptoMetrics(), new ObjectName("Cryptography:type=CryptoMetrics"));
+            } catch (JMException e) {
+                System.err.println("Cannot register crypto metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Counts bytes absorbed into a sponge.
+     *
+     * @param theBytes the number of bytes
+     */
+    static void absorbed(final int theBytes) {
+        if (ENABLED) ABSORBED.add(theBytes);
+    }
+
+    /**
+     * Counts bytes squeezed out of a sponge.
+     *
+     * @param theBytes the number of bytes
+     */
+    static void squeezed(final int theBytes) {
+        if (ENABLED) SQUEEZED.add(theBytes);
+    }
+
+    /**
+     * Counts a Keccak permutation.
+     */
+    static void permutation() {
+        if (ENABLED) PERMUTATIONS.increment();
+    }
+
+    /**
+     * Counts Keccak permutations of several states at once.
+     *
+     * @param theCount the number of states
+     */
+    static void permutations(final int theCount) {
+        if (ENABLED) PERMUTATIONS.add(theCount);
+    }
+
+    /**
+     * Counts a scalar multiplication.
+     */
+    static void scalarMultiplication() {
+        if (ENABLED) SCALAR_MULTIPLICATIONS.increment();
+    }
+
+    /**
+     * Counts a point addition.
+     */
+    static void pointAddition() {
+        if (ENABLED) POINT_ADDITIONS.increment();
+    }
+
+    /**
+     * Counts field inversions.
+     *
+     * @param theCount the number of inversions
+     */
+    static void inversions(final int theCount) {
+        if (ENABLED) INVERSIONS.add(theCount);
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the start time to pass to {@link #record(Operation, long)}
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the latency of an operation.
+     *
+     * @param theOperation the operation
+     * @param theStart     the start time from {@link #start()}
+     */
+    static void record(final Operation theOperation, final long theStart) {
+        if (ENABLED) {
+            long nanos = Math.max(System.nanoTime() - theStart, 0);
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+            HISTOGRAMS.incrementAndGet(theOperation.ordinal() * BUCKETS + bucket);
+            TOTAL_NANOS.addAndGet(theOperation.ordinal(), nanos);
+        }
+    }
+
+    @Override
+    public long getBytesAbsorbed() {
+        return ABSORBED.sum();
+    }
+
+    @Override
+    public long getBytesSqueezed() {
+        return SQUEEZED.sum();
+    }
+
+    @Override
+    public long getKeccakPermutations() {
+        return PERMUTATIONS.sum();
+    }
+
+    @Override
+    public long getScalarMultiplications() {
+        return SCALAR_MULTIPLICATIONS.sum();
+    }
+
+    @Override
+    public long getPointAdditions() {
+        return POINT_ADDITIONS.sum();
+    }
+
+    @Override
+    public long getFieldInversions() {
+        return INVERSIONS.sum();
+    }
+
+    @Override
+    public String[] getOperations() {
+        return Arrays.stream(Operation.values()).map(Enum::name).toArray(String[]::new);
+    }
+
+    @Override
+    public long getCount(final String operation) {
+        return Arrays.stream(getHistogram(operation)).sum();
+    }
+
+    @Override
+    public double getMeanMicros(final String operation) {
+        long count = getCount(operation);
+        return count == 0 ? 0 : TOTAL_NANOS.get(Operation.valueOf(operation).ordinal()) / 1e3 / count;
+    }
+
+    @Override
+    public double getPercentileMicros(final String operation, final double percentile) {
+        long[] histogram = getHistogram(operation);
+        long rank = (long) Math.ceil(Arrays.stream(histogram).sum() * percentile / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram[b];
+            if (seen >= rank && seen > 0) {
+                return Math.pow(2, b) / 1e3; // upper bound of bucket b
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long[] getHistogram(final String operation) {
+        int row = Operation.valueOf(operation).ordinal() * BUCKETS;
+        long[] histogram = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) {
+            histogram[b] = HISTOGRAMS.get(row + b);
+        }
+        return histogram;
+    }
+
+    @Override
+    public void reset() {
+        ABSORBED.reset();
+        SQUEEZED.reset();
+        PERMUTATIONS.reset();
+        SCALAR_MULTIPLICATIONS.reset();
+        POINT_ADDITIONS.reset();
+        INVERSIONS.reset();
+        for (int i = 0; i < HISTOGRAMS.length(); i++) {
+            HISTOGRAMS.set(i, 0);
+        }
+        for (int i = 0; i < TOTAL_NANOS.length(); i++) {
+            TOTAL_NANOS.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * JMX management interface of {@link CryptoMetrics}. Latencies are kept in histograms with
+ * power of two buckets, so percentiles are upper bounds within a factor of two.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public interface CryptoMetricsMBean {
+    /**
+     * Gets the bytes absorbed into cSHAKE sponges.
+     *
+     * @return the number of bytes absorbed
+     */
+    long getBytesAbsorbed();
+
+    /**
+     * Gets the bytes squeezed out of cSHAKE sponges.
+     *
+     * @return the number of bytes squeezed
+     */
+    long getBytesSqueezed();
+
+    /**
+     * Gets the Keccak-f[1600] permutations.
+     *
+     * @return the number of permutations
+     */
+    long getKeccakPermutations();
+
+    /**
+     * Gets the elliptic curve scalar multiplications.
+     *
+     * @return the number of scalar multiplications
+     */
+    long getScalarMultiplications();
+
+    /**
+     * Gets the elliptic curve point additions, doublings included.
+     *
+     * @return the number of point additions
+     */
+    long getPointAdditions();
+
+    /**
+     * Gets the field inversions mod p.
+     *
+     * @return the number of field inversions
+     */
+    long getFieldInversions();
+
+    /**
+     * Gets the names of the operations with latency histograms.
+     *
+     * @return the operation names
+     */
+    String[] getOperations();
+
+    /**
+     * Gets how often an operation ran.
+     *
+     * @param operation the operation name
+     * @return the number of calls
+     */
+    long getCount(String operation);
+
+    /**
+     * Gets the mean latency of an operation.
+     *
+     * @param operation the operation name
+     * @return the mean latency in microseconds
+     */
+    double getMeanMicros(String operation);
+
+    /**
+     * Gets a latency percentile of an operation.
+     *
+     * @param operation  the operation name
+     * @param percentile the percentile in (0, 100]
+     * @return the upper bound of the percentile in microseconds
+     */
+    double getPercentileMicros(String operation, double percentile);
+
+    /**
+     * Gets the latency histogram of an operation.
+     *
+     * @param operation the operation name
+     * @return the number of calls in each bucket, bucket b holding latencies in [2^(b-1), 2^b) nanoseconds
+     */
+    long[] getHistogram(String operation);
+
+    /**
+     * Resets all counters and histograms to zero.
+     */
+    void reset();
+}
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 /**
  * Class to store the values of the cryptogram (Z, c, t).
  *
@@ -5,25 +7,68 @@
  * @version 1.0.0
  */
 public final class Cryptogram {
+    /** Version of the two-pass KMAC cryptogram. */
+    public static final int KMAC = 1;
+    /** Version of the single-pass {@link SpongeWrap} cryptogram. */
+    public static final int DUPLEX = 2;
+    /** Header line of a version 1 cryptogram in the text format. */
+    public static final String HEADER = "Cryptogram:";
+    /** Header line of a version 2 cryptogram in the text format. */
+    public static final String DUPLEX_HEADER = "Cryptogram v2:";
+    /** Byte length of t. 448 / 8 = 56 */
+    private static final int T_BYTES = 56;
     /** The c as a byte array. */
     private byte[] c;
     /** The t as a byte array. */
     private byte[] t;
     /** The Z as a elliptic curve point. */
     private EllipticCurvePoint Z;
+    /** The version, {@link #KMAC} or {@link #DUPLEX}. */
+    private final int version;
 
     /**
-     * Constructs the cryptogram.
+     * Constructs a version 1 cryptogram.
      *
      * @param Z the elliptic curve point
      * @param c the c byte array
      * @param t the t byte array
      */
     public Cryptogram(EllipticCurvePoint Z, byte[] c, byte[] t) {
+        this(Z, c, t, KMAC);
+    }
+
+    /**
+     * Constructs the cryptogram.
+     *
+     * @param Z       the elliptic curve point
+     * @param c       the c byte array
+     * @param t       the t byte array
+     * @param version the version, {@link #KMAC} or {@link #DUPLEX}
+     * @throws IllegalArgumentException if the version is unknown
+     */
+    public Cryptogram(EllipticCurvePoint Z, byte[] c, byte[] t, int version) {
+        if (version != KMAC && version != DUPLEX) {
+            throw new IllegalArgumentException("Unknown cryptogram version " + version + ".");
+        }
         // for better security, it is probably best to do a deep copy instead
         this.Z = Z;
         this.c = c;
         this.t = t;
+        this.version = version;
+    }
+
+    /**
+     * Gets the version of a cryptogram from the header line of its text format.
+     *
+     * @param theHeader the first line
+     * @return {@link #KMAC} or {@link #DUPLEX}, or 0 if the line is not a cryptogram header
+     */
+    public static int version(final String theHeader) {
+        return switch (theHeader) {
+            case HEADER -> KMAC;
+            case DUPLEX_HEADER -> DUPLEX;
+            default -> 0;
+        };
     }
 
     /**
@@ -43,4 +88,47 @@ public final class Cryptogram {
      * @return the byte array t
      */
     byte[] getT() { return t; }
+
+    /**
+     * Getter for the version.
+     * @return {@link #KMAC} or {@link #DUPLEX}
+     */
+    int getVersion() { return version; }
+
+    /**
+     * Gets the header line of this cryptogram in the text format.
+     * @return {@link #HEADER} or {@link #DUPLEX_HEADER}
+     */
+    String getHeader() { return version == DUPLEX ? DUPLEX_HEADER : HEADER; }
+
+    /**
+     * Encodes this cryptogram as Z || c || t with Z in its compressed 57 byte encoding.
+     * The binary encoding has no header, so it only carries version 1 cryptograms.
+     *
+     * @return the binary cryptogram
+     * @throws IllegalStateException if this is a version 2 cryptogram
+     */
+    public byte[] toBytes() {
+        if (version != KMAC) {
+            throw new IllegalStateException("Only version 1 cryptograms have a binary encoding.");
+        }
+        return ByteStringUtil.concat(ByteStringUtil.concat(Z.toBytes(), c), t);
+    }
+
+    /**
+     * Decodes a cryptogram from Z || c || t with Z in its compressed 57 byte encoding.
+     *
+     * @param theBytes the binary cryptogram
+     * @return the cryptogram
+     * @throws IllegalArgumentException if the cryptogram is too short or Z is not on the curve
+     */
+    public static Cryptogram fromBytes(final byte[] theBytes) {
+        if (theBytes.length < EllipticCurvePoint.ENCODED_BYTES + T_BYTES) {
+            throw new IllegalArgumentException("Cryptogram is too short.");
+        }
+        EllipticCurvePoint Z = EllipticCurvePoint.fromBytes(Arrays.copyOf(theBytes, EllipticCurvePoint.ENCODED_BYTES));
+        byte[] c = Arrays.copyOfRange(theBytes, EllipticCurvePoint.ENCODED_BYTES, theBytes.length - T_BYTES);
+        byte[] t = Arrays.copyOfRange(theBytes, theBytes.length - T_BYTES, theBytes.length);
+        return new Cryptogram(Z, c, t);
+    }
 }
@@ -0,0 +1,39 @@
+import java.security.Provider;
+
+/**
+ * JCA provider of this project's engines, so services that only speak {@link javax.crypto.Mac},
+ * {@link java.security.MessageDigest} and {@link javax.crypto.Cipher} can use them:
+ * <ul>
+ *     <li>Mac: KMAC256, KMACXOF256, see {@link KmacEngine} and {@link KmacParameterSpec}</li>
+ *     <li>MessageDigest: SHA3-256, SHA3-512, SHAKE256, cSHAKE256, see {@link Sha3Digest}</li>
+ *     <li>Cipher: DHIES on Ed448-Goldilocks, see {@link DhiesCipher}</li>
+ * </ul>
+ * Register it with {@code Security.addProvider(new CryptographyProvider())} and ask for it by
+ * name, e.g. {@code Mac.getInstance("KMACXOF256", CryptographyProvider.NAME)}.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class CryptographyProvider extends Provider {
+    /** Name of the provider. */
+    public static final String NAME = "Cryptography";
+    /** Serial version of the provider. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs the provider and registers its engines.
+     */
+    public CryptographyProvider() {
+        super(NAME, "1.0.0", "KMAC256/KMACXOF256 Mac, SHA3/(c)SHAKE256 MessageDigest, DHIES Cipher on Ed448-Goldilocks");
+        put("Mac.KMAC256", KmacEngine.KMAC256.class.getName());
+        put("Mac.KMACXOF256", KmacEngine.KMACXOF256.class.getName());
+        put("MessageDigest.SHA3-256", Sha3Digest.SHA3_256.class.getName());
+        put("MessageDigest.SHA3-512", Sha3Digest.SHA3_512.class.getName());
+        put("MessageDigest.SHAKE256", Sha3Digest.SHAKE256.class.getName());
+        put("MessageDigest.cSHAKE256", Sha3Digest.CSHAKE256.class.getName());
+        put("Cipher.DHIES", DhiesCipher.class.getName());
+        put("Cipher.DHIES SupportedModes", "NONE");
+        put("Cipher.DHIES SupportedPaddings", "NOPADDING");
+        put("Cipher.DHIES SupportedKeyClasses", EcPublicKey.class.getName() + "|" + EcPrivateKey.class.getName());
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-running local daemon that keeps the KMAC and elliptic curve engines warm and serves
+ * requests over a Unix domain socket. Every connection is handled on its own virtual thread.
+ * <br><br>
+ * Protocol, all integers big-endian. A connection carries any number of requests:
+ * <pre>
+ * request:  op (1 byte) || field count (1 byte) || (length (4 bytes) || field)*
+ * response: status (1 byte) || length (4 bytes) || payload
+ * </pre>
+ * Status is {@link #OK}, {@link #REJECTED} when a tag or signature does not verify,
+ * or {@link #ERROR} with a UTF-8 message as the payload.
+ * <br><br>
+ * All connections together hold at most a budget of request bytes in memory, by default half the
+ * heap or the MiB given by {@value #BUDGET_PROPERTY}. A request that does not fit into what is left
+ * within {@value #BUDGET_WAIT_SECONDS} seconds is skipped unread and answered with {@link #ERROR}.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class Daemon {
+    /** hash(data) -> KMACXOF256(“”, data, 512, “D”) */
+    public static final byte HASH = 1;
+    /** mac(passphrase, data) -> KMACXOF256(passphrase, data, 512, “T”) */
+    public static final byte MAC = 2;
+    /** encrypt(passphrase, data) -> symmetric cryptogram z || c || t */
+    public static final byte ENCRYPT = 3;
+    /** decrypt(passphrase, z || c || t) -> plaintext */
+    public static final byte DECRYPT = 4;
+    /** encrypt(public key, data) -> cryptogram Z || c || t */
+    public static final byte EC_ENCRYPT = 5;
+    /** decrypt(passphrase, Z || c || t) -> plaintext */
+    public static final byte EC_DECRYPT = 6;
+    /** sign(passphrase, data) -> signature h || z */
+    public static final byte SIGN = 7;
+    /** verify(public key, h || z, data) -> status only */
+    public static final byte VERIFY = 8;
+
+    /** The request succeeded. */
+    public static final byte OK = 0;
+    /** A tag or signature did not verify. */
+    public static final byte REJECTED = 1;
+    /** The request was malformed or failed. */
+    public static final byte ERROR = 2;
+
+    /** Largest field accepted in a request, so a bad length cannot exhaust the heap. */
+    private static final int MAX_FIELD_BYTES = 1 << 30;
+    /** Most fields in a request, those of verify(public key, h || z, data). */
+    private static final int MAX_FIELDS = 3;
+    /** Largest request: one data field of MAX_FIELD_BYTES plus room for keys, signatures and passphrases. */
+    private static final long MAX_FRAME_BYTES = MAX_FIELD_BYTES + (1L << 20);
+
+    /** System property with the budget of request bytes held by all connections together, in MiB. */
+    public static final String BUDGET_PROPERTY = "crypto.daemon.budget";
+    /** How long a request waits for room in the budget before it is turned away. */
+    private static final int BUDGET_WAIT_SECONDS = 30;
+
+    /** The elliptic curve cryptography shared by all connections. */
+    private final EllipticCurve ec = new EllipticCurve();
+    /** The budget of request bytes held by all connections together. */
+    private final int capacity = budgetBytes();
+    /** The request bytes all connections may still hold, one permit per byte. */
+    private final Semaphore budget = new Semaphore(capacity);
+
+    /**
+     * Listens on a Unix domain socket until the process is stopped. A stale socket file is replaced,
+     * and the socket file is deleted again when the process exits.
+     *
+     * @param theSocket the socket file
+     * @throws IOException if the socket cannot be bound
+     */
+    public void serve(final Path theSocket) throws IOException {
+        Files.deleteIfExists(theSocket);
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(theSocket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(theSocket);
+                } catch (IOException ignored) {
+                    // nothing left to clean up
+                }
+            }));
+            warmUp();
+            System.err.println("Listening on " + theSocket);
+
+            while (true) {
+                SocketChannel client = server.accept();
+                Thread.ofVirtual().name("daemon-client").start(() -> handle(client));
+            }
+        }
+    }
+
+    /**
+     * Runs every engine a few times so the JIT has compiled the hot paths before the first request.
+     */
+    private void warmUp() {
+        byte[] data = new byte[4096];
+        for (int i = 0; i < 200; i++) {
+            KMAC.KMACXOF256("".getBytes(), data, 512, "D");
+        }
+        Signature sig = ec.sign(data, "warm-up");
+        ec.decrypt(ec.encrypt(data, EllipticCurvePoint.getPublicGenerator()), "warm-up");
+        ec.verifySignature(data, sig, EllipticCurvePoint.getPublicGenerator());
+    }
+
+    /**
+     * Serves the requests of one connection until the client closes it.
+     *
+     * @param theClient the connection
+     */
+    private void handle(final SocketChannel theClient) {
+        try (theClient;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(theClient)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(theClient)))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return; // client is done
+                }
+                int count = in.readUnsignedByte();
+                if (count > MAX_FIELDS) {
+                    throw new IOException("Bad field count " + count);
+                }
+                byte[][] fields = new byte[count][];
+                long total = 0;
+                // bytes of the budget held by this request, given back once it is answered
+                int reserved = 0;
+                boolean busy = false;
+                try {
+                    for (int i = 0; i < fields.length; i++) {
+                        int length = in.readInt();
+                        total += length;
+                        // checked before the body is read, so an oversized frame never reaches the heap
+                        if (length < 0 || length > MAX_FIELD_BYTES || total > MAX_FRAME_BYTES) {
+                            throw new IOException("Bad field length " + length);
+                        }
+                        if (!busy && total <= capacity && budget.tryAcquire(length, BUDGET_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                            reserved += length;
+                            fields[i] = in.readNBytes(length);
+                            if (fields[i].length != length) {
+                                throw new EOFException();
+                            }
+                        } else {
+                            // no room left, or never enough: the rest of the request is skipped without being stored
+                            busy = true;
+                            in.skipNBytes(length);
+                        }
+                    }
+
+                    byte status;
+                    byte[] payload;
+                    if (busy) {
+                        status = ERROR;
+                        payload = "Sorry, the daemon is busy. Please try again.".getBytes(StandardCharsets.UTF_8);
+                    } else {
+                        try {
+                            byte[] result = execute(op, fields);
+                            status = result == null ? REJECTED : OK;
+                            payload = result == null ? new byte[0] : result;
+                        } catch (RuntimeException e) {
+                            status = ERROR;
+                            payload = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                        }
+                    }
+                    out.writeByte(status);
+                    out.writeInt(payload.length);
+                    out.write(payload);
+                    out.flush();
+                } finally {
+                    budget.release(reserved);
+                }
+            }
+        } catch (IOException e) {
+            // connection broken, nothing to answer
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the budget of request bytes held by all connections together.
+     *
+     * @return the MiB of {@value #BUDGET_PROPERTY}, or half the heap, at most Integer.MAX_VALUE
+     * @throws IllegalArgumentException if the property is not a positive number
+     */
+    private static int budgetBytes() {
+        String mib = System.getProperty(BUDGET_PROPERTY);
+        long bytes = Runtime.getRuntime().maxMemory() / 2;
+        if (mib != null) {
+            bytes = Long.parseLong(mib.strip()) << 20;
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("\"" + BUDGET_PROPERTY + "\" must be a positive number of MiB.");
+            }
+        }
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Executes one request.
+     *
+     * @param theOp     the operation
+     * @param theFields the fields of the request
+     * @return the response payload, or null if a tag or signature does not verify
+     * @throws IllegalArgumentException if the operation or its fields are malformed
+     */
+    private byte[] execute(final byte theOp, final byte[][] theFields) {
+        switch (theOp) {
+            case HASH -> {
+                fields(theFields, 1);
+                // h <- KMACXOF256(“”, data, 512, “D”)
+                return KMAC.KMACXOF256("".getBytes(), theFields[0], 512, "D");
+            }
+            case MAC -> {
+                fields(theFields, 2);
+                // t <- KMACXOF256(passphrase, data, 512, “T”)
+                byte[] key = new CSHAKE().encode_string(new String(theFields[0], StandardCharsets.UTF_8));
+                return KMAC.KMACXOF256(key, theFields[1], 512, "T");
+            }
+            case ENCRYPT -> {
+                fields(theFields, 2);
+                return KMAC.encrypt(theFields[1], new String(theFields[0], StandardCharsets.UTF_8));
+            }
+            case DECRYPT -> {
+                fields(theFields, 2);
+                byte[] m = new byte[KMAC.messageLength(theFields[1], 0, theFields[1].length)];
+                return KMAC.decrypt(theFields[1], 0, theFields[1].length, m, 0, new String(theFields[0], StandardCharsets.UTF_8)) ? m : null;
+            }
+            case EC_ENCRYPT -> {
+                fields(theFields, 2);
+                return ec.encrypt(theFields[1], EllipticCurvePoint.fromBytes(theFields[0])).toBytes();
+            }
+            case EC_DECRYPT -> {
+                fields(theFields, 2);
+                return tagged(ec.decrypt(Cryptogram.fromBytes(theFields[1]), new String(theFields[0], StandardCharsets.UTF_8)));
+            }
+            case SIGN -> {
+                fields(theFields, 2);
+                return ec.sign(theFields[1], new String(theFields[0], StandardCharsets.UTF_8)).toBytes();
+            }
+            case VERIFY -> {
+                fields(theFields, 3);
+                boolean verified = ec.verifySignature(theFields[2], Signature.fromBytes(theFields[1]), EllipticCurvePoint.fromBytes(theFields[0]));
+                return verified ? new byte[0] : null;
+            }
+            default -> throw new IllegalArgumentException("Unknown operation " + theOp);
+        }
+    }
+
+    /**
+     * Checks the number of fields of a request.
+     *
+     * @param theFields the fields
+     * @param theCount  the expected number of fields
+     * @throws IllegalArgumentException if the number of fields is wrong
+     */
+    private static void fields(final byte[][] theFields, final int theCount) {
+        if (theFields.length != theCount) {
+            throw new IllegalArgumentException("Expected " + theCount + " fields but got " + theFields.length);
+        }
+    }
+
+    /**
+     * Strips the tag flag from a decryption.
+     *
+     * @param theDecryption the plaintext message as byte string || 0 or 1 depending on if t = t'
+     * @return the plaintext message, or null if t != t'
+     */
+    private static byte[] tagged(final byte[] theDecryption) {
+        return theDecryption[theDecryption.length - 1] == 1 ? Arrays.copyOf(theDecryption, theDecryption.length - 1) : null;
+    }
+}
@@ -0,0 +1,75 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Thin client of the {@link Daemon}. One client holds one connection and is not thread-safe,
+ * so concurrent callers should each open their own client.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class DaemonClient implements AutoCloseable {
+    /** The connection to the daemon. */
+    private final SocketChannel channel;
+    /** Requests to the daemon. */
+    private final DataOutputStream out;
+    /** Responses from the daemon. */
+    private final DataInputStream in;
+
+    /**
+     * Connects to a daemon.
+     *
+     * @param theSocket the socket file of the daemon
+     * @throws IOException if the daemon is not listening
+     */
+    public DaemonClient(final Path theSocket) throws IOException {
+        channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.connect(UnixDomainSocketAddress.of(theSocket));
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    }
+
+    /**
+     * Sends one request and waits for its response.
+     *
+     * @param theOp     the operation, one of the operation constants of {@link Daemon}
+     * @param theFields the fields of the request
+     * @return the response payload, or null if a tag or signature does not verify
+     * @throws IOException if the connection fails or the daemon reports an error
+     */
+    public byte[] call(final byte theOp, final byte[]... theFields) throws IOException {
+        out.writeByte(theOp);
+        out.writeByte(theFields.length);
+        for (byte[] field : theFields) {
+            out.writeInt(field.length);
+            out.write(field);
+        }
+        out.flush();
+
+        byte status = in.readByte();
+        byte[] payload = in.readNBytes(in.readInt());
+        if (status == Daemon.ERROR) {
+            throw new IOException("Daemon error: " + new String(payload, StandardCharsets.UTF_8));
+        }
+        return status == Daemon.OK ? payload : null;
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Class to store the result of decrypting one cryptogram of a batch.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class DecryptionResult {
+    /** The position of the cryptogram in the batch, starting from 0. */
+    private final long index;
+    /** The plaintext message. */
+    private final byte[] plaintext;
+    /** Whether t = t'. */
+    private final boolean valid;
+
+    /**
+     * Constructs the decryption result.
+     *
+     * @param index     the position of the cryptogram in the batch
+     * @param plaintext the plaintext message
+     * @param valid     whether t = t'
+     */
+    public DecryptionResult(long index, byte[] plaintext, boolean valid) {
+        this.index = index;
+        this.plaintext = plaintext;
+        this.valid = valid;
+    }
+
+    /**
+     * Getter for the index.
+     * @return the position of the cryptogram in the batch
+     */
+    public long getIndex() { return index; }
+
+    /**
+     * Getter for the plaintext. Only to be trusted if {@link #isValid()}.
+     * @return the plaintext message
+     */
+    public byte[] getPlaintext() { return plaintext; }
+
+    /**
+     * Getter for the tag status.
+     * @return true if t = t'
+     */
+    public boolean isValid() { return valid; }
+}
@@ -0,0 +1,170 @@
+import java.io.ByteArrayOutputStream;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+
+/**
+ * The DHIES encryption of {@link EllipticCurve} as a {@link Cipher} of the
+ * {@link CryptographyProvider}. Encryption takes an {@link EcPublicKey} and produces the binary
+ * cryptogram Z || c || t, decryption takes an {@link EcPrivateKey}. The whole message is buffered
+ * until doFinal since the tag covers the plaintext, and a wrong tag throws {@link AEADBadTagException}.
+ * The only mode and padding are NONE and NoPadding.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class DhiesCipher extends CipherSpi {
+    /** Length of the cryptogram on top of the message: Z and t. */
+    private static final int OVERHEAD = EllipticCurvePoint.ENCODED_BYTES + 56;
+
+    /** The elliptic curve cryptography. */
+    private final EllipticCurve ec = new EllipticCurve();
+    /** The input buffered until doFinal. */
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    /** Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE. */
+    private int mode;
+    /** The recipient's public key when encrypting. */
+    private EllipticCurvePoint publicKey;
+    /** The private key when decrypting. */
+    private Scalar privateKey;
+
+    /**
+     * Constructs the cipher, to be initialized by {@link Cipher#init}.
+     */
+    public DhiesCipher() {
+    }
+
+    @Override
+    protected void engineSetMode(final String theMode) throws NoSuchAlgorithmException {
+        if (!theMode.equalsIgnoreCase("NONE")) {
+            throw new NoSuchAlgorithmException("DHIES has no mode " + theMode + ".");
+        }
+    }
+
+    @Override
+    protected void engineSetPadding(final String thePadding) throws NoSuchPaddingException {
+        if (!thePadding.equalsIgnoreCase("NoPadding")) {
+            throw new NoSuchPaddingException("DHIES has no padding " + thePadding + ".");
+        }
+    }
+
+    @Override
+    protected int engineGetBlockSize() {
+        return 0;
+    }
+
+    @Override
+    protected int engineGetOutputSize(final int inputLen) {
+        int total = buffer.size() + inputLen;
+        return mode == Cipher.ENCRYPT_MODE ? total + OVERHEAD : Math.max(total - OVERHEAD, 0);
+    }
+
+    @Override
+    protected byte[] engineGetIV() {
+        return null;
+    }
+
+    @Override
+    protected AlgorithmParameters engineGetParameters() {
+        return null;
+    }
+
+    @Override
+    protected void engineInit(final int opmode, final Key key, final SecureRandom random) throws InvalidKeyException {
+        buffer.reset();
+        mode = opmode;
+        if (opmode == Cipher.ENCRYPT_MODE || opmode == Cipher.WRAP_MODE) {
+            if (!(key instanceof EcPublicKey pk)) {
+                throw new InvalidKeyException("DHIES encrypts with an EcPublicKey.");
+            }
+            mode = Cipher.ENCRYPT_MODE;
+            publicKey = pk.getPoint();
+        } else {
+            if (!(key instanceof EcPrivateKey sk)) {
+                throw new InvalidKeyException("DHIES decrypts with an EcPrivateKey.");
+            }
+            mode = Cipher.DECRYPT_MODE;
+            privateKey = sk.getScalar();
+        }
+    }
+
+    @Override
+    protected void engineInit(final int opmode, final Key key, final AlgorithmParameterSpec params, final SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("DHIES takes no parameters.");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected void engineInit(final int opmode, final Key key, final AlgorithmParameters params, final SecureRandom random)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params != null) {
+            throw new InvalidAlgorithmParameterException("DHIES takes no parameters.");
+        }
+        engineInit(opmode, key, random);
+    }
+
+    @Override
+    protected byte[] engineUpdate(final byte[] input, final int inputOffset, final int inputLen) {
+        buffer.write(input, inputOffset, inputLen);
+        return new byte[0];
+    }
+
+    @Override
+    protected int engineUpdate(final byte[] input, final int inputOffset, final int inputLen,
+                               final byte[] output, final int outputOffset) {
+        buffer.write(input, inputOffset, inputLen);
+        return 0;
+    }
+
+    @Override
+    protected byte[] engineDoFinal(final byte[] input, final int inputOffset, final int inputLen)
+            throws IllegalBlockSizeException, BadPaddingException {
+        if (input != null) {
+            buffer.write(input, inputOffset, inputLen);
+        }
+        byte[] data = buffer.toByteArray();
+        buffer.reset();
+        if (mode == Cipher.ENCRYPT_MODE) {
+            return ec.encrypt(data, publicKey).toBytes();
+        }
+        Cryptogram crypt;
+        try {
+            crypt = Cryptogram.fromBytes(data);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalBlockSizeException(e.getMessage());
+        }
+        byte[] dec = EllipticCurve.decrypt(crypt, privateKey);
+        // accept if and only if t = t'
+        if (dec[dec.length - 1] != 1) {
+            throw new AEADBadTagException("Tag mismatch, the cryptogram has been tampered.");
+        }
+        return Arrays.copyOf(dec, dec.length - 1);
+    }
+
+    @Override
+    protected int engineDoFinal(final byte[] input, final int inputOffset, final int inputLen,
+                                final byte[] output, final int outputOffset)
+            throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+        if (output.length - outputOffset < engineGetOutputSize(input == null ? 0 : inputLen)) {
+            throw new ShortBufferException("Output buffer is too short.");
+        }
+        byte[] result = engineDoFinal(input, inputOffset, inputLen);
+        System.arraycopy(result, 0, output, outputOffset, result.length);
+        return result.length;
+    }
+}
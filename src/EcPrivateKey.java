@@ -0,0 +1,68 @@
+import java.security.PrivateKey;
+
+/**
+ * An Ed448-Goldilocks private key s as a JCA key, for the DHIES {@link javax.crypto.Cipher}
+ * of the {@link CryptographyProvider}. Encoded as the 56 byte little-endian scalar.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class EcPrivateKey implements PrivateKey {
+    /** Serial version of the key. */
+    private static final long serialVersionUID = 1L;
+
+    /** The scalar s in little-endian. */
+    private final byte[] encoded;
+
+    /**
+     * Constructs the key.
+     *
+     * @param theS the private key s
+     */
+    public EcPrivateKey(final Scalar theS) {
+        encoded = theS.toLittleEndian();
+    }
+
+    /**
+     * Derives the private key from a passphrase, like every other part of this project.
+     *
+     * @param thePassphrase the passphrase
+     * @return the private key
+     */
+    public static EcPrivateKey fromPassphrase(final String thePassphrase) {
+        return new EcPrivateKey(EllipticCurve.privateKey(thePassphrase.getBytes()));
+    }
+
+    /**
+     * Gets the private key scalar.
+     *
+     * @return the scalar s
+     */
+    Scalar getScalar() {
+        return Scalar.fromLittleEndian(encoded);
+    }
+
+    /**
+     * Gets the matching public key V = s*G.
+     *
+     * @return the public key
+     */
+    public EcPublicKey getPublicKey() {
+        return new EcPublicKey(EllipticCurvePoint.getPublicGenerator().multiplyByScalar(getScalar()));
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return "DHIES";
+    }
+
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+}
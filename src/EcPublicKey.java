@@ -0,0 +1,49 @@
+import java.security.PublicKey;
+
+/**
+ * An Ed448-Goldilocks public key V as a JCA key, for the DHIES {@link javax.crypto.Cipher}
+ * of the {@link CryptographyProvider}. Encoded as the compressed 57 byte point.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class EcPublicKey implements PublicKey {
+    /** Serial version of the key. */
+    private static final long serialVersionUID = 1L;
+
+    /** The point V in its compressed encoding. */
+    private final byte[] encoded;
+
+    /**
+     * Constructs the key.
+     *
+     * @param theV the public key point V
+     */
+    public EcPublicKey(final EllipticCurvePoint theV) {
+        encoded = theV.toBytes();
+    }
+
+    /**
+     * Gets the public key point.
+     *
+     * @return the point V
+     */
+    public EllipticCurvePoint getPoint() {
+        return EllipticCurvePoint.fromBytes(encoded);
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return "DHIES";
+    }
+
+    @Override
+    public String getFormat() {
+        return "RAW";
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        return encoded.clone();
+    }
+}
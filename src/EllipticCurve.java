@@ -1,7 +1,23 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * This class contains methods to perform elliptic curve cryptography using an Edwards curve.
@@ -20,21 +36,51 @@ public final class EllipticCurve implements EllipticCurveCryptography {
     public static final BigInteger r = BigInteger.TWO.pow(446).
             subtract(new BigInteger("13818066809895115352007386748515426880336692474882178609894547503885"));
 
+    /** Byte length of a scalar mod r or a coordinate mod p in the key store. 448 / 8 = 56 */
+    static final int KEY_BYTES = 56;
+    /** Byte length of one key store record: s || V with V in its compressed encoding. */
+    public static final int KEY_RECORD_BYTES = KEY_BYTES + EllipticCurvePoint.ENCODED_BYTES;
+    /** How many seeds are derived in parallel before their records are written out. */
+    private static final int KEY_BATCH_SIZE = 1024;
+    /** Read buffer size for streaming a message through the prehash. */
+    private static final int PREHASH_BUFFER_BYTES = 1 << 16;
+    /** Header line of a multi-recipient cryptogram. */
+    public static final String MULTI_RECIPIENT_HEADER = "Multi-Recipient Cryptogram:";
+
+    /** Optional pool of precomputed ephemeral key pairs, null to generate them on demand. */
+    private final EphemeralPool ephemeralPool;
+
+    /**
+     * Constructs the elliptic curve cryptography that generates ephemeral key pairs on demand.
+     */
+    public EllipticCurve() {
+        this(null);
+    }
+
+    /**
+     * Constructs the elliptic curve cryptography that takes its ephemeral key pairs from a pool,
+     * so that encryption only pays for k*V and KMAC on the request path.
+     *
+     * @param theEphemeralPool the pool of precomputed ephemeral key pairs, or null for none
+     */
+    public EllipticCurve(final EphemeralPool theEphemeralPool) {
+        ephemeralPool = theEphemeralPool;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void generateKeyPairToFile(final String thePassphrase, final PrintStream thePrivateKeyFile, final PrintStream thePublicKeyFile) {
-        // s <- KMACXOF256(pw, “”, 448, “SK”)
-        byte[] s_0 = KMAC.KMACXOF256(thePassphrase.getBytes(), "".getBytes(), 448, "SK");
+        long start = CryptoMetrics.start();
 
         // private key
-        // s <- 4s (mod r)
-        BigInteger s = BigInteger.valueOf(4).multiply(new BigInteger(s_0)).mod(r);
+        Scalar s = privateKey(thePassphrase.getBytes());
 
         // public key
         // V <- s*G
         EllipticCurvePoint V = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(s);
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_KEYGEN, start);
 
         thePrivateKeyFile.printf("Private Key:\n%s", s);
         thePublicKeyFile.printf("Public Key (point):\n%s", V);
@@ -45,23 +91,29 @@ public final class EllipticCurve implements EllipticCurveCryptography {
      */
     @Override
     public void encrypt(final byte[] theMessage, final EllipticCurvePoint thePublicKey, final PrintStream theEncryptedFile) {
-        // k <- Random(448)
-        SecureRandom sr = new SecureRandom();
-        byte[] rand448 = new byte[56]; // 448 / 8 = 56
-        sr.nextBytes(rand448);
-        BigInteger k = new BigInteger(rand448);
+        printCryptogram(encrypt(theMessage, thePublicKey), theEncryptedFile);
+    }
 
-        // k <- 4k (mod r)
-        k = BigInteger.valueOf(4).multiply(k).mod(r);
+    /**
+     * Encrypts a message under a public key.
+     *
+     * @param theMessage   message to encrypt as byte array
+     * @param thePublicKey the public key as an elliptic curve point
+     * @return the cryptogram (Z, c, t)
+     */
+    public Cryptogram encrypt(final byte[] theMessage, final EllipticCurvePoint thePublicKey) {
+        long start = CryptoMetrics.start();
 
-        // W <- k*V
-        EllipticCurvePoint W = thePublicKey.multiplyByScalar(k);
+        // k <- Random(448), k <- 4k (mod r), Z <- k*G
+        EphemeralKey ephemeral = ephemeralKey();
+        EllipticCurvePoint Z = ephemeral.getZ();
+        Scalar k = ephemeral.consume();
 
-        // Z <- k*G
-        EllipticCurvePoint Z = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(k);
+        // W_x <- (k*V)_x, by the Montgomery ladder
+        BigInteger W_x = thePublicKey.multiplyByScalarX(k);
 
         // (ka || ke) <- KMACXOF256(W_x, “”, 2 * 448, “PK”)
-        byte[] kake = KMAC.KMACXOF256(W.getX().toByteArray(), "".getBytes(), 896, "PK");
+        byte[] kake = KMAC.KMACXOF256(W_x.toByteArray(), "".getBytes(), 896, "PK");
 
         // 896 / 8 = 112 byte length
         // c <- KMACXOF256(ke, “”, |m|, “PKE”) XOR m
@@ -74,9 +126,55 @@ public final class EllipticCurve implements EllipticCurveCryptography {
         byte[] t = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 0, 56), theMessage, 448, "PKA");
 
         // cryptogram (Z, c, t)
-        theEncryptedFile.printf("Cryptogram:\n%s\n", Z);
-        ByteStringUtil.printHexadecimals(c, theEncryptedFile);
-        ByteStringUtil.printHexadecimals(t, theEncryptedFile);
+        Cryptogram cryptogram = new Cryptogram(Z, c, t);
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_ENCRYPT, start);
+        return cryptogram;
+    }
+
+    /**
+     * Encrypts a message under a public key and writes the version 2 cryptogram in the text format.
+     *
+     * @param theMessage       message to encrypt as byte array
+     * @param thePublicKey     the public key V
+     * @param theEncryptedFile the file for outputting the cryptogram
+     */
+    public void encryptDuplex(final byte[] theMessage, final EllipticCurvePoint thePublicKey, final PrintStream theEncryptedFile) {
+        printCryptogram(encryptDuplex(theMessage, thePublicKey), theEncryptedFile);
+    }
+
+    /**
+     * Encrypts a message under a public key in one pass with the duplex sponge {@link SpongeWrap},
+     * which needs about half the permutations of {@link #encrypt(byte[], EllipticCurvePoint)}.
+     *
+     * @param theMessage   message to encrypt as byte array
+     * @param thePublicKey the public key V
+     * @return the version 2 cryptogram (Z, c, t)
+     */
+    public Cryptogram encryptDuplex(final byte[] theMessage, final EllipticCurvePoint thePublicKey) {
+        long start = CryptoMetrics.start();
+
+        // k <- Random(448), k <- 4k (mod r), Z <- k*G
+        EphemeralKey ephemeral = ephemeralKey();
+        EllipticCurvePoint Z = ephemeral.getZ();
+        Scalar k = ephemeral.consume();
+
+        // W_x <- (k*V)_x, by the Montgomery ladder
+        BigInteger W_x = thePublicKey.multiplyByScalarX(k);
+
+        // ke <- KMACXOF256(W_x, “”, 448, “PW”)
+        byte[] ke = KMAC.KMACXOF256(W_x.toByteArray(), "".getBytes(), 448, "PW");
+
+        // (c, t) <- SpongeWrap(ke, “PWE”, m) with |t| = 448
+        SpongeWrap wrap = new SpongeWrap(ke, "PWE");
+        byte[] c = new byte[theMessage.length];
+        wrap.encrypt(theMessage, 0, c, 0, theMessage.length);
+        byte[] t = new byte[KEY_BYTES];
+        wrap.tag(t, 0, t.length);
+
+        // cryptogram (Z, c, t)
+        Cryptogram cryptogram = new Cryptogram(Z, c, t, Cryptogram.DUPLEX);
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_ENCRYPT, start);
+        return cryptogram;
     }
 
     /**
@@ -84,22 +182,98 @@ public final class EllipticCurve implements EllipticCurveCryptography {
      */
     @Override
     public byte[] decrypt(final Cryptogram theCryptogram, final String thePassphrase) {
-        // getting c and t from cryptogram
-        byte[] c = theCryptogram.getC();
-        byte[] t = theCryptogram.getT();
+        // private key
+        Scalar s = privateKey(thePassphrase.getBytes());
 
-        // s <- KMACXOF256(pw, “”, 448, “SK”)
-        byte[] s_0 = KMAC.KMACXOF256(thePassphrase.getBytes(), "".getBytes(), 448, "SK");
+        return decrypt(theCryptogram, s);
+    }
 
+    /**
+     * Decrypts many cryptograms for one recipient key. The private key s is derived only once,
+     * and the cryptograms are decrypted concurrently on a bounded worker pool. Cryptograms are
+     * read from the iterator only as fast as the workers keep up, and every result is handed to
+     * the consumer as soon as it is ready, so results may arrive out of order.
+     * The consumer is never called by two threads at the same time. Every counted cryptogram gets
+     * exactly one result: one that cannot be decrypted at all is reported as invalid with no plaintext.
+     *
+     * @param theCryptograms the cryptograms
+     * @param thePassphrase  the passphrase from the key pair
+     * @param theParallelism how many cryptograms are decrypted at the same time
+     * @param theResults     the consumer of the results
+     * @return the number of cryptograms decrypted
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws CompletionException wrapping the first exception of the consumer, after which no
+     *         further cryptograms are read and the workers are waited for
+     */
+    public long decryptAll(final Iterator<Cryptogram> theCryptograms, final String thePassphrase,
+                           final int theParallelism, final Consumer<DecryptionResult> theResults) throws InterruptedException {
         // private key
-        // s <- 4s (mod r)
-        BigInteger s = BigInteger.valueOf(4).multiply(new BigInteger(s_0)).mod(r);
+        final Scalar s = privateKey(thePassphrase.getBytes());
+
+        // at most twice the parallelism in flight, so the reader never runs far ahead
+        final Semaphore inFlight = new Semaphore(2 * theParallelism);
+        final ExecutorService workers = Executors.newFixedThreadPool(theParallelism);
+        // the first exception of the consumer, which stops the batch
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        long count = 0;
+        try {
+            while (failure.get() == null && theCryptograms.hasNext()) {
+                final Cryptogram cryptogram = theCryptograms.next();
+                final long index = count++;
+                inFlight.acquire();
+                workers.execute(() -> {
+                    try {
+                        DecryptionResult result;
+                        try {
+                            byte[] dec = decrypt(cryptogram, s);
+                            // removes the last byte because it just encodes whether t = t'
+                            result = new DecryptionResult(index, Arrays.copyOf(dec, dec.length - 1), dec[dec.length - 1] == 1);
+                        } catch (RuntimeException e) {
+                            // a malformed cryptogram still gets its result, just never a valid one
+                            result = new DecryptionResult(index, new byte[0], false);
+                        }
+                        synchronized (theResults) {
+                            theResults.accept(result);
+                        }
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        if (failure.get() != null) {
+            throw new CompletionException("Oh no! The consumer of the decryptions failed.", failure.get());
+        }
+        return count;
+    }
+
+    /**
+     * Decrypts a cryptogram with an already derived private key.
+     *
+     * @param theCryptogram the ciphertext in a cryptogram
+     * @param s             the private key
+     * @return the plaintext message as byte string || 0 or 1 depending on if t = t'
+     */
+    static byte[] decrypt(final Cryptogram theCryptogram, final Scalar s) {
+        if (theCryptogram.getVersion() == Cryptogram.DUPLEX) {
+            return decryptDuplex(theCryptogram, s);
+        }
+        long start = CryptoMetrics.start();
 
-        // W <- s * Z
-        EllipticCurvePoint W = theCryptogram.getZ().multiplyByScalar(s);
+        // getting c and t from cryptogram
+        byte[] c = theCryptogram.getC();
+        byte[] t = theCryptogram.getT();
+
+        // W_x <- (s * Z)_x, by the Montgomery ladder
+        BigInteger W_x = theCryptogram.getZ().multiplyByScalarX(s);
 
         // (ka || ke) <- KMACXOF256(W_x, “”, 2 * 448, “PK”)
-        byte[] kake = KMAC.KMACXOF256(W.getX().toByteArray(), "".getBytes(), 896, "PK");
+        byte[] kake = KMAC.KMACXOF256(W_x.toByteArray(), "".getBytes(), 896, "PK");
 
         // m <- KMACXOF256(ke, “”, |c|, “PKE”) XOR c
         byte[] m = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 56, 112), "".getBytes(), 8 * c.length, "PKE");
@@ -111,7 +285,160 @@ public final class EllipticCurve implements EllipticCurveCryptography {
         byte[] t_prime = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 0, 56), m, 448, "PKA");
 
         // m || (t=t')
-        return ByteStringUtil.concat(m, Arrays.equals(t, t_prime) ? new byte[] {1} : new byte[] {0});
+        byte[] decryption = ByteStringUtil.concat(m, Arrays.equals(t, t_prime) ? new byte[] {1} : new byte[] {0});
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_DECRYPT, start);
+        return decryption;
+    }
+
+    /**
+     * Decrypts a version 2 cryptogram with the private key.
+     *
+     * @param theCryptogram the cryptogram (Z, c, t)
+     * @param s             the private key
+     * @return the plaintext message as byte string || 0 or 1 depending on if t = t'
+     */
+    private static byte[] decryptDuplex(final Cryptogram theCryptogram, final Scalar s) {
+        long start = CryptoMetrics.start();
+        byte[] c = theCryptogram.getC();
+        byte[] t = theCryptogram.getT();
+
+        // W_x <- (s * Z)_x, by the Montgomery ladder
+        BigInteger W_x = theCryptogram.getZ().multiplyByScalarX(s);
+
+        // ke <- KMACXOF256(W_x, “”, 448, “PW”)
+        byte[] ke = KMAC.KMACXOF256(W_x.toByteArray(), "".getBytes(), 448, "PW");
+
+        // m <- SpongeWrap^-1(ke, “PWE”, c), t' is squeezed after the last block
+        SpongeWrap wrap = new SpongeWrap(ke, "PWE");
+        byte[] decryption = new byte[c.length + 1];
+        wrap.decrypt(c, 0, decryption, 0, c.length);
+
+        // m || (t=t')
+        // a shortened t would be easier to forge, so only a full 448 bit tag is accepted
+        decryption[c.length] = (byte) (t.length == KEY_BYTES && wrap.verify(t, 0, t.length) ? 1 : 0);
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_DECRYPT, start);
+        return decryption;
+    }
+
+    /**
+     * Encrypts a message once for several public keys. The message is encrypted under a random
+     * content key, and that key is wrapped for every recipient under W_i = k*V_i with one shared
+     * Z = k*G. The payload costs one pass no matter how many recipients there are, and the
+     * scalar multiplications k*V_i run in parallel.
+     *
+     * @param theMessage       message to encrypt as byte array
+     * @param thePublicKeys    the public keys of the recipients
+     * @param theEncryptedFile the file for outputting the cryptogram Z || n || (w_i || t_i)* || c || t
+     */
+    public void encrypt(final byte[] theMessage, final List<EllipticCurvePoint> thePublicKeys, final PrintStream theEncryptedFile) {
+        // k <- Random(448), k <- 4k (mod r), Z <- k*G
+        EphemeralKey ephemeral = ephemeralKey();
+        EllipticCurvePoint Z = ephemeral.getZ();
+        Scalar k = ephemeral.consume();
+
+        // ck <- Random(512)
+        byte[] ck = new byte[64];
+        new SecureRandom().nextBytes(ck);
+
+        // (ka || ke) <- KMACXOF256(ck, “”, 2 * 448, “MK”)
+        byte[] kake = KMAC.KMACXOF256(ck, "".getBytes(), 896, "MK");
+
+        // c <- KMACXOF256(ke, “”, |m|, “PKE”) XOR m
+        byte[] c = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 56, 112), "".getBytes(), 8 * theMessage.length, "PKE");
+        for (int i = 0; i < theMessage.length; i++) { // c.length == message.length
+            c[i] ^= theMessage[i];
+        }
+
+        // t <- KMACXOF256(ka, m, 448, “PKA”)
+        byte[] t = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 0, 56), theMessage, 448, "PKA");
+
+        // for every recipient: W_i <- k*V_i (only its x, by the Montgomery ladder), then (w_i, t_i) wraps ck under W_i
+        byte[][][] wraps = IntStream.range(0, thePublicKeys.size()).parallel()
+                .mapToObj(i -> wrapContentKey(ck, thePublicKeys.get(i).multiplyByScalarX(k)))
+                .toArray(byte[][][]::new);
+
+        // cryptogram (Z, n, (w_i, t_i)*, c, t)
+        theEncryptedFile.printf("%s\n%s\n%d\n", MULTI_RECIPIENT_HEADER, Z, wraps.length);
+        for (byte[][] wrap : wraps) {
+            ByteStringUtil.printHexadecimals(wrap[0], theEncryptedFile);
+            ByteStringUtil.printHexadecimals(wrap[1], theEncryptedFile);
+        }
+        ByteStringUtil.printHexadecimals(c, theEncryptedFile);
+        ByteStringUtil.printHexadecimals(t, theEncryptedFile);
+    }
+
+    /**
+     * Decrypts a multi-recipient cryptogram. The shared secret W = s*Z is computed once,
+     * then every wrapped content key is tried until one of their tags matches.
+     *
+     * @param theCryptogram the multi-recipient cryptogram
+     * @param thePassphrase the passphrase from the key pair
+     * @return the plaintext message as byte string || 0 or 1 depending on if t = t'
+     */
+    public byte[] decrypt(final MultiRecipientCryptogram theCryptogram, final String thePassphrase) {
+        // private key
+        Scalar s = privateKey(thePassphrase.getBytes());
+
+        // W_x <- (s * Z)_x, by the Montgomery ladder
+        BigInteger W_x = theCryptogram.getZ().multiplyByScalarX(s);
+
+        // (ka || ke) <- KMACXOF256(W_x, “”, 2 * 448, “PK”)
+        byte[] kake = KMAC.KMACXOF256(W_x.toByteArray(), "".getBytes(), 896, "PK");
+        byte[] ka = Arrays.copyOfRange(kake, 0, 56);
+        byte[] ke = Arrays.copyOfRange(kake, 56, 112);
+
+        for (int i = 0; i < theCryptogram.getWrappedKeys().size(); i++) {
+            // ck <- KMACXOF256(ke, “”, 512, “PKW”) XOR w_i
+            byte[] w = theCryptogram.getWrappedKeys().get(i);
+            byte[] ck = KMAC.KMACXOF256(ke, "".getBytes(), 8 * w.length, "PKW");
+            for (int j = 0; j < w.length; j++) {
+                ck[j] ^= w[j];
+            }
+            // accept the wrap iff t_i = KMACXOF256(ka, ck, 448, “PKWA”)
+            if (!Arrays.equals(theCryptogram.getWrapTags().get(i), KMAC.KMACXOF256(ka, ck, 448, "PKWA"))) {
+                continue;
+            }
+
+            // (ka || ke) <- KMACXOF256(ck, “”, 2 * 448, “MK”)
+            byte[] c = theCryptogram.getC();
+            byte[] content = KMAC.KMACXOF256(ck, "".getBytes(), 896, "MK");
+
+            // m <- KMACXOF256(ke, “”, |c|, “PKE”) XOR c
+            byte[] m = KMAC.KMACXOF256(Arrays.copyOfRange(content, 56, 112), "".getBytes(), 8 * c.length, "PKE");
+            for (int j = 0; j < c.length; j++) { // c.length == m.length
+                m[j] ^= c[j];
+            }
+
+            // t' <- KMACXOF256(ka, m, 448, “PKA”)
+            byte[] t_prime = KMAC.KMACXOF256(Arrays.copyOfRange(content, 0, 56), m, 448, "PKA");
+
+            // m || (t=t')
+            return ByteStringUtil.concat(m, Arrays.equals(theCryptogram.getT(), t_prime) ? new byte[] {1} : new byte[] {0});
+        }
+        // none of the content keys were wrapped for this passphrase
+        return new byte[] {0};
+    }
+
+    /**
+     * Wraps the content key of a multi-recipient cryptogram under the shared secret of one recipient.
+     *
+     * @param theContentKey the content key ck
+     * @param theW_x        the x coordinate of the shared secret W = k*V of the recipient
+     * @return the wrapped key w and its tag t as {w, t}
+     */
+    private static byte[][] wrapContentKey(final byte[] theContentKey, final BigInteger theW_x) {
+        // (ka || ke) <- KMACXOF256(W_x, “”, 2 * 448, “PK”)
+        byte[] kake = KMAC.KMACXOF256(theW_x.toByteArray(), "".getBytes(), 896, "PK");
+
+        // w <- KMACXOF256(ke, “”, |ck|, “PKW”) XOR ck
+        byte[] w = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 56, 112), "".getBytes(), 8 * theContentKey.length, "PKW");
+        for (int i = 0; i < theContentKey.length; i++) {
+            w[i] ^= theContentKey[i];
+        }
+
+        // t <- KMACXOF256(ka, ck, 448, “PKWA”)
+        byte[] t = KMAC.KMACXOF256(Arrays.copyOfRange(kake, 0, 56), theContentKey, 448, "PKWA");
+        return new byte[][] {w, t};
     }
 
     /**
@@ -119,39 +446,136 @@ public final class EllipticCurve implements EllipticCurveCryptography {
      */
     @Override
     public void fileSignature(final byte[] theMessage, final String thePassphrase, final PrintStream theOutFile) {
-        // s <- KMACXOF256(pw, “”, 448, “SK”)
-        byte[] s_0 = KMAC.KMACXOF256(thePassphrase.getBytes(), "".getBytes(), 448, "SK");
+        printSignature(sign(theMessage, thePassphrase), theOutFile);
+    }
 
+    /**
+     * Signs a message.
+     *
+     * @param theMessage    the message
+     * @param thePassphrase the passphrase from the key pair
+     * @return the signature (h, z)
+     */
+    public Signature sign(final byte[] theMessage, final String thePassphrase) {
         // private key
-        // s <- 4s (mod r)
-        BigInteger s = BigInteger.valueOf(4).multiply(new BigInteger(s_0)).mod(r);
+        Scalar s = privateKey(thePassphrase.getBytes());
+
+        return sign(theMessage, s, "N", "T");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean verifySignature(final byte[] theMessage, final Signature theSignature, final EllipticCurvePoint thePublicKey) {
+        return verify(theMessage, theSignature, thePublicKey, "T");
+    }
+
+    /**
+     * Signs a file of any size in prehash mode, analogous to Ed448ph. The file is read exactly once
+     * and streamed through cSHAKE256 to a 64 byte digest, then the (h, z) scheme signs the digest.
+     * Prehashed signatures use their own customization strings so they never verify as
+     * signatures of the digest itself.
+     *
+     * @param theMessage    the message as a stream
+     * @param thePassphrase the passphrase from the key pair
+     * @param theOutFile    the file for outputting the signature
+     * @throws IOException if reading the message fails
+     */
+    public void fileSignaturePrehashed(final InputStream theMessage, final String thePassphrase, final PrintStream theOutFile) throws IOException {
+        byte[] digest = prehash(theMessage);
+
+        // private key
+        Scalar s = privateKey(thePassphrase.getBytes());
+
+        printSignature(sign(digest, s, "NPH", "TPH"), theOutFile);
+    }
+
+    /**
+     * Verifies a prehashed signature of a file of any size. The file is read exactly once.
+     *
+     * @param theMessage    the message as a stream
+     * @param theSignature  the signature
+     * @param thePublicKey  the public key
+     * @return true if verified and false otherwise
+     * @throws IOException if reading the message fails
+     * @see #fileSignaturePrehashed(InputStream, String, PrintStream)
+     */
+    public boolean verifySignaturePrehashed(final InputStream theMessage, final Signature theSignature, final EllipticCurvePoint thePublicKey) throws IOException {
+        return verify(prehash(theMessage), theSignature, thePublicKey, "TPH");
+    }
+
+    /**
+     * Streams a message through cSHAKE256 to the 64 byte digest signed in prehash mode.
+     * Memory use is one read buffer no matter the size of the message.
+     *
+     * @param theMessage the message as a stream
+     * @return d <- cSHAKE256(m, 512, “”, “PH”)
+     * @throws IOException if reading the message fails
+     */
+    static byte[] prehash(final InputStream theMessage) throws IOException {
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.cShake256_init(c, "", "PH");
+
+        byte[] buffer = new byte[PREHASH_BUFFER_BYTES];
+        int n;
+        while ((n = theMessage.read(buffer)) != -1) {
+            shake.sha3_update(c, buffer, n);
+        }
+        shake.xof(c);
+        byte[] digest = new byte[64];
+        shake.shake_out(c, digest, digest.length);
+        return digest;
+    }
+
+    /**
+     * Signs a message with the (h, z) scheme.
+     *
+     * @param theMessage            the message
+     * @param thePrivateKey         the private key s
+     * @param theNonceCustomization customization string for the nonce k
+     * @param theHashCustomization  customization string for the hash h
+     * @return the signature (h, z)
+     */
+    private static Signature sign(final byte[] theMessage, final Scalar thePrivateKey,
+                                  final String theNonceCustomization, final String theHashCustomization) {
+        long start = CryptoMetrics.start();
 
         // k <- KMACXOF256(s, m, 448, “N”)
-        byte[] k_0 = KMAC.KMACXOF256(s.toByteArray(), theMessage, 448, "N");
+        byte[] k_0 = KMAC.KMACXOF256(thePrivateKey.toBigInteger().toByteArray(), theMessage, 448, theNonceCustomization);
 
         // k <- 4k (mod r)
-        BigInteger k = BigInteger.valueOf(4).multiply(new BigInteger(k_0)).mod(r);
+        Scalar k = Scalar.FOUR.multiply(Scalar.fromTwosComplement(k_0));
 
         // U <- k * G
         EllipticCurvePoint U = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(k);
 
         // h <- KMACXOF256(U_x, m, 448, “T”)
-        byte[] h_0 = KMAC.KMACXOF256(U.getX().toByteArray(), theMessage, 448, "T");
+        byte[] h_0 = KMAC.KMACXOF256(U.getX().toByteArray(), theMessage, 448, theHashCustomization);
         BigInteger h = new BigInteger(1, h_0);
 
         // z <- (k - hs) mod r
-        BigInteger z = k.subtract(h.multiply(s)).mod(r);
+        Scalar z = k.subtract(Scalar.of(h).multiply(thePrivateKey));
 
         // signature: (h, z)
-        theOutFile.printf("Signature:\n%s\n", h);
-        theOutFile.printf("%s", z);
+        Signature signature = new Signature(h, z.toBigInteger());
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_SIGN, start);
+        return signature;
     }
 
     /**
-     * {@inheritDoc}
+     * Verifies a message against a (h, z) signature.
+     *
+     * @param theMessage           the message
+     * @param theSignature         the signature
+     * @param thePublicKey         the public key
+     * @param theHashCustomization customization string for the hash h
+     * @return true if verified and false otherwise
      */
-    @Override
-    public boolean verifySignature(final byte[] theMessage, final Signature theSignature, final EllipticCurvePoint thePublicKey) {
+    private static boolean verify(final byte[] theMessage, final Signature theSignature,
+                                  final EllipticCurvePoint thePublicKey, final String theHashCustomization) {
+        long start = CryptoMetrics.start();
         BigInteger h = theSignature.getH();
         BigInteger z = theSignature.getZ();
 
@@ -171,14 +595,139 @@ public final class EllipticCurve implements EllipticCurveCryptography {
          */
 
         // U <- (z * G) + (h * V)
-        EllipticCurvePoint U = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(z)
-                               .add(thePublicKey.multiplyByScalar(h));
+        EllipticCurvePoint U = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(Scalar.of(z))
+                               .add(thePublicKey.multiplyByScalar(Scalar.of(h)));
 
         // h' <- KMACXOF256(U_x, m, 448, “T”)
-        byte[] h_prime_0 = KMAC.KMACXOF256(U.getX().toByteArray(), theMessage, 448, "T");
+        byte[] h_prime_0 = KMAC.KMACXOF256(U.getX().toByteArray(), theMessage, 448, theHashCustomization);
         BigInteger h_prime = new BigInteger(1, h_prime_0);
 
         // accept iff h' = h
-        return h.equals(h_prime);
+        boolean verified = h.equals(h_prime);
+        CryptoMetrics.record(CryptoMetrics.Operation.EC_VERIFY, start);
+        return verified;
+    }
+
+    /**
+     * Writes a cryptogram in the text format read back by {@link Main}.
+     *
+     * @param theCryptogram    the cryptogram (Z, c, t)
+     * @param theEncryptedFile the file for outputting the cryptogram
+     */
+    static void printCryptogram(final Cryptogram theCryptogram, final PrintStream theEncryptedFile) {
+        theEncryptedFile.printf("%s\n%s\n", theCryptogram.getHeader(), theCryptogram.getZ());
+        ByteStringUtil.printHexadecimals(theCryptogram.getC(), theEncryptedFile);
+        ByteStringUtil.printHexadecimals(theCryptogram.getT(), theEncryptedFile);
+    }
+
+    /**
+     * Writes a signature in the text format read back by {@link Main}.
+     *
+     * @param theSignature the signature (h, z)
+     * @param theOutFile   the file for outputting the signature
+     */
+    static void printSignature(final Signature theSignature, final PrintStream theOutFile) {
+        theOutFile.printf("Signature:\n%s\n", theSignature.getH());
+        theOutFile.printf("%s", theSignature.getZ());
+    }
+
+    /**
+     * Generates one key pair for every seed and streams them to a compact binary key store.
+     * Each record is s || V with s as a fixed-width 56 byte little-endian integer
+     * and V in its compressed 57 byte encoding.
+     * The seeds are consumed in batches whose fixed-base multiplications V = s*G run in parallel
+     * on the common fork-join pool, so only one batch is held in memory at a time.
+     *
+     * @param theSeeds    the passphrases or seeds as byte strings
+     * @param theKeyStore the output for the key store records, in the same order as the seeds
+     * @return the number of key pairs written
+     * @throws IOException if writing to the key store fails
+     */
+    public long generateKeyPairs(final Iterator<byte[]> theSeeds, final OutputStream theKeyStore) throws IOException {
+        final OutputStream out = new BufferedOutputStream(theKeyStore, KEY_BATCH_SIZE * KEY_RECORD_BYTES);
+        final List<byte[]> batch = new ArrayList<>(KEY_BATCH_SIZE);
+        long count = 0;
+
+        while (theSeeds.hasNext()) {
+            batch.clear();
+            while (theSeeds.hasNext() && batch.size() < KEY_BATCH_SIZE) {
+                batch.add(theSeeds.next());
+            }
+            // parallel streams keep the encounter order when collected into a list
+            List<byte[]> records = batch.parallelStream().map(EllipticCurve::keyRecord).toList();
+            for (byte[] record : records) {
+                out.write(record);
+            }
+            count += records.size();
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * Generates one key pair for every passphrase and streams them to a compact binary key store.
+     *
+     * @param thePassphrases the passphrases
+     * @param theKeyStore    the output for the key store records, in the same order as the passphrases
+     * @return the number of key pairs written
+     * @throws IOException if writing to the key store fails
+     * @see #generateKeyPairs(Iterator, OutputStream)
+     */
+    public long generateKeyPairs(final Stream<String> thePassphrases, final OutputStream theKeyStore) throws IOException {
+        return generateKeyPairs(thePassphrases.map(String::getBytes).iterator(), theKeyStore);
+    }
+
+    /**
+     * Derives the key pair of one seed as a key store record s || V.
+     *
+     * @param theSeed the passphrase or seed
+     * @return the key store record
+     */
+    private static byte[] keyRecord(final byte[] theSeed) {
+        Scalar s = privateKey(theSeed);
+        EllipticCurvePoint V = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(s);
+
+        byte[] record = new byte[KEY_RECORD_BYTES];
+        ByteStringUtil.toLittleEndian(s.toBigInteger(), record, 0, KEY_BYTES);
+        System.arraycopy(V.toBytes(), 0, record, KEY_BYTES, EllipticCurvePoint.ENCODED_BYTES);
+        return record;
+    }
+
+    /**
+     * Derives the private key s from a passphrase.
+     *
+     * @param thePassphrase the passphrase as a byte string
+     * @return the private key s
+     */
+    static Scalar privateKey(final byte[] thePassphrase) {
+        // s <- KMACXOF256(pw, “”, 448, “SK”)
+        byte[] s_0 = KMAC.KMACXOF256(thePassphrase, "".getBytes(), 448, "SK");
+
+        // s <- 4s (mod r)
+        return Scalar.FOUR.multiply(Scalar.fromTwosComplement(s_0));
+    }
+
+    /**
+     * Gets a one-time ephemeral key pair from the pool, or generates one if there is no pool.
+     *
+     * @return an unused ephemeral key pair
+     */
+    private EphemeralKey ephemeralKey() {
+        return ephemeralPool != null ? ephemeralPool.take() : EphemeralKey.generate();
+    }
+
+    /**
+     * Draws a random nonce scalar for encryption.
+     *
+     * @return the scalar k
+     */
+    static Scalar randomScalar() {
+        // k <- Random(448)
+        SecureRandom sr = new SecureRandom();
+        byte[] rand448 = new byte[56]; // 448 / 8 = 56
+        sr.nextBytes(rand448);
+
+        // k <- 4k (mod r)
+        return Scalar.FOUR.multiply(Scalar.fromLittleEndian(rand448));
     }
 }
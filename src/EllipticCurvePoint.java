@@ -1,5 +1,6 @@
 import java.math.BigInteger;
 import java.util.Objects;
+import java.util.stream.IntStream;
 
 /**
  * The elliptic curve that this class implements is known as Ed448-Goldilocks curve,
@@ -15,6 +16,23 @@ public final class EllipticCurvePoint {
     private static final BigInteger P = BigInteger.valueOf(2).pow(448).subtract(BigInteger.valueOf(2).pow(224)).subtract(BigInteger.ONE);
     /** The definition constant. */
     private static final BigInteger D = BigInteger.valueOf(-39081);
+    /** The public generator G, cached since it is the base of every fixed-base multiplication. */
+    private static final EllipticCurvePoint G = new EllipticCurvePoint(BigInteger.valueOf(-3).mod(P), false);
+    /** 2A of the Montgomery form, A = 2(1 + d) / (1 − d) (mod p). */
+    private static final BigInteger TWO_A = BigInteger.valueOf(4).multiply(BigInteger.ONE.add(D))
+                                                      .multiply(BigInteger.ONE.subtract(D).modInverse(P)).mod(P);
+    /** 2B of the Montgomery form, B = 4 / (1 − d) (mod p). */
+    private static final BigInteger TWO_B = BigInteger.valueOf(8).multiply(BigInteger.ONE.subtract(D).modInverse(P)).mod(P);
+    /** The ladder constant (A − 2) / 4 (mod p). */
+    private static final BigInteger A24 = TWO_A.subtract(BigInteger.valueOf(4)).multiply(BigInteger.valueOf(8).modInverse(P)).mod(P);
+    /** Byte length of the compressed encoding y || sign bit of x. */
+    public static final int ENCODED_BYTES = 57;
+    /** Byte length of the uncompressed encoding x || y. */
+    public static final int UNCOMPRESSED_BYTES = 2 * ENCODED_BYTES;
+    /** Width in bits of the windows used in variable-base scalar multiplication. */
+    private static final int WINDOW_WIDTH = Tuning.current().getWindowWidth();
+    /** Width in bits of the windows used with the table of the public generator G. */
+    private static final int GENERATOR_WINDOW_WIDTH = Tuning.current().getGeneratorWindowWidth();
 
     /** The x coordinate on the elliptic edwards curve. */
     private final BigInteger x;
@@ -46,6 +64,7 @@ public final class EllipticCurvePoint {
         BigInteger subRadicand1 = BigInteger.ONE.subtract(ySq);
         BigInteger subRadicand2 = BigInteger.ONE.add(D.negate().multiply(ySq));
         BigInteger radicand = subRadicand1.multiply(subRadicand2.modInverse(P)).mod(P);
+        CryptoMetrics.inversions(1);
 
         x = Objects.requireNonNull(sqrt(radicand, P, theLeastSignificantBitX)).mod(P);
     }
@@ -57,6 +76,100 @@ public final class EllipticCurvePoint {
         this(BigInteger.ZERO, BigInteger.ONE);
     }
 
+    /**
+     * Constructs edwards curve point at given an x and y coordinate, checking that it is on the curve.
+     * Use this instead of the constructor for points read from untrusted input.
+     *
+     * @param theX the x as a BigInteger
+     * @param theY the y as a BigInteger
+     * @return the point (x, y)
+     * @throws IllegalArgumentException if x or y are not reduced mod p or (x, y) is not on the curve
+     */
+    public static EllipticCurvePoint of(final BigInteger theX, final BigInteger theY) {
+        EllipticCurvePoint point = new EllipticCurvePoint(theX, theY);
+        if (!point.isOnCurve()) {
+            throw new IllegalArgumentException("Point is not on the curve.");
+        }
+        return point;
+    }
+
+    /**
+     * Decodes a point from its compressed (57 byte) or uncompressed (114 byte) encoding.
+     * Coordinates are loaded directly as little-endian unsigned integers, and the decoded
+     * point is always checked to be on the curve.
+     *
+     * @param theBytes the encoding
+     * @return the decoded point
+     * @throws IllegalArgumentException if the encoding is malformed or not a point on the curve
+     */
+    public static EllipticCurvePoint fromBytes(final byte[] theBytes) {
+        if (theBytes.length == UNCOMPRESSED_BYTES) {
+            return of(ByteStringUtil.fromLittleEndian(theBytes, 0, ENCODED_BYTES),
+                      ByteStringUtil.fromLittleEndian(theBytes, ENCODED_BYTES, ENCODED_BYTES));
+        }
+        if (theBytes.length != ENCODED_BYTES || (theBytes[ENCODED_BYTES - 1] & 0x7F) != 0) {
+            throw new IllegalArgumentException("Point encoding must be 57 or 114 bytes.");
+        }
+        // y in the first 56 bytes, the least significant bit of x in the top bit of the last byte
+        BigInteger y = ByteStringUtil.fromLittleEndian(theBytes, 0, ENCODED_BYTES - 1);
+        boolean lsb = (theBytes[ENCODED_BYTES - 1] & 0x80) != 0;
+        if (y.compareTo(P) >= 0) {
+            throw new IllegalArgumentException("Point is not on the curve.");
+        }
+
+        // x = ±√( (1 − y^2) / (1 + 39081 * y^2) ) mod p
+        BigInteger ySq = y.multiply(y).mod(P);
+        BigInteger radicand = BigInteger.ONE.subtract(ySq).multiply(BigInteger.ONE.add(D.negate().multiply(ySq)).modInverse(P)).mod(P);
+        CryptoMetrics.inversions(1);
+        BigInteger x = sqrt(radicand, P, lsb);
+        if (x == null || (x.signum() == 0 && lsb)) {
+            throw new IllegalArgumentException("Point is not on the curve.");
+        }
+        return new EllipticCurvePoint(x.mod(P), y);
+    }
+
+    /**
+     * Encodes this point in 57 bytes: y as a little-endian unsigned integer in the first 56 bytes
+     * and the least significant bit of x as the top bit of the last byte.
+     *
+     * @return the compressed encoding
+     */
+    public byte[] toBytes() {
+        byte[] b = new byte[ENCODED_BYTES];
+        ByteStringUtil.toLittleEndian(y, b, 0, ENCODED_BYTES - 1);
+        if (x.testBit(0)) {
+            b[ENCODED_BYTES - 1] = (byte) 0x80;
+        }
+        return b;
+    }
+
+    /**
+     * Encodes this point in 114 bytes: x then y as 57 byte little-endian unsigned integers.
+     *
+     * @return the uncompressed encoding
+     */
+    public byte[] toUncompressedBytes() {
+        byte[] b = new byte[UNCOMPRESSED_BYTES];
+        ByteStringUtil.toLittleEndian(x, b, 0, ENCODED_BYTES);
+        ByteStringUtil.toLittleEndian(y, b, ENCODED_BYTES, ENCODED_BYTES);
+        return b;
+    }
+
+    /**
+     * Tests if this point is on the curve: x^2 + y^2 = 1 + d * x^2 * y^2 (mod p)
+     * with both coordinates reduced mod p.
+     *
+     * @return true if this point is on the curve
+     */
+    public boolean isOnCurve() {
+        if (x.signum() < 0 || x.compareTo(P) >= 0 || y.signum() < 0 || y.compareTo(P) >= 0) {
+            return false;
+        }
+        BigInteger xSq = x.multiply(x).mod(P);
+        BigInteger ySq = y.multiply(y).mod(P);
+        return xSq.add(ySq).subtract(BigInteger.ONE.add(D.multiply(xSq).multiply(ySq))).mod(P).signum() == 0;
+    }
+
     /**
      * Performs an elliptic curve (edwards curve) addition between this point and another point.
      * This is uses the Edwards point addition formula.
@@ -78,6 +191,8 @@ public final class EllipticCurvePoint {
         // D_y = 1 - denom
         BigInteger sumYdenom = BigInteger.ONE.subtract(denom);
 
+        CryptoMetrics.pointAddition();
+        CryptoMetrics.inversions(2);
         return new EllipticCurvePoint(sumXnumer.multiply(sumXdenom.modInverse(P)).mod(P),
                                       sumYnumer.multiply(sumYdenom.modInverse(P)).mod(P));
     }
@@ -99,9 +214,12 @@ public final class EllipticCurvePoint {
      * @return this current instance point multiplied by a scalar
      */
     public EllipticCurvePoint multiplyByScalar (final BigInteger theScalar) {
+        CryptoMetrics.scalarMultiplication();
         if (theScalar.equals(BigInteger.ZERO)) {
             return new EllipticCurvePoint(); // neutral element
         }
+        ScalarMultiplicationEvent event = new ScalarMultiplicationEvent();
+        event.begin();
         // s = (s_k, s_k-1, ... s_1, s_0)_2, s_k = 1 and it gets ignored
         String s = theScalar.toString(2); // as base 2 string
         // G (base) is "this" instance
@@ -114,9 +232,155 @@ public final class EllipticCurvePoint {
                 V = V.add(this);
             }
         }
+        event.complete(this == G, theScalar.bitLength(), "binary");
+        return V; // V = s * G
+    }
+
+    /**
+     * Fixed-window exponentiation for points in an elliptic curve. This method multiplies itself with a scalar
+     * mod r, processing the scalar in windows of bits with one table lookup and one addition per window.
+     * The table of the public generator G is computed only once. The window widths come from the {@link Tuning} profile.
+     *
+     * @param theScalar the scalar
+     * @return this current instance point multiplied by a scalar
+     */
+    public EllipticCurvePoint multiplyByScalar(final Scalar theScalar) {
+        CryptoMetrics.scalarMultiplication();
+        if (theScalar.bitLength() == 0) {
+            return new EllipticCurvePoint(); // neutral element
+        }
+        ScalarMultiplicationEvent event = new ScalarMultiplicationEvent();
+        event.begin();
+        EllipticCurvePoint V = this == G ? multiplyByScalar(theScalar, GeneratorTable.TABLE, GENERATOR_WINDOW_WIDTH)
+                                         : multiplyByScalar(theScalar, windowTable(this, WINDOW_WIDTH), WINDOW_WIDTH);
+        event.complete(this == G, theScalar.bitLength(), "fixed-window");
         return V; // V = s * G
     }
 
+    /**
+     * Computes only the x coordinate of s * this, as the ECDH shared secret needs nothing else.
+     * The point is mapped to the birationally equivalent Montgomery curve
+     * B * v^2 = u^3 + A * u^2 + u with A = 2(1 + d) / (1 − d) and B = 4 / (1 − d), where an x-only
+     * Montgomery ladder in projective (U : Z) coordinates costs a few multiplications per bit and no
+     * inversion. The ladder also yields (s + 1) * this, from which the v coordinate of s * this is
+     * recovered with the formula of Okeya and Sakurai, so the Edwards x = u / v is the same value
+     * {@link #multiplyByScalar(Scalar)} would give, at the price of one inversion at the end.
+     * <br>
+     * The ladder runs the same steps for all 448 bits of every scalar, but BigInteger arithmetic
+     * does not take constant time itself. Points the maps do not cover, those with x = 0 and results
+     * that are the neutral element, are left to {@link #multiplyByScalar(Scalar)}.
+     *
+     * @param theScalar the scalar
+     * @return the x coordinate of this current instance point multiplied by a scalar
+     */
+    public BigInteger multiplyByScalarX(final Scalar theScalar) {
+        BigInteger ex = x.mod(P);
+        if (theScalar.bitLength() == 0 || ex.signum() == 0) {
+            return multiplyByScalar(theScalar).getX().mod(P);
+        }
+        CryptoMetrics.scalarMultiplication();
+        ScalarMultiplicationEvent event = new ScalarMultiplicationEvent();
+        event.begin();
+
+        // u <- (1 + y) / (1 − y), v <- u / x, sharing 1 / ((1 − y) * x)
+        BigInteger onePlusY = BigInteger.ONE.add(y).mod(P);
+        BigInteger inv = BigInteger.ONE.subtract(y).multiply(ex).mod(P).modInverse(P);
+        BigInteger u = onePlusY.multiply(ex).mod(P).multiply(inv).mod(P);
+        BigInteger v = onePlusY.multiply(inv).mod(P);
+
+        // R0 <- O = (1 : 0), R1 <- P = (u : 1), invariant R1 − R0 = P
+        BigInteger x2 = BigInteger.ONE;
+        BigInteger z2 = BigInteger.ZERO;
+        BigInteger x3 = u;
+        BigInteger z3 = BigInteger.ONE;
+        boolean swap = false;
+        for (int i = 8 * Scalar.BYTES - 1; i >= 0; i--) {
+            boolean bit = theScalar.testBit(i);
+            if (swap != bit) {
+                BigInteger t = x2; x2 = x3; x3 = t;
+                t = z2; z2 = z3; z3 = t;
+            }
+            swap = bit;
+            // R1 <- R0 + R1, R0 <- 2 * R0 (RFC 7748, section 5)
+            BigInteger a = x2.add(z2);
+            BigInteger aa = a.multiply(a).mod(P);
+            BigInteger b = x2.subtract(z2);
+            BigInteger bb = b.multiply(b).mod(P);
+            BigInteger e = aa.subtract(bb);
+            BigInteger da = x3.subtract(z3).multiply(a).mod(P);
+            BigInteger cb = x3.add(z3).multiply(b).mod(P);
+            BigInteger sum = da.add(cb);
+            BigInteger difference = da.subtract(cb);
+            x3 = sum.multiply(sum).mod(P);
+            z3 = difference.multiply(difference).mod(P).multiply(u).mod(P);
+            x2 = aa.multiply(bb).mod(P);
+            z2 = e.multiply(aa.add(A24.multiply(e))).mod(P);
+        }
+        if (swap) {
+            BigInteger t = x2; x2 = x3; x3 = t;
+            t = z2; z2 = z3; z3 = t;
+        }
+
+        // Okeya–Sakurai with (X1 : Z1) = s * P and (X2 : Z2) = (s + 1) * P:
+        // U' <- 2B * v * Z1 * Z2 * X1
+        // V' <- Z2 * ((X1 + u * Z1 + 2A * Z1) * (u * X1 + Z1) − 2A * Z1^2) − (X1 − u * Z1)^2 * X2
+        BigInteger uz1 = u.multiply(z2).mod(P);
+        BigInteger numerator = TWO_B.multiply(v).mod(P).multiply(z2).mod(P).multiply(z3).mod(P).multiply(x2).mod(P);
+        BigInteger diff = x2.subtract(uz1);
+        BigInteger denominator = x2.add(uz1).add(TWO_A.multiply(z2)).multiply(u.multiply(x2).add(z2)).mod(P)
+                                   .subtract(TWO_A.multiply(z2).mod(P).multiply(z2)).mod(P).multiply(z3)
+                                   .subtract(diff.multiply(diff).mod(P).multiply(x3)).mod(P);
+        event.complete(false, theScalar.bitLength(), "montgomery-ladder");
+        if (z2.signum() == 0 || z3.signum() == 0 || denominator.signum() == 0) {
+            // s * P or (s + 1) * P is the neutral element or has order 2
+            return multiplyByScalar(theScalar).getX().mod(P);
+        }
+        // x <- u / v = U' / V'
+        CryptoMetrics.inversions(2);
+        return numerator.multiply(denominator.modInverse(P)).mod(P);
+    }
+
+    /**
+     * Fixed-window exponentiation with a precomputed window table of this point.
+     *
+     * @param theScalar the nonzero scalar
+     * @param theTable  the window table of this point from {@link #windowTable(EllipticCurvePoint, int)}
+     * @param theWidth  the window width of the table
+     * @return this current instance point multiplied by a scalar
+     */
+    static EllipticCurvePoint multiplyByScalar(final Scalar theScalar, final EllipticCurvePoint[] theTable, final int theWidth) {
+        // the top window starts the accumulator, so it skips doubling the neutral element
+        int offset = (theScalar.bitLength() - 1) / theWidth * theWidth;
+        EllipticCurvePoint V = theTable[theScalar.window(offset, theWidth)];
+        for (offset -= theWidth; offset >= 0; offset -= theWidth) {
+            for (int i = 0; i < theWidth; i++) {
+                V = V.add(V); // 2V or V+V
+            }
+            int window = theScalar.window(offset, theWidth);
+            if (window != 0) {
+                V = V.add(theTable[window]);
+            }
+        }
+        return V;
+    }
+
+    /**
+     * Precomputes the window table of a point for scalar multiplication.
+     *
+     * @param theBase  the point
+     * @param theWidth the window width w
+     * @return the multiples 0 * base, 1 * base, ..., (2^w - 1) * base
+     */
+    static EllipticCurvePoint[] windowTable(final EllipticCurvePoint theBase, final int theWidth) {
+        EllipticCurvePoint[] table = new EllipticCurvePoint[1 << theWidth];
+        table[0] = new EllipticCurvePoint();
+        table[1] = theBase;
+        for (int i = 2; i < table.length; i++) {
+            table[i] = table[i - 1].add(theBase);
+        }
+        return table;
+    }
+
     /**
      * Compute a square root of v mod p with a specified least-significant bit if such a root exists.
      * Code is taken from the project specification paper.
@@ -139,6 +403,92 @@ public final class EllipticCurvePoint {
         return (r.multiply(r).subtract(theV).mod(theP).signum() == 0) ? r : null;
     }
 
+    /**
+     * Decompresses many points at once from their y coordinates and the least significant bits of x.
+     * Every point needs the inverse of (1 + 39081 * y^2), so the inverses are shared through
+     * Montgomery's simultaneous inversion trick and only one modInverse is done for the whole batch.
+     * The square roots are independent of each other and are computed in parallel.
+     *
+     * @param theY                    the y coordinates
+     * @param theLeastSignificantBitX the least significant bits of x (true: 1, false: 0)
+     * @return the decompressed points in the same order as the input
+     */
+    public static EllipticCurvePoint[] decompressAll(final BigInteger[] theY, final boolean[] theLeastSignificantBitX) {
+        if (theY.length != theLeastSignificantBitX.length) {
+            throw new IllegalArgumentException("Every y coordinate needs exactly one least significant bit of x.");
+        }
+        // 1 / (1 + 39081 * y^2) for every y with a single inversion
+        BigInteger[] ySq = new BigInteger[theY.length];
+        BigInteger[] denom = new BigInteger[theY.length];
+        for (int i = 0; i < theY.length; i++) {
+            ySq[i] = theY[i].multiply(theY[i]).mod(P);
+            denom[i] = BigInteger.ONE.add(D.negate().multiply(ySq[i])).mod(P);
+        }
+        BigInteger[] denomInv = batchInverse(denom);
+
+        // x = ±√( (1 − y^2) / (1 + 39081 * y^2) ) mod p
+        EllipticCurvePoint[] points = new EllipticCurvePoint[theY.length];
+        IntStream.range(0, theY.length).parallel().forEach(i -> {
+            BigInteger radicand = BigInteger.ONE.subtract(ySq[i]).multiply(denomInv[i]).mod(P);
+            BigInteger x = Objects.requireNonNull(sqrt(radicand, P, theLeastSignificantBitX[i])).mod(P);
+            points[i] = new EllipticCurvePoint(x, theY[i]);
+        });
+        return points;
+    }
+
+    /**
+     * Converts many projective points (X : Y : Z) back to affine points (X / Z, Y / Z).
+     * All the Z inverses are shared through Montgomery's simultaneous inversion trick,
+     * so the whole batch only costs one modInverse.
+     *
+     * @param theX the projective X coordinates
+     * @param theY the projective Y coordinates
+     * @param theZ the projective Z coordinates (must all be nonzero mod p)
+     * @return the affine points in the same order as the input
+     */
+    public static EllipticCurvePoint[] normalizeAll(final BigInteger[] theX, final BigInteger[] theY, final BigInteger[] theZ) {
+        if (theX.length != theY.length || theX.length != theZ.length) {
+            throw new IllegalArgumentException("Projective coordinates must have the same number of X, Y and Z values.");
+        }
+        BigInteger[] zInv = batchInverse(theZ);
+        EllipticCurvePoint[] points = new EllipticCurvePoint[theX.length];
+        for (int i = 0; i < theX.length; i++) {
+            points[i] = new EllipticCurvePoint(theX[i].multiply(zInv[i]).mod(P), theY[i].multiply(zInv[i]).mod(P));
+        }
+        return points;
+    }
+
+    /**
+     * Montgomery's simultaneous inversion trick. Inverts n values mod p with one modInverse
+     * and 3(n - 1) multiplications.
+     * <br>
+     * prefix_i = a_0 * a_1 * ... * a_i, then walking backwards a_i^-1 = prefix_i-1 * (prefix_i)^-1.
+     *
+     * @param theValues the values to invert (must all be nonzero mod p)
+     * @return the inverses in the same order as the input
+     */
+    static BigInteger[] batchInverse(final BigInteger[] theValues) {
+        BigInteger[] inverses = new BigInteger[theValues.length];
+        if (theValues.length == 0) {
+            return inverses;
+        }
+        // running products a_0 * ... * a_i
+        BigInteger[] prefix = new BigInteger[theValues.length];
+        prefix[0] = theValues[0].mod(P);
+        for (int i = 1; i < theValues.length; i++) {
+            prefix[i] = prefix[i - 1].multiply(theValues[i]).mod(P);
+        }
+        // throws ArithmeticException like modInverse if any of the values is 0 mod p
+        BigInteger inv = prefix[prefix.length - 1].modInverse(P);
+        CryptoMetrics.inversions(1);
+        for (int i = theValues.length - 1; i > 0; i--) {
+            inverses[i] = inv.multiply(prefix[i - 1]).mod(P);
+            inv = inv.multiply(theValues[i]).mod(P);
+        }
+        inverses[0] = inv;
+        return inverses;
+    }
+
     /**
      * The special point G which is called the public generator.
      * G is defined as a point (x_0, y_0)
@@ -149,7 +499,15 @@ public final class EllipticCurvePoint {
      */
     public static EllipticCurvePoint getPublicGenerator() {
         // if x is even, then the least sig bit must be 0
-        return new EllipticCurvePoint(BigInteger.valueOf(-3).mod(P), false);
+        return G;
+    }
+
+    /**
+     * Holds the window table of the public generator G, computed on first use.
+     */
+    private static final class GeneratorTable {
+        /** The multiples 0 * G, 1 * G, ..., (2^w - 1) * G. */
+        private static final EllipticCurvePoint[] TABLE = windowTable(G, GENERATOR_WINDOW_WIDTH);
     }
 
     /**
@@ -166,6 +524,16 @@ public final class EllipticCurvePoint {
         return false;
     }
 
+    /**
+     * Hash code of the x and y values.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y);
+    }
+
     /**
      * Returns the x and y values of this Elliptic Curve Point.
      *
@@ -185,6 +553,15 @@ public final class EllipticCurvePoint {
         return x;
     }
 
+    /**
+     * Getter of the y value.
+     *
+     * @return the y value of this point
+     */
+    public BigInteger getY() {
+        return y;
+    }
+
     /*
      * For testing only.
      * All testcases should output true
@@ -0,0 +1,75 @@
+import java.util.Arrays;
+
+/**
+ * A one-time ephemeral key pair (k, Z = k*G) for encryption. The scalar k can only be
+ * taken out once, after which its stored bytes are wiped.
+ * <br>
+ * Note that the Scalar handed out by {@link #consume()} is immutable and cannot be
+ * wiped, so it should not be kept around longer than the encryption that uses it.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class EphemeralKey {
+    /** The scalar k as a byte string, all zeros once it has been consumed. */
+    private final byte[] k;
+    /** The Z = k*G as a elliptic curve point. */
+    private final EllipticCurvePoint Z;
+    /** Whether k has been consumed. */
+    private boolean consumed;
+
+    /**
+     * Constructs the ephemeral key pair.
+     *
+     * @param k the scalar k
+     * @param Z the elliptic curve point k*G
+     */
+    private EphemeralKey(byte[] k, EllipticCurvePoint Z) {
+        this.k = k;
+        this.Z = Z;
+    }
+
+    /**
+     * Generates a fresh ephemeral key pair, paying for the random k and the fixed-base Z = k*G.
+     *
+     * @return the ephemeral key pair
+     */
+    public static EphemeralKey generate() {
+        // k <- Random(448), k <- 4k (mod r)
+        Scalar k = EllipticCurve.randomScalar();
+
+        // Z <- k*G
+        EllipticCurvePoint Z = EllipticCurvePoint.getPublicGenerator().multiplyByScalar(k);
+        return new EphemeralKey(k.toLittleEndian(), Z);
+    }
+
+    /**
+     * Getter for Z.
+     * @return the elliptic curve point Z
+     */
+    EllipticCurvePoint getZ() { return Z; }
+
+    /**
+     * Takes the scalar k out of this key pair and wipes its stored bytes.
+     *
+     * @return the scalar k
+     * @throws IllegalStateException if k has already been consumed
+     */
+    synchronized Scalar consume() {
+        if (consumed) {
+            throw new IllegalStateException("Ephemeral key has already been used.");
+        }
+        consumed = true;
+        Scalar scalar = Scalar.fromLittleEndian(k);
+        wipe();
+        return scalar;
+    }
+
+    /**
+     * Wipes the stored bytes of k so that this key pair can never be used.
+     */
+    synchronized void wipe() {
+        consumed = true;
+        Arrays.fill(k, (byte) 0);
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A pool of precomputed ephemeral key pairs (k, Z = k*G) for encryption. A background thread
+ * keeps the pool filled up to its depth, so the random k and the fixed-base Z = k*G are paid
+ * for between bursts instead of on the request path.
+ * <br>
+ * Every key pair is handed out at most once. If the pool runs dry, a fresh key pair is generated
+ * on the caller's thread instead of waiting for the background thread.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class EphemeralPool implements AutoCloseable {
+    /** The precomputed key pairs. */
+    private final BlockingQueue<EphemeralKey> pool;
+    /** The background thread that keeps the pool filled. */
+    private final Thread filler;
+
+    /**
+     * Constructs the pool and starts filling it in the background.
+     *
+     * @param theDepth how many key pairs are kept ready
+     */
+    public EphemeralPool(final int theDepth) {
+        if (theDepth <= 0) {
+            throw new IllegalArgumentException("Pool depth must be positive.");
+        }
+        pool = new ArrayBlockingQueue<>(theDepth);
+        filler = new Thread(this::fill, "ephemeral-pool");
+        filler.setDaemon(true);
+        filler.setPriority(Thread.MIN_PRIORITY);
+        filler.start();
+    }
+
+    /**
+     * Takes a key pair out of the pool, or generates one if the pool is empty.
+     *
+     * @return an unused ephemeral key pair
+     */
+    public EphemeralKey take() {
+        EphemeralKey key = pool.poll();
+        return key != null ? key : EphemeralKey.generate();
+    }
+
+    /**
+     * Gets how many key pairs are ready right now.
+     *
+     * @return the number of precomputed key pairs
+     */
+    public int size() {
+        return pool.size();
+    }
+
+    /**
+     * Stops the background thread and wipes every key pair that was never handed out.
+     */
+    @Override
+    public void close() {
+        filler.interrupt();
+        try {
+            filler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        EphemeralKey key;
+        while ((key = pool.poll()) != null) {
+            key.wipe();
+        }
+    }
+
+    /**
+     * Keeps the pool filled until the pool is closed. Blocks while the pool is full.
+     */
+    private void fill() {
+        while (!Thread.currentThread().isInterrupted()) {
+            EphemeralKey key = EphemeralKey.generate();
+            try {
+                pool.put(key);
+            } catch (InterruptedException e) {
+                key.wipe();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,498 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipelined processing of one large file. A reader thread, the crypto stage on the calling thread
+ * and a writer thread are connected by bounded queues, so reading the next buffer and writing the
+ * last one overlap the Keccak work on the current one and the throughput approaches the slower of
+ * disk and CPU instead of their sum.
+ * <pre>
+ * reader:  free buffer <- file (hexadecimals decoded)    -> filled
+ * crypto:  filled -> hash, encrypt or decrypt in place   -> written
+ * writer:  written -> file (hexadecimals encoded)        -> free buffer
+ * </pre>
+ * The buffers are a small fixed set of direct buffers that go round the queues, so while one is
+ * read into, another is processed and a third written out, and nothing is allocated per buffer.
+ * <br>
+ * The results are the same as those of the in-memory operations on the whole file: the KMACXOF256
+ * hash h <- KMACXOF256(“”, data, 512, “D”) and the symmetric cryptogram z || c || t of
+ * {@link KMAC#encrypt(byte[], String)} as one line of hexadecimals. A decryption is written to a
+ * temporary file that only replaces the output once t = t', so unauthenticated plaintext never
+ * shows up under the output name.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class FilePipeline {
+    /** Size of a buffer. */
+    private static final int BUFFER_BYTES = 1 << 20;
+    /** Number of buffers: one each being read, processed and written, and one spare. */
+    private static final int BUFFERS = 4;
+    /** Byte length of z and of t in a symmetric cryptogram. */
+    private static final int KEY_BYTES = 64;
+    /** Marks the end of a queue. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+    /** Hexadecimal digits of the cryptogram files. */
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    /** Buffers nobody is using. */
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(BUFFERS);
+    /** Buffers read and waiting for the crypto stage, plus the end mark. */
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<>(BUFFERS + 1);
+    /** Buffers processed and waiting for the writer, plus z, t and the end mark. */
+    private final BlockingQueue<ByteBuffer> written = new ArrayBlockingQueue<>(BUFFERS + 3);
+    /** The first failure of the reader or writer. */
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    /** Whether the pipeline is being ended, after which the reader may be interrupted. */
+    private volatile boolean stopped;
+    /** The reader. */
+    private final Thread reader;
+    /** The writer, or null if there is no output. */
+    private final Thread writer;
+
+    /**
+     * Starts the reader and writer of a pipeline.
+     *
+     * @param theIn     the input file
+     * @param theHexIn  whether the input is hexadecimals to decode
+     * @param theOut    the output file, or null if there is no output
+     * @param theHexOut whether the output is written as one line of hexadecimals
+     */
+    private FilePipeline(final FileChannel theIn, final boolean theHexIn, final FileChannel theOut, final boolean theHexOut) {
+        for (int i = 0; i < BUFFERS; i++) {
+            free.add(ByteBuffer.allocateDirect(BUFFER_BYTES));
+        }
+        reader = Thread.ofPlatform().name("pipeline-reader").daemon().start(() -> read(theIn, theHexIn));
+        writer = theOut == null ? null
+                 : Thread.ofPlatform().name("pipeline-writer").daemon().start(() -> write(theOut, theHexOut));
+    }
+
+    /**
+     * Computes h <- KMACXOF256(“”, data, 512, “D”) of a file.
+     *
+     * @param theFile the file
+     * @return the hash
+     * @throws IOException if reading the file fails
+     */
+    public static byte[] hash(final Path theFile) throws IOException {
+        KmacEvent event = new KmacEvent();
+        event.begin();
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.kinit256(c, "".getBytes(), "D");
+        long size = 0;
+        try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            FilePipeline pipeline = new FilePipeline(in, false, null, false);
+            try {
+                for (ByteBuffer buf = pipeline.take(); buf != null; buf = pipeline.take()) {
+                    shake.sha3_update(c, buf, 0, buf.limit());
+                    size += buf.limit();
+                    pipeline.pass(buf);
+                }
+            } finally {
+                pipeline.finish();
+            }
+        }
+        shake.xof(c);
+        byte[] val = new byte[KEY_BYTES];
+        shake.shake_out(c, val, val.length);
+        event.complete("D", size, val.length);
+        return val;
+    }
+
+    /**
+     * Encrypts a file into a symmetric cryptogram z || c || t written as one line of hexadecimals.
+     *
+     * @param theFile       the plaintext file
+     * @param theTarget     the cryptogram file
+     * @param thePassphrase the passphrase
+     * @throws IOException if reading or writing a file fails
+     */
+    public static void encrypt(final Path theFile, final Path theTarget, final String thePassphrase) throws IOException {
+        // z <- Random(512), never starting with the version 2 header
+        byte[] z = KMAC.randomZ();
+
+        // (ke || ka) <- KMACXOF256(z || pw, “”, 1024, “S”)
+        byte[] keka = KMAC.KMACXOF256(ByteStringUtil.concat(z, thePassphrase.getBytes()), "".getBytes(), 1024, "S");
+        // both KMACs run over the whole file, so their events overlap
+        KmacEvent eventE = new KmacEvent();
+        eventE.begin();
+        KmacEvent eventA = new KmacEvent();
+        eventA.begin();
+        long size = 0;
+        CSHAKE shakeE = new CSHAKE();
+        SHA3Context ke = new SHA3Context();
+        shakeE.kinit256(ke, Arrays.copyOfRange(keka, 0, KEY_BYTES), "SKE");
+        shakeE.xof(ke);
+        CSHAKE shakeA = new CSHAKE();
+        SHA3Context ka = new SHA3Context();
+        shakeA.kinit256(ka, Arrays.copyOfRange(keka, KEY_BYTES, 2 * KEY_BYTES), "SKA");
+
+        try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(theTarget, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            FilePipeline pipeline = new FilePipeline(in, false, out, true);
+            try {
+                pipeline.pass(ByteBuffer.wrap(z));
+                for (ByteBuffer buf = pipeline.take(); buf != null; buf = pipeline.take()) {
+                    // t <- KMACXOF256(ka, m, 512, “SKA”), absorbed before m is overwritten by c
+                    shakeA.sha3_update(ka, buf, 0, buf.limit());
+                    // c <- KMACXOF256(ke, “”, |m|, “SKE”) XOR m
+                    shakeE.shake_xor(ke, buf, 0, buf, 0, buf.limit());
+                    size += buf.limit();
+                    pipeline.pass(buf);
+                }
+                eventE.complete("SKE", 0, size);
+                shakeA.xof(ka);
+                byte[] t = new byte[KEY_BYTES];
+                shakeA.shake_out(ka, t, t.length);
+                eventA.complete("SKA", size, t.length);
+                pipeline.pass(ByteBuffer.wrap(t));
+            } finally {
+                pipeline.finish();
+            }
+        }
+    }
+
+    /**
+     * Tests if a file holds a symmetric cryptogram the pipeline can decrypt: a version 1 cryptogram
+     * z || c || t as one line of hexadecimals. Other cryptograms are left to the in-memory decryption.
+     *
+     * @param theFile the cryptogram file
+     * @return true if {@link #decrypt(Path, Path, String)} can decrypt the file
+     * @throws IOException if reading the file fails
+     */
+    public static boolean canDecrypt(final Path theFile) throws IOException {
+        byte[] head;
+        try (InputStream in = Files.newInputStream(theFile)) {
+            head = in.readNBytes(2 * KMAC.DUPLEX_HEADER.length);
+        }
+        if (head.length < 2 * KMAC.DUPLEX_HEADER.length) {
+            return false;
+        }
+        for (byte b : head) {
+            if (Character.digit(b, 16) < 0) {
+                return false;
+            }
+        }
+        // a version 2 header is left to the in-memory decryption
+        return !Arrays.equals(ByteStringUtil.hexToBytes(new String(head)), KMAC.DUPLEX_HEADER);
+    }
+
+    /**
+     * Decrypts a symmetric cryptogram file z || c || t of hexadecimals. The plaintext replaces the
+     * target only if t = t', otherwise the target is left alone.
+     *
+     * @param theFile       the cryptogram file
+     * @param theTarget     the plaintext file
+     * @param thePassphrase the passphrase
+     * @return true if t = t'
+     * @throws IOException if reading or writing a file fails
+     * @throws IllegalArgumentException if the file is not hexadecimals
+     */
+    public static boolean decrypt(final Path theFile, final Path theTarget, final String thePassphrase) throws IOException {
+        final long length = cryptogramLength(theFile);
+        if (length < 2 * KEY_BYTES) {
+            return false;
+        }
+        final byte[] z = new byte[KEY_BYTES];
+        final byte[] t = new byte[KEY_BYTES];
+        final CSHAKE shakeE = new CSHAKE();
+        final SHA3Context ke = new SHA3Context();
+        final CSHAKE shakeA = new CSHAKE();
+        final SHA3Context ka = new SHA3Context();
+        // both KMACs run over the whole file, so their events overlap
+        final KmacEvent eventE = new KmacEvent();
+        eventE.begin();
+        final KmacEvent eventA = new KmacEvent();
+        eventA.begin();
+
+        Path temp = Files.createTempFile(theTarget.toAbsolutePath().getParent(), "decrypt", ".tmp");
+        try {
+            long position = 0;
+            try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                FilePipeline pipeline = new FilePipeline(in, true, out, false);
+                try {
+                    for (ByteBuffer buf = pipeline.take(); buf != null; buf = pipeline.take()) {
+                        final long end = position + buf.limit();
+                        // z is the first 64 bytes
+                        if (position < KEY_BYTES) {
+                            buf.get(0, z, (int) position, (int) Math.min(end, KEY_BYTES) - (int) position);
+                            if (end >= KEY_BYTES) {
+                                // (ke || ka) <- KMACXOF256(z || pw, “”, 1024, “S”)
+                                byte[] keka = KMAC.KMACXOF256(ByteStringUtil.concat(z, thePassphrase.getBytes()), "".getBytes(), 1024, "S");
+                                shakeE.kinit256(ke, Arrays.copyOfRange(keka, 0, KEY_BYTES), "SKE");
+                                shakeE.xof(ke);
+                                shakeA.kinit256(ka, Arrays.copyOfRange(keka, KEY_BYTES, 2 * KEY_BYTES), "SKA");
+                            }
+                        }
+                        // t is the last 64 bytes
+                        long tStart = Math.max(position, length - KEY_BYTES);
+                        if (tStart < end) {
+                            buf.get((int) (tStart - position), t, (int) (tStart - length + KEY_BYTES), (int) (end - tStart));
+                        }
+                        // c is everything in between
+                        int from = (int) (Math.max(position, KEY_BYTES) - position);
+                        int to = (int) (Math.min(end, length - KEY_BYTES) - position);
+                        if (from < to) {
+                            // m <- KMACXOF256(ke, “”, |c|, “SKE”) XOR c
+                            shakeE.shake_xor(ke, buf, from, buf, from, to - from);
+                            // t' <- KMACXOF256(ka, m, 512, “SKA”)
+                            shakeA.sha3_update(ka, buf, from, to - from);
+                            buf.limit(to).position(from);
+                        } else {
+                            buf.limit(0);
+                        }
+                        position = end;
+                        pipeline.pass(buf);
+                    }
+                } finally {
+                    pipeline.finish();
+                }
+                out.force(false);
+            }
+            if (position != length) {
+                // whitespace inside the hexadecimals, so c and t are not where they were expected
+                return false;
+            }
+            eventE.complete("SKE", 0, length - 2 * KEY_BYTES);
+            shakeA.xof(ka);
+            // accept if and only if t = t'
+            boolean verified = shakeA.shake_verify(ka, t, 0, t.length);
+            eventA.complete("SKA", length - 2 * KEY_BYTES, t.length);
+            if (!verified) {
+                return false;
+            }
+            SpongeCheckpoint.replace(temp, theTarget);
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Gets the byte length of the cryptogram in a file of hexadecimals, ignoring the line separator.
+     *
+     * @param theFile the cryptogram file
+     * @return the number of bytes the hexadecimals decode to, or -1 if the count of digits is odd
+     * @throws IOException if reading the file fails
+     */
+    private static long cryptogramLength(final Path theFile) throws IOException {
+        try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            long size = in.size();
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(size, 16));
+            in.read(tail, size - tail.capacity());
+            long digits = size;
+            for (int i = tail.position() - 1; i >= 0 && Character.isWhitespace(tail.get(i)); i--) {
+                digits--;
+            }
+            return (digits & 1) == 0 ? digits / 2 : -1;
+        }
+    }
+
+    /**
+     * Takes the next buffer from the reader, between 0 and its limit.
+     *
+     * @return the buffer, or null at the end of the input
+     * @throws IOException if the reader failed or the wait was interrupted
+     */
+    private ByteBuffer take() throws IOException {
+        ByteBuffer buf;
+        try {
+            buf = filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the reader.");
+        }
+        if (buf == END) {
+            rethrow();
+            return null;
+        }
+        return buf;
+    }
+
+    /**
+     * Passes a buffer on to the writer, or back to the reader if there is no output.
+     * The writer writes from position to limit.
+     *
+     * @param theBuffer a buffer from {@link #take()}, or a heap buffer with extra output
+     * @throws IOException if the wait was interrupted
+     */
+    private void pass(final ByteBuffer theBuffer) throws IOException {
+        try {
+            if (writer != null) {
+                written.put(theBuffer);
+            } else if (theBuffer.isDirect()) {
+                free.put(theBuffer.clear());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer.");
+        }
+    }
+
+    /**
+     * Ends the pipeline: stops the reader if it is still running, lets the writer drain and waits
+     * for both.
+     *
+     * @throws IOException if the reader or writer failed
+     */
+    private void finish() throws IOException {
+        stopped = true;
+        reader.interrupt();
+        boolean interrupted = false;
+        if (writer != null) {
+            // the writer has room for the end mark, it never holds more than the buffers and z and t
+            written.add(END);
+        }
+        for (Thread thread : writer == null ? new Thread[] {reader} : new Thread[] {reader, writer}) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        rethrow();
+    }
+
+    /**
+     * Rethrows the first failure of the reader or writer.
+     *
+     * @throws IOException if the reader or writer failed with it
+     */
+    private void rethrow() throws IOException {
+        Exception e = failure.get();
+        if (e instanceof IOException io) {
+            throw io;
+        }
+        if (e instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+    }
+
+    /**
+     * The reader: fills free buffers from the input until its end. Every buffer but the last is full.
+     *
+     * @param theIn    the input file
+     * @param theHexIn whether the input is hexadecimals to decode
+     */
+    private void read(final FileChannel theIn, final boolean theHexIn) {
+        final ByteBuffer text = theHexIn ? ByteBuffer.allocateDirect(2 * BUFFER_BYTES) : null;
+        int nibble = -1;
+        boolean eof = false;
+        try {
+            while (!eof) {
+                ByteBuffer buf = free.take();
+                if (text == null) {
+                    while (buf.hasRemaining() && !eof) {
+                        eof = theIn.read(buf) < 0;
+                    }
+                } else {
+                    // two digits per byte, a digit left over is kept for the next buffer
+                    text.clear().limit(2 * buf.remaining() - (nibble < 0 ? 0 : 1));
+                    while (text.hasRemaining() && !eof) {
+                        eof = theIn.read(text) < 0;
+                    }
+                    for (int i = 0; i < text.position(); i++) {
+                        int digit = Character.digit(text.get(i), 16);
+                        if (digit < 0) {
+                            if (Character.isWhitespace(text.get(i))) {
+                                continue;
+                            }
+                            throw new IllegalArgumentException("Cryptogram is not hexadecimals.");
+                        }
+                        if (nibble < 0) {
+                            nibble = digit;
+                        } else {
+                            buf.put((byte) (nibble << 4 | digit));
+                            nibble = -1;
+                        }
+                    }
+                }
+                filled.put(buf.flip());
+            }
+        } catch (InterruptedException e) {
+            // stopped by finish()
+        } catch (IOException | RuntimeException e) {
+            // an interrupted read fails too, which is no failure once the pipeline is ending
+            if (!stopped) {
+                failure.compareAndSet(null, e);
+            }
+        } finally {
+            // there is always room for the end mark, it is one more than the buffers
+            filled.add(END);
+        }
+    }
+
+    /**
+     * The writer: writes passed buffers to the output until the end mark and gives them back to the
+     * reader. After a failure it keeps taking buffers without writing them, so nobody waits forever.
+     *
+     * @param theOut    the output file
+     * @param theHexOut whether the output is written as one line of hexadecimals
+     */
+    private void write(final FileChannel theOut, final boolean theHexOut) {
+        final ByteBuffer text = theHexOut ? ByteBuffer.allocateDirect(2 * BUFFER_BYTES) : null;
+        try {
+            for (ByteBuffer buf = written.take(); buf != END; buf = written.take()) {
+                try {
+                    if (failure.get() == null) {
+                        if (text == null) {
+                            while (buf.hasRemaining()) {
+                                theOut.write(buf);
+                            }
+                        } else {
+                            text.clear();
+                            for (int i = buf.position(); i < buf.limit(); i++) {
+                                int v = buf.get(i) & 0xFF;
+                                text.put(HEX[v >>> 4]).put(HEX[v & 0x0F]);
+                            }
+                            writeFully(theOut, text.flip());
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+                if (buf.isDirect()) {
+                    free.put(buf.clear());
+                }
+            }
+            if (theHexOut && failure.get() == null) {
+                writeFully(theOut, ByteBuffer.wrap(System.lineSeparator().getBytes()));
+            }
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, new InterruptedIOException("Writer was interrupted."));
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer.
+     *
+     * @param theOut the output file
+     * @param theBuf the buffer
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(final FileChannel theOut, final ByteBuffer theBuf) throws IOException {
+        while (theBuf.hasRemaining()) {
+            theOut.write(theBuf);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of one stage of processing a file in {@link Main}: reading the input, or
+ * running the selected option, which writes its output as it goes.
+ * The event costs nothing when no recording is running.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+@Name("cryptography.FileStage")
+@Label("File Stage")
+@Category({"Cryptography", "File I/O"})
+@Description("Reading or processing a file")
+final class FileStageEvent extends jdk.jfr.Event {
+    /** The stage: read or process. */
+    @Label("Stage")
+    String stage;
+
+    /** The selected option. */
+    @Label("Option")
+    String option;
+
+    /** The file of the stage. */
+    @Label("File")
+    String file;
+
+    /** Bytes read or processed, or 0 if unknown. */
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param theStage  the stage
+     * @param theOption the selected option
+     * @param theFile   the file
+     * @param theBytes  the bytes read or processed
+     */
+    void complete(final String theStage, final OptionSelect theOption, final String theFile, final long theBytes) {
+        end();
+        if (shouldCommit()) {
+            stage = theStage;
+            option = theOption.name();
+            file = theFile;
+            bytes = theBytes;
+            commit();
+        }
+    }
+}
@@ -1,5 +1,8 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * Class for encryption and decryption using a MAC.
@@ -8,8 +11,16 @@ import java.util.Arrays;
  * @author Bairu Li
  */
 public final class KMAC {
+    /** Header of a version 2 symmetric cryptogram, the single-pass {@link SpongeWrap} mode. */
+    public static final byte[] DUPLEX_HEADER = {'S', 'W', 0, 2};
+    /** Byte length of z. 512 / 8 = 64 */
+    private static final int Z_BYTES = 64;
+    /** Byte length of t. 512 / 8 = 64 */
+    private static final int T_BYTES = 64;
+
     /**
      * Compute KMACXOF256. Method body is taken from the professor's slides.
+     * Safe to call from concurrent threads, the sponge comes from the {@link SpongeEngine}.
      *
      * @param K MAC key
      * @param X data to be hashed
@@ -22,14 +33,12 @@ public final class KMAC {
         if ((L & 7) != 0) {
             throw new RuntimeException("Implementation restriction: output length (in bits) must be a multiple of 8");
         }
+        KmacEvent event = new KmacEvent();
+        event.begin();
         byte[] val = new byte[L >>> 3];
-        CSHAKE shake = new CSHAKE();
-        SHA3Context c = new SHA3Context();
         // begin kmac
-        shake.kinit256(c, K, S);
-        shake.sha3_update(c, X, X.length);
-        shake.xof(c);
-        shake.shake_out(c, val, L >>> 3);
+        SpongeEngine.kmacXof256(K, X, 0, X.length, S, val, 0, val.length);
+        event.complete(S, X.length, val.length);
         return val; // SHAKE256(X, L) or KECCAK512(prefix || X || 00, L)
     }
     /**
@@ -41,57 +50,455 @@ public final class KMAC {
      * @return symmetric cryptogram z || c || t
      */
     public static byte[] encrypt(byte[] message, String passphrase) {
-        // z <- Random(512)
-        SecureRandom sr = new SecureRandom();
-        byte[] z = new byte[64];
-        sr.nextBytes(z);
+        byte[] cryptogram = new byte[Z_BYTES + message.length + T_BYTES];
+        encrypt(message, 0, message.length, cryptogram, 0, passphrase);
+        return cryptogram;
+    }
+
+    /**
+     * Encryption of a range of an array into a caller-owned array, without intermediate copies of
+     * the message. The message may already sit where c goes, at out[outOff + 64], to encrypt in place.
+     *
+     * @param in         the array holding the message
+     * @param off        the index of the first message byte
+     * @param len        the length of the message
+     * @param out        the array for the cryptogram
+     * @param outOff     the index of the first cryptogram byte
+     * @param passphrase passphrase string
+     * @return the length of the symmetric cryptogram z || c || t, |m| + 128
+     * @throws IndexOutOfBoundsException if a range is outside its array
+     */
+    public static int encrypt(byte[] in, int off, int len, byte[] out, int outOff, String passphrase) {
+        return encrypt(ByteBuffer.wrap(in), off, len, ByteBuffer.wrap(out), outOff, passphrase);
+    }
+
+    /**
+     * Encryption of the remaining bytes of a buffer into another buffer, e.g. pooled direct network
+     * buffers. Both positions are advanced past what was read and written.
+     *
+     * @param in         the message between position and limit
+     * @param out        the buffer for the symmetric cryptogram z || c || t
+     * @param passphrase passphrase string
+     * @throws BufferOverflowException if out has less than |m| + 128 bytes remaining
+     */
+    public static void encrypt(ByteBuffer in, ByteBuffer out, String passphrase) {
+        int len = in.remaining();
+        if (out.remaining() < Z_BYTES + len + T_BYTES) {
+            throw new BufferOverflowException();
+        }
+        out.position(out.position() + encrypt(in, in.position(), len, out, out.position(), passphrase));
+        in.position(in.limit());
+    }
+
+    /**
+     * Encryption of a message between buffers at absolute indices.
+     *
+     * @param in         the message
+     * @param inIndex    the index of the first message byte
+     * @param len        the length of the message
+     * @param out        the buffer for the cryptogram
+     * @param outIndex   the index of the first cryptogram byte
+     * @param passphrase passphrase string
+     * @return the length of the symmetric cryptogram z || c || t
+     */
+    private static int encrypt(ByteBuffer in, int inIndex, int len, ByteBuffer out, int outIndex, String passphrase) {
+        Objects.checkFromIndexSize(inIndex, len, in.limit());
+        Objects.checkFromIndexSize(outIndex, Z_BYTES + len + T_BYTES, out.limit());
+        long start = CryptoMetrics.start();
+
+        // z <- Random(512), never starting with the version 2 header
+        byte[] z = randomZ();
 
         // (ke || ka) <- KMACXOF256(z || pw, “”, 1024, “S”)
         byte[] keka = KMACXOF256(ByteStringUtil.concat(z, passphrase.getBytes()), "".getBytes(), 1024, "S");
+        SpongeEngine.Sponge sponge = SpongeEngine.acquire();
+        try {
+            CSHAKE shake = sponge.shake;
+            SHA3Context c = sponge.c;
 
-        // 1024 / 8 = 128 byte length
-        // c <- KMACXOF256(ke, “”, |m|, “SKE”) XOR m
-        byte[] c = KMACXOF256(Arrays.copyOfRange(keka, 0, 64), "".getBytes(), 8 * message.length, "SKE");
-        for (int i = 0; i < message.length; i++) { // c.length == message.length
-            c[i] ^= message[i];
-        }
+            // t <- KMACXOF256(ka, m, 512, “SKA”), first so that m may be overwritten by c
+            KmacEvent event = new KmacEvent();
+            event.begin();
+            shake.kinit256(c, Arrays.copyOfRange(keka, 64, 128), "SKA");
+            shake.sha3_update(c, in, inIndex, len);
+            shake.xof(c);
+            shake.shake_out(c, out, outIndex + Z_BYTES + len, T_BYTES);
+            event.complete("SKA", len, T_BYTES);
 
-        // t <- KMACXOF256(ka, m, 512, “SKA”)
-        byte[] t = KMACXOF256(Arrays.copyOfRange(keka, 64, 128), message, 512, "SKA");
+            // c <- KMACXOF256(ke, “”, |m|, “SKE”) XOR m
+            event = new KmacEvent();
+            event.begin();
+            shake.kinit256(c, Arrays.copyOfRange(keka, 0, 64), "SKE");
+            shake.xof(c);
+            shake.shake_xor(c, in, inIndex, out, outIndex + Z_BYTES, len);
+            event.complete("SKE", 0, len);
+        } finally {
+            SpongeEngine.release(sponge);
+        }
 
         // symmetric cryptogram (z, c, t)
-        return ByteStringUtil.concat(ByteStringUtil.concat(z, c), t);
+        out.put(outIndex, z);
+        CryptoMetrics.record(CryptoMetrics.Operation.KMAC_ENCRYPT, start);
+        return Z_BYTES + len + T_BYTES;
     }
 
     /**
      * Decryption ciphertext cryptogram using the passphrase.
      * Code is written by translating the pseudocode given by the professor.
+     * Version 2 cryptograms of {@link #encryptDuplex(byte[], String)} are told apart by their header.
+     * A cryptogram with the header is only ever decrypted as version 2, and if t != t' the plaintext
+     * is zeroed, so a forged version 2 cryptogram is never decrypted a second time as version 1.
+     * Version 1 cryptograms are encrypted with a z that never starts with the header, but one
+     * encrypted before versions existed starts with it by chance 2^-32 and cannot be decrypted.
      *
      * @param cryptogram the ciphertext as byte array
      * @param passphrase passphrase string
      * @return the plaintext message as byte string || 0 or 1 depending on if t = t'
+     * @throws IllegalArgumentException if the cryptogram is too short
      */
     public static byte[] decrypt(byte[] cryptogram, String passphrase) {
-        // z is concatenated first with a byte length of 64
-        byte[] z = Arrays.copyOfRange(cryptogram, 0, 64);
-        // t is concatenated last with a byte length of 64. (512 bits / 8)
-        byte[] t = Arrays.copyOfRange(cryptogram, cryptogram.length - 64, cryptogram.length);
+        ByteBuffer in = ByteBuffer.wrap(cryptogram);
+        if (isDuplex(cryptogram)) {
+            byte[] decryption = new byte[messageLength(cryptogram, 0, cryptogram.length) + 1];
+            // m || (t=t')
+            decryption[decryption.length - 1] = (byte) (decryptDuplex(in, 0, cryptogram.length, ByteBuffer.wrap(decryption), 0, passphrase) ? 1 : 0);
+            return decryption;
+        }
+        if (cryptogram.length < Z_BYTES + T_BYTES) {
+            throw new IllegalArgumentException("Cryptogram is too short.");
+        }
+        byte[] decryption = new byte[cryptogram.length - Z_BYTES - T_BYTES + 1];
+        // m || (t=t')
+        decryption[decryption.length - 1] = (byte) (decryptKmac(in, 0, cryptogram.length, ByteBuffer.wrap(decryption), 0, passphrase) ? 1 : 0);
+        return decryption;
+    }
+
+    /**
+     * Decryption of a range of an array into a caller-owned array, without intermediate copies.
+     * The plaintext may overwrite the cryptogram, at out[outOff] = in[off] or where c starts.
+     * If t != t' the plaintext range is zeroed. Like {@link #decrypt(byte[], String)}, a cryptogram
+     * with the version 2 header is only ever decrypted as version 2.
+     *
+     * @param in         the array holding the cryptogram
+     * @param off        the index of the first cryptogram byte
+     * @param len        the length of the cryptogram
+     * @param out        the array for the plaintext, with room for {@link #messageLength} bytes
+     * @param outOff     the index of the first plaintext byte
+     * @param passphrase passphrase string
+     * @return true if t = t'
+     * @throws IllegalArgumentException if the cryptogram is too short
+     * @throws IndexOutOfBoundsException if a range is outside its array
+     */
+    public static boolean decrypt(byte[] in, int off, int len, byte[] out, int outOff, String passphrase) {
+        return decrypt(ByteBuffer.wrap(in), off, len, ByteBuffer.wrap(out), outOff, passphrase);
+    }
+
+    /**
+     * Decryption of the remaining bytes of a buffer into another buffer, e.g. pooled direct network
+     * buffers. Both positions are advanced past what was read and written. If t != t' the plaintext
+     * is zeroed and out is left where it was.
+     *
+     * @param in         the cryptogram between position and limit
+     * @param out        the buffer for the plaintext
+     * @param passphrase passphrase string
+     * @return true if t = t'
+     * @throws IllegalArgumentException if the cryptogram is too short
+     * @throws BufferOverflowException if out has not enough bytes remaining for the plaintext
+     */
+    public static boolean decrypt(ByteBuffer in, ByteBuffer out, String passphrase) {
+        int length = messageLength(in);
+        if (out.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        boolean verified = decrypt(in, in.position(), in.remaining(), out, out.position(), passphrase);
+        in.position(in.limit());
+        if (verified) {
+            out.position(out.position() + length);
+        }
+        return verified;
+    }
+
+    /**
+     * Gets the length of the message in a cryptogram of either version.
+     *
+     * @param cryptogram the array holding the cryptogram
+     * @param off        the index of the first cryptogram byte
+     * @param len        the length of the cryptogram
+     * @return the byte length of the plaintext message
+     * @throws IllegalArgumentException if the cryptogram is too short
+     */
+    public static int messageLength(byte[] cryptogram, int off, int len) {
+        return messageLength(ByteBuffer.wrap(cryptogram, off, len));
+    }
+
+    /**
+     * Gets the length of the message in the cryptogram between position and limit of a buffer.
+     *
+     * @param cryptogram the buffer holding the cryptogram
+     * @return the byte length of the plaintext message
+     * @throws IllegalArgumentException if the cryptogram is too short
+     */
+    public static int messageLength(ByteBuffer cryptogram) {
+        int header = isDuplex(cryptogram, cryptogram.position(), cryptogram.remaining()) ? DUPLEX_HEADER.length : 0;
+        int length = cryptogram.remaining() - header - Z_BYTES - T_BYTES;
+        if (length < 0) {
+            throw new IllegalArgumentException("Cryptogram is too short.");
+        }
+        return length;
+    }
+
+    /**
+     * Decryption of a cryptogram of either version between buffers at absolute indices.
+     *
+     * @param in         the cryptogram
+     * @param inIndex    the index of the first cryptogram byte
+     * @param len        the length of the cryptogram
+     * @param out        the buffer for the plaintext
+     * @param outIndex   the index of the first plaintext byte
+     * @param passphrase passphrase string
+     * @return true if t = t'
+     */
+    private static boolean decrypt(ByteBuffer in, int inIndex, int len, ByteBuffer out, int outIndex, String passphrase) {
+        return isDuplex(in, inIndex, len)
+               ? decryptDuplex(in, inIndex, len, out, outIndex, passphrase)
+               : decryptKmac(in, inIndex, len, out, outIndex, passphrase);
+    }
+
+    /**
+     * Decryption of a version 1 cryptogram z || c || t between buffers at absolute indices.
+     *
+     * @param in         the cryptogram
+     * @param inIndex    the index of the first cryptogram byte
+     * @param len        the length of the cryptogram
+     * @param out        the buffer for the plaintext
+     * @param outIndex   the index of the first plaintext byte
+     * @param passphrase passphrase string
+     * @return true if t = t'
+     */
+    private static boolean decryptKmac(ByteBuffer in, int inIndex, int len, ByteBuffer out, int outIndex, String passphrase) {
         // c is found in the middle of z and t
-        byte[] c = Arrays.copyOfRange(cryptogram,64, cryptogram.length - 64);
+        int length = len - Z_BYTES - T_BYTES;
+        if (length < 0) {
+            throw new IllegalArgumentException("Cryptogram is too short.");
+        }
+        Objects.checkFromIndexSize(inIndex, len, in.limit());
+        Objects.checkFromIndexSize(outIndex, length, out.limit());
+        long start = CryptoMetrics.start();
+
+        // z is concatenated first with a byte length of 64
+        byte[] z = new byte[Z_BYTES];
+        in.get(inIndex, z);
 
         // (ke || ka) <- KMACXOF256(z || pw, “”, 1024, “S”)
         byte[] keka = KMACXOF256(ByteStringUtil.concat(z, passphrase.getBytes()), "".getBytes(), 1024, "S");
+        boolean verified;
+        SpongeEngine.Sponge sponge = SpongeEngine.acquire();
+        try {
+            CSHAKE shake = sponge.shake;
+            SHA3Context c = sponge.c;
 
-        // m <- KMACXOF256(ke, “”, |c|, “SKE”) XOR c
-        byte[] m = KMACXOF256(Arrays.copyOfRange(keka, 0, 64), "".getBytes(), 8 * c.length, "SKE");
-        for (int i = 0; i < c.length; i++) { // c.length == m.length
-            m[i] ^= c[i];
+            // m <- KMACXOF256(ke, “”, |c|, “SKE”) XOR c
+            KmacEvent event = new KmacEvent();
+            event.begin();
+            shake.kinit256(c, Arrays.copyOfRange(keka, 0, 64), "SKE");
+            shake.xof(c);
+            shake.shake_xor(c, in, inIndex + Z_BYTES, out, outIndex, length);
+            event.complete("SKE", 0, length);
+
+            // t' <- KMACXOF256(ka, m, 512, “SKA”), compared with t as it is squeezed
+            event = new KmacEvent();
+            event.begin();
+            shake.kinit256(c, Arrays.copyOfRange(keka, 64, 128), "SKA");
+            shake.sha3_update(c, out, outIndex, length);
+            shake.xof(c);
+            verified = shake.shake_verify(c, in, inIndex + Z_BYTES + length, T_BYTES);
+            event.complete("SKA", length, T_BYTES);
+        } finally {
+            SpongeEngine.release(sponge);
         }
 
-        // t' <- KMACXOF256(ka, m, 512, “SKA”)
-        byte[] t_prime = KMACXOF256(Arrays.copyOfRange(keka, 64, 128), m, 512, "SKA");
+        if (!verified) {
+            wipe(out, outIndex, length);
+        }
+        CryptoMetrics.record(CryptoMetrics.Operation.KMAC_DECRYPT, start);
+        return verified;
+    }
 
-        // m || (t=t')
-        return ByteStringUtil.concat(m, Arrays.equals(t, t_prime) ? new byte[] {1} : new byte[] {0});
+    /**
+     * Encryption of a plaintext message in one pass with the duplex sponge {@link SpongeWrap},
+     * which needs about half the permutations of {@link #encrypt(byte[], String)}.
+     *
+     * @param message    message to encrypt as byte array
+     * @param passphrase passphrase string
+     * @return version 2 symmetric cryptogram header || z || c || t
+     */
+    public static byte[] encryptDuplex(byte[] message, String passphrase) {
+        byte[] cryptogram = new byte[DUPLEX_HEADER.length + Z_BYTES + message.length + T_BYTES];
+        encryptDuplex(message, 0, message.length, cryptogram, 0, passphrase);
+        return cryptogram;
+    }
+
+    /**
+     * Encryption in one pass of a range of an array into a caller-owned array. The message may
+     * already sit where c goes, at out[outOff + 68], to encrypt in place.
+     *
+     * @param in         the array holding the message
+     * @param off        the index of the first message byte
+     * @param len        the length of the message
+     * @param out        the array for the cryptogram
+     * @param outOff     the index of the first cryptogram byte
+     * @param passphrase passphrase string
+     * @return the length of the version 2 symmetric cryptogram header || z || c || t, |m| + 132
+     * @throws IndexOutOfBoundsException if a range is outside its array
+     */
+    public static int encryptDuplex(byte[] in, int off, int len, byte[] out, int outOff, String passphrase) {
+        return encryptDuplex(ByteBuffer.wrap(in), off, len, ByteBuffer.wrap(out), outOff, passphrase);
+    }
+
+    /**
+     * Encryption in one pass of the remaining bytes of a buffer into another buffer. Both positions
+     * are advanced past what was read and written.
+     *
+     * @param in         the message between position and limit
+     * @param out        the buffer for the version 2 symmetric cryptogram header || z || c || t
+     * @param passphrase passphrase string
+     * @throws BufferOverflowException if out has less than |m| + 132 bytes remaining
+     */
+    public static void encryptDuplex(ByteBuffer in, ByteBuffer out, String passphrase) {
+        int len = in.remaining();
+        if (out.remaining() < DUPLEX_HEADER.length + Z_BYTES + len + T_BYTES) {
+            throw new BufferOverflowException();
+        }
+        out.position(out.position() + encryptDuplex(in, in.position(), len, out, out.position(), passphrase));
+        in.position(in.limit());
+    }
+
+    /**
+     * Encryption in one pass of a message between buffers at absolute indices.
+     *
+     * @param in         the message
+     * @param inIndex    the index of the first message byte
+     * @param len        the length of the message
+     * @param out        the buffer for the cryptogram
+     * @param outIndex   the index of the first cryptogram byte
+     * @param passphrase passphrase string
+     * @return the length of the version 2 symmetric cryptogram header || z || c || t
+     */
+    private static int encryptDuplex(ByteBuffer in, int inIndex, int len, ByteBuffer out, int outIndex, String passphrase) {
+        int h = DUPLEX_HEADER.length;
+        Objects.checkFromIndexSize(inIndex, len, in.limit());
+        Objects.checkFromIndexSize(outIndex, h + Z_BYTES + len + T_BYTES, out.limit());
+        long start = CryptoMetrics.start();
+
+        // z <- Random(512)
+        byte[] z = new byte[Z_BYTES];
+        new SecureRandom().nextBytes(z);
+
+        // k <- KMACXOF256(z || pw, “”, 512, “SW”)
+        byte[] k = KMACXOF256(ByteStringUtil.concat(z, passphrase.getBytes()), "".getBytes(), 512, "SW");
+
+        // (c, t) <- SpongeWrap(k, “SWE”, m) with |t| = 512
+        SpongeWrap wrap = new SpongeWrap(k, "SWE");
+        wrap.encrypt(in, inIndex, out, outIndex + h + Z_BYTES, len);
+        wrap.tag(out, outIndex + h + Z_BYTES + len, T_BYTES);
+
+        // header || z || c || t, written last so that m may be overwritten by c
+        out.put(outIndex, DUPLEX_HEADER);
+        out.put(outIndex + h, z);
+        CryptoMetrics.record(CryptoMetrics.Operation.KMAC_ENCRYPT, start);
+        return h + Z_BYTES + len + T_BYTES;
+    }
+
+    /**
+     * Draws the random z of a version 1 cryptogram. A z that starts with {@link #DUPLEX_HEADER} is
+     * drawn again, so a version 1 cryptogram is never mistaken for version 2.
+     *
+     * @return z <- Random(512), not starting with the version 2 header
+     */
+    static byte[] randomZ() {
+        byte[] z = new byte[Z_BYTES];
+        SecureRandom random = new SecureRandom();
+        do {
+            random.nextBytes(z);
+        } while (Arrays.equals(z, 0, DUPLEX_HEADER.length, DUPLEX_HEADER, 0, DUPLEX_HEADER.length));
+        return z;
+    }
+
+    /**
+     * Tests if a symmetric cryptogram starts with the version 2 header.
+     *
+     * @param cryptogram the ciphertext as byte array
+     * @return true if it is long enough and starts with {@link #DUPLEX_HEADER}
+     */
+    public static boolean isDuplex(byte[] cryptogram) {
+        return isDuplex(ByteBuffer.wrap(cryptogram), 0, cryptogram.length);
+    }
+
+    /**
+     * Tests if a symmetric cryptogram in a buffer starts with the version 2 header.
+     *
+     * @param cryptogram the buffer holding the ciphertext
+     * @param index      the index of the first cryptogram byte
+     * @param len        the length of the cryptogram
+     * @return true if it is long enough and starts with {@link #DUPLEX_HEADER}
+     */
+    private static boolean isDuplex(ByteBuffer cryptogram, int index, int len) {
+        if (len < DUPLEX_HEADER.length + Z_BYTES + T_BYTES) {
+            return false;
+        }
+        for (int i = 0; i < DUPLEX_HEADER.length; i++) {
+            if (cryptogram.get(index + i) != DUPLEX_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decryption of a version 2 cryptogram header || z || c || t between buffers at absolute indices.
+     *
+     * @param in         the cryptogram
+     * @param inIndex    the index of the first cryptogram byte
+     * @param len        the length of the cryptogram
+     * @param out        the buffer for the plaintext
+     * @param outIndex   the index of the first plaintext byte
+     * @param passphrase passphrase string
+     * @return true if t = t'
+     */
+    private static boolean decryptDuplex(ByteBuffer in, int inIndex, int len, ByteBuffer out, int outIndex, String passphrase) {
+        int h = DUPLEX_HEADER.length;
+        int length = len - h - Z_BYTES - T_BYTES;
+        Objects.checkFromIndexSize(inIndex, len, in.limit());
+        Objects.checkFromIndexSize(outIndex, length, out.limit());
+        long start = CryptoMetrics.start();
+
+        // k <- KMACXOF256(z || pw, “”, 512, “SW”)
+        byte[] z = new byte[Z_BYTES];
+        in.get(inIndex + h, z);
+        byte[] k = KMACXOF256(ByteStringUtil.concat(z, passphrase.getBytes()), "".getBytes(), 512, "SW");
+
+        // m <- SpongeWrap^-1(k, “SWE”, c), t' is squeezed after the last block
+        SpongeWrap wrap = new SpongeWrap(k, "SWE");
+        wrap.decrypt(in, inIndex + h + Z_BYTES, out, outIndex, length);
+        boolean verified = wrap.verify(in, inIndex + h + Z_BYTES + length, T_BYTES);
+
+        if (!verified) {
+            wipe(out, outIndex, length);
+        }
+        CryptoMetrics.record(CryptoMetrics.Operation.KMAC_DECRYPT, start);
+        return verified;
+    }
+
+    /**
+     * Zeroes a plaintext that failed its tag, so it cannot be used by mistake.
+     *
+     * @param out   the buffer holding the plaintext
+     * @param index the index of the first plaintext byte
+     * @param len   the length of the plaintext
+     */
+    private static void wipe(ByteBuffer out, int index, int len) {
+        for (int i = index; i < index + len; i++) {
+            out.put(i, (byte) 0);
+        }
     }
 }
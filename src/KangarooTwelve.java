@@ -0,0 +1,292 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * KangarooTwelve and TurboSHAKE fast hashing (RFC 9861). TurboSHAKE is the SHAKE sponge on
+ * Keccak-p[1600] with 12 instead of 24 rounds, and KangarooTwelve hashes long inputs as a tree of
+ * 8 KiB chunks whose leaves are hashed in parallel, and several leaves at once on a multi-lane
+ * {@link KeccakBackend}. Meant for bulk content hashing where a
+ * NIST function is not required, such as deduplication or integrity manifests.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class KangarooTwelve {
+    /** Keccak-p rounds of TurboSHAKE. */
+    private static final int ROUNDS = 12;
+    /** Chunk size B of the tree. */
+    private static final int CHUNK_BYTES = 8192;
+    /** Domain separation byte of a single node. */
+    private static final byte SINGLE_NODE = 0x07;
+    /** Domain separation byte of a leaf. */
+    private static final byte LEAF = 0x0B;
+    /** Domain separation byte of the final node. */
+    private static final byte FINAL_NODE = 0x06;
+    /** Header of the final node after the first chunk: 0x03 || 0x00^7. */
+    private static final byte[] FINAL_NODE_HEADER = {0x03, 0, 0, 0, 0, 0, 0, 0};
+    /** Trailer of the final node: 0xFF || 0xFF. */
+    private static final byte[] FINAL_NODE_TRAILER = {(byte) 0xFF, (byte) 0xFF};
+    /** Fewest leaves worth hashing in parallel. */
+    private static final int PARALLEL_LEAVES = 4;
+
+    /**
+     * Hidden constructor, all methods are static.
+     */
+    private KangarooTwelve() {
+    }
+
+    /**
+     * Computes TurboSHAKE128.
+     *
+     * @param M the message
+     * @param D the domain separation byte, from 0x01 to 0x7F
+     * @param L the requested output length in bytes
+     * @return the output
+     */
+    public static byte[] TurboSHAKE128(byte[] M, byte D, int L) {
+        return turboShake(16, D, L, M);
+    }
+
+    /**
+     * Computes TurboSHAKE256.
+     *
+     * @param M the message
+     * @param D the domain separation byte, from 0x01 to 0x7F
+     * @param L the requested output length in bytes
+     * @return the output
+     */
+    public static byte[] TurboSHAKE256(byte[] M, byte D, int L) {
+        return turboShake(32, D, L, M);
+    }
+
+    /**
+     * Computes KT128, KangarooTwelve on TurboSHAKE128.
+     *
+     * @param M the message
+     * @param C the customization string
+     * @param L the requested output length in bytes
+     * @return the output
+     */
+    public static byte[] KT128(byte[] M, byte[] C, int L) {
+        return kangarooTwelve(16, M, C, L);
+    }
+
+    /**
+     * Computes KT256, KangarooTwelve on TurboSHAKE256.
+     *
+     * @param M the message
+     * @param C the customization string
+     * @param L the requested output length in bytes
+     * @return the output
+     */
+    public static byte[] KT256(byte[] M, byte[] C, int L) {
+        return kangarooTwelve(32, M, C, L);
+    }
+
+    /**
+     * KangarooTwelve tree hashing. The input S = M || C || length_encode(|C|) is never built,
+     * every node absorbs its range of M and of the short suffix directly.
+     *
+     * @param mdlen the md length of the TurboSHAKE instance, 16 or 32
+     * @param M     the message
+     * @param C     the customization string
+     * @param L     the requested output length in bytes
+     * @return the output
+     */
+    private static byte[] kangarooTwelve(final int mdlen, final byte[] M, final byte[] C, final int L) {
+        // S <- M || C || length_encode(|C|)
+        byte[] suffix = ByteStringUtil.concat(C, length_encode(C.length));
+        long length = (long) M.length + suffix.length;
+
+        // if |S| <= B: return TurboSHAKE(S, 0x07, L)
+        if (length <= CHUNK_BYTES) {
+            return turboShake(mdlen, SINGLE_NODE, L, M, suffix);
+        }
+
+        // CV_i <- TurboSHAKE(S_i, 0x0B, 2 * md length) for every chunk i > 0, in parallel
+        // whole leaves run in groups of as many as the backend permutes at once
+        int n = (int) ((length + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        int whole = (int) (length / CHUNK_BYTES) - 1; // leaves 1 ... whole are full chunks
+        int lanes = KeccakBackends.current().lanes();
+        byte[][] cv = new byte[n - 1][];
+        IntStream groups = IntStream.range(0, (whole + lanes - 1) / lanes);
+        if (whole >= PARALLEL_LEAVES) {
+            groups = groups.parallel();
+        }
+        groups.forEach(g -> leaves(mdlen, M, suffix, cv, 1 + g * lanes, Math.min(lanes, whole - g * lanes)));
+        if (whole < n - 1) {
+            cv[n - 2] = leaf(mdlen, M, suffix, (long) (n - 1) * CHUNK_BYTES);
+        }
+
+        // NodeStar <- S_0 || 0x03 || 0x00^7 || CV_1 || ... || CV_n-1 || length_encode(n - 1) || 0xFF || 0xFF
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.turboShake_init(c, mdlen);
+        absorb(shake, c, M, suffix, 0, CHUNK_BYTES);
+        shake.sha3_update(c, FINAL_NODE_HEADER, FINAL_NODE_HEADER.length);
+        for (byte[] chainingValue : cv) {
+            shake.sha3_update(c, chainingValue, chainingValue.length);
+        }
+        byte[] leafCount = length_encode(n - 1);
+        shake.sha3_update(c, leafCount, leafCount.length);
+        shake.sha3_update(c, FINAL_NODE_TRAILER, FINAL_NODE_TRAILER.length);
+
+        // return TurboSHAKE(NodeStar, 0x06, L)
+        byte[] val = new byte[L];
+        shake.turboShake_xof(c, FINAL_NODE);
+        shake.shake_out(c, val, L);
+        return val;
+    }
+
+    /**
+     * Hashes several full leaf chunks of S in lockstep, so a multi-lane backend permutes all of
+     * their states together. This is sha3_update and turboShake_xof spread over the leaves.
+     *
+     * @param mdlen  the md length of the TurboSHAKE instance
+     * @param M      the message
+     * @param suffix C || length_encode(|C|)
+     * @param cv     the chaining values, CV_i is stored at i - 1
+     * @param first  the index i of the first leaf
+     * @param count  the number of leaves
+     */
+    private static void leaves(final int mdlen, final byte[] M, final byte[] suffix, final byte[][] cv,
+                               final int first, final int count) {
+        int rate = 200 - 2 * mdlen;
+        byte[][] states = new byte[count][200];
+        int offset = 0;
+        for (; offset + rate <= CHUNK_BYTES; offset += rate) {
+            for (int l = 0; l < count; l++) {
+                xor(states[l], M, suffix, (long) (first + l) * CHUNK_BYTES + offset, rate);
+            }
+            permuteAll(states);
+        }
+        // S_i || 0x0B || 00* || 80 over the last partial block
+        for (int l = 0; l < count; l++) {
+            xor(states[l], M, suffix, (long) (first + l) * CHUNK_BYTES + offset, CHUNK_BYTES - offset);
+            states[l][CHUNK_BYTES - offset] ^= LEAF;
+            states[l][rate - 1] ^= (byte) 0x80;
+        }
+        permuteAll(states);
+        for (int l = 0; l < count; l++) {
+            cv[first - 1 + l] = Arrays.copyOf(states[l], 2 * mdlen);
+        }
+        CryptoMetrics.absorbed(count * CHUNK_BYTES);
+        CryptoMetrics.squeezed(count * 2 * mdlen);
+    }
+
+    /**
+     * Permutes the states of a group of leaves on the selected backend.
+     *
+     * @param states the states
+     */
+    private static void permuteAll(final byte[][] states) {
+        KeccakBackends.current().permuteAll(states, ROUNDS);
+        CryptoMetrics.permutations(states.length);
+    }
+
+    /**
+     * XORs a range of S = M || suffix into the start of a state.
+     *
+     * @param state  the state
+     * @param M      the message
+     * @param suffix C || length_encode(|C|)
+     * @param from   the index of the first byte in S
+     * @param len    the length of the range
+     */
+    private static void xor(final byte[] state, final byte[] M, final byte[] suffix, final long from, final int len) {
+        int inM = (int) Math.max(0, Math.min(len, M.length - from));
+        for (int i = 0; i < inM; i++) {
+            state[i] ^= M[(int) from + i];
+        }
+        for (int i = inM; i < len; i++) {
+            state[i] ^= suffix[(int) (from + i - M.length)];
+        }
+    }
+
+    /**
+     * Hashes one leaf chunk of S.
+     *
+     * @param mdlen  the md length of the TurboSHAKE instance
+     * @param M      the message
+     * @param suffix C || length_encode(|C|)
+     * @param start  the index of the chunk in S
+     * @return the chaining value of the chunk, twice the md length
+     */
+    private static byte[] leaf(final int mdlen, final byte[] M, final byte[] suffix, final long start) {
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.turboShake_init(c, mdlen);
+        absorb(shake, c, M, suffix, start, start + CHUNK_BYTES);
+        byte[] cv = new byte[2 * mdlen];
+        shake.turboShake_xof(c, LEAF);
+        shake.shake_out(c, cv, cv.length);
+        return cv;
+    }
+
+    /**
+     * Absorbs the range [from, to) of S = M || suffix, clipped to the end of S.
+     *
+     * @param shake  the sponge
+     * @param c      the sha3 context
+     * @param M      the message
+     * @param suffix C || length_encode(|C|)
+     * @param from   the index of the first byte in S
+     * @param to     the index after the last byte in S
+     */
+    private static void absorb(final CSHAKE shake, final SHA3Context c, final byte[] M, final byte[] suffix,
+                               final long from, final long to) {
+        if (from < M.length) {
+            shake.sha3_update(c, M, (int) from, (int) (Math.min(to, M.length) - from));
+        }
+        long suffixFrom = Math.max(from - M.length, 0);
+        long suffixTo = Math.min(to - M.length, suffix.length);
+        if (suffixTo > suffixFrom) {
+            shake.sha3_update(c, suffix, (int) suffixFrom, (int) (suffixTo - suffixFrom));
+        }
+    }
+
+    /**
+     * TurboSHAKE of the concatenation of some byte strings.
+     *
+     * @param mdlen the md length, 16 for TurboSHAKE128 and 32 for TurboSHAKE256
+     * @param D     the domain separation byte
+     * @param L     the requested output length in bytes
+     * @param parts the byte strings
+     * @return the output
+     */
+    private static byte[] turboShake(final int mdlen, final byte D, final int L, final byte[]... parts) {
+        if (D < 0x01) { // D is in 0x01 ... 0x7F, so as a signed byte it is positive
+            throw new IllegalArgumentException("Domain separation byte must be between 0x01 and 0x7F.");
+        }
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.turboShake_init(c, mdlen);
+        for (byte[] part : parts) {
+            shake.sha3_update(c, part, part.length);
+        }
+        byte[] val = new byte[L];
+        shake.turboShake_xof(c, D);
+        shake.shake_out(c, val, L);
+        return val;
+    }
+
+    /**
+     * Encodes an integer as its big-endian bytes without leading zeros, followed by the number of those bytes.
+     * Unlike right_encode of NIST SP 800-185, 0 is encoded as the single byte 0x00.
+     *
+     * @param x the integer, at least 0
+     * @return the encoding
+     */
+    static byte[] length_encode(final long x) {
+        int n = 0;
+        for (long v = x; v > 0; v >>>= 8) {
+            n++;
+        }
+        byte[] encoded = new byte[n + 1];
+        for (int i = 0; i < n; i++) {
+            encoded[n - 1 - i] = (byte) (x >>> (8 * i));
+        }
+        encoded[n] = (byte) n;
+        return encoded;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * A Keccak-p[1600] permutation implementation. {@link CSHAKE} and the tree modes permute their
+ * states on the backend selected at startup by {@link KeccakBackends}.
+ * <br>
+ * The state is the 200-byte sponge state of {@link SHA3Context}, lane i being the little-endian
+ * 64-bit word at byte 8i. Every backend must produce the same state as {@link ReferenceKeccak}.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public interface KeccakBackend {
+    /**
+     * Gets the name of this backend, as written to the tuning profile.
+     *
+     * @return the name
+     */
+    String name();
+
+    /**
+     * Keccak-p[1600, n_r] permutation, the last n_r rounds of Keccak-f[1600].
+     *
+     * @param state  the 200-byte state
+     * @param rounds the number of rounds n_r, from 1 to 24
+     */
+    void permute(byte[] state, int rounds);
+
+    /**
+     * Gets how many independent states this backend permutes at once.
+     *
+     * @return the number of states per permutation
+     */
+    default int lanes() {
+        return 1;
+    }
+
+    /**
+     * Permutes several independent states. Backends with more than one lane permute them together.
+     *
+     * @param states the 200-byte states
+     * @param rounds the number of rounds n_r, from 1 to 24
+     */
+    default void permuteAll(byte[][] states, int rounds) {
+        for (byte[] state : states) {
+            permute(state, rounds);
+        }
+    }
+}
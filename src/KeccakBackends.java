@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selects the Keccak backend once at startup, from the {@link Tuning} profile. The vector backend is
+ * loaded reflectively, so the program still runs when it was not compiled or the
+ * {@code jdk.incubator.vector} module is not added. An unavailable backend falls back to the
+ * optimized scalar one.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class KeccakBackends {
+    /** Name of the class of the vector backend. */
+    private static final String VECTOR_CLASS = "VectorKeccak";
+    /** Name of the backend used when the chosen one is not available. */
+    private static final String FALLBACK = "optimized";
+
+    /** The backends usable on this host. */
+    private static final List<KeccakBackend> AVAILABLE = load();
+    /** The backend selected at startup. */
+    private static final KeccakBackend CURRENT = select(Tuning.current().getBackend());
+
+    /**
+     * Hidden constructor, all methods are static.
+     */
+    private KeccakBackends() {
+    }
+
+    /**
+     * Gets the backend selected at startup.
+     *
+     * @return the current backend
+     */
+    public static KeccakBackend current() {
+        return CURRENT;
+    }
+
+    /**
+     * Gets the backends usable on this host.
+     *
+     * @return the backends, the vector backend last if it is available
+     */
+    public static List<KeccakBackend> available() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Finds a usable backend by name.
+     *
+     * @param theName the name of the backend
+     * @return the backend, or null if there is no such backend on this host
+     */
+    public static KeccakBackend byName(final String theName) {
+        for (KeccakBackend backend : AVAILABLE) {
+            if (backend.name().equals(theName)) {
+                return backend;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Selects a backend, falling back to the optimized scalar backend with a warning.
+     *
+     * @param theName the name of the backend
+     * @return the backend
+     */
+    private static KeccakBackend select(final String theName) {
+        KeccakBackend backend = byName(theName);
+        if (backend == null) {
+            System.err.println("Warning! Keccak backend \"" + theName + "\" is not available, using \"" + FALLBACK + "\".");
+            backend = byName(FALLBACK);
+        }
+        return backend;
+    }
+
+    /**
+     * Loads the backends. A backend is only used if it permutes like the reference backend.
+     *
+     * @return the usable backends
+     */
+    private static List<KeccakBackend> load() {
+        List<KeccakBackend> backends = new ArrayList<>(List.of(new ReferenceKeccak(), new OptimizedKeccak()));
+        try {
+            backends.add((KeccakBackend) Class.forName(VECTOR_CLASS).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not compiled, or jdk.incubator.vector is not added: the scalar backends remain
+        }
+        backends.removeIf(backend -> !agreesWithReference(backend));
+        return List.copyOf(backends);
+    }
+
+    /**
+     * Checks a backend against the reference backend on a few states, one and several at a time.
+     *
+     * @param theBackend the backend
+     * @return true if the backend gives the same states
+     */
+    private static boolean agreesWithReference(final KeccakBackend theBackend) {
+        KeccakBackend reference = new ReferenceKeccak();
+        int count = Math.max(theBackend.lanes(), 1) + 1;
+        byte[][] expected = new byte[count][200];
+        byte[][] actual = new byte[count][200];
+        for (int s = 0; s < count; s++) {
+            for (int i = 0; i < 200; i++) {
+                expected[s][i] = (byte) (31 * s + 7 * i);
+            }
+            actual[s] = expected[s].clone();
+        }
+        try {
+            for (int rounds : new int[] {24, 12}) {
+                for (byte[] state : expected) {
+                    reference.permute(state, rounds);
+                }
+                theBackend.permuteAll(actual, rounds);
+            }
+            byte[] single = new byte[200];
+            byte[] singleExpected = new byte[200];
+            theBackend.permute(single, 24);
+            reference.permute(singleExpected, 24);
+            return Arrays.deepEquals(expected, actual) && Arrays.equals(single, singleExpected);
+        } catch (RuntimeException | LinkageError e) {
+            return false;
+        }
+    }
+}
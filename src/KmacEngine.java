@@ -0,0 +1,130 @@
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.spec.AlgorithmParameterSpec;
+import javax.crypto.MacSpi;
+
+/**
+ * KMAC256 and KMACXOF256 {@link javax.crypto.Mac} engines for the {@link CryptographyProvider}.
+ * Without a {@link KmacParameterSpec} the customization string is empty and the tag is 512 bits.
+ * The keyed sponge is built once per init, and {@link #engineReset()} rewinds it to that snapshot,
+ * so an initialized Mac can compute any number of tags without re-absorbing the key.
+ * <br>
+ * The engines compute KMAC256 and KMACXOF256 exactly as NIST SP 800-185 defines them, with big-endian
+ * lengths for keys and customization strings of every size. {@link KMAC#KMACXOF256} keeps the legacy
+ * little-endian encoding for existing cryptograms, so the two only agree for keys and customization
+ * strings shorter than 32 bytes.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public class KmacEngine extends MacSpi implements Cloneable {
+    /** Default output bit-length. */
+    private static final int DEFAULT_OUTPUT_BITS = 512;
+
+    /** Whether this is KMACXOF256 instead of KMAC256. */
+    private final boolean xof;
+    /** The sponge. */
+    private CSHAKE shake;
+    /** The working context. */
+    private SHA3Context c;
+    /** The context right after absorbing the key, never modified. */
+    private SHA3Context initial;
+    /** The output bit-length L. */
+    private int outputBits = DEFAULT_OUTPUT_BITS;
+
+    /**
+     * Constructs an engine.
+     *
+     * @param theXof true for KMACXOF256, false for KMAC256
+     */
+    private KmacEngine(final boolean theXof) {
+        xof = theXof;
+    }
+
+    @Override
+    protected int engineGetMacLength() {
+        return outputBits >>> 3;
+    }
+
+    @Override
+    protected void engineInit(final Key key, final AlgorithmParameterSpec params)
+            throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (key == null || key.getEncoded() == null) {
+            throw new InvalidKeyException("KMAC needs a key with an encoding.");
+        }
+        String S = "";
+        outputBits = DEFAULT_OUTPUT_BITS;
+        if (params instanceof KmacParameterSpec spec) {
+            S = spec.getCustomization();
+            outputBits = spec.getOutputBits();
+        } else if (params != null) {
+            throw new InvalidAlgorithmParameterException("Expected a KmacParameterSpec.");
+        }
+        shake = new CSHAKE();
+        c = new SHA3Context();
+        shake.kinit256_nist(c, key.getEncoded(), S);
+        initial = new SHA3Context(c);
+    }
+
+    @Override
+    protected void engineUpdate(final byte input) {
+        shake.sha3_update(c, new byte[] {input}, 1);
+    }
+
+    @Override
+    protected void engineUpdate(final byte[] input, final int offset, final int len) {
+        shake.sha3_update(c, input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDoFinal() {
+        // KMAC256 encodes L into the input, KMACXOF256 encodes 0
+        shake.xof(c, xof ? 0 : outputBits);
+        byte[] tag = new byte[outputBits >>> 3];
+        shake.shake_out(c, tag, tag.length);
+        engineReset();
+        return tag;
+    }
+
+    @Override
+    protected void engineReset() {
+        if (initial != null) {
+            c.copyFrom(initial);
+        }
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        KmacEngine copy = (KmacEngine) super.clone();
+        if (c != null) {
+            copy.shake = new CSHAKE(shake);
+            copy.c = new SHA3Context(c);
+        }
+        return copy;
+    }
+
+    /**
+     * KMAC256, the output length L is part of the input.
+     */
+    public static final class KMAC256 extends KmacEngine {
+        /**
+         * Constructs a KMAC256 engine.
+         */
+        public KMAC256() {
+            super(false);
+        }
+    }
+
+    /**
+     * KMACXOF256, as used everywhere else in this project.
+     */
+    public static final class KMACXOF256 extends KmacEngine {
+        /**
+         * Constructs a KMACXOF256 engine.
+         */
+        public KMACXOF256() {
+            super(true);
+        }
+    }
+}
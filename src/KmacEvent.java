@@ -0,0 +1,50 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of one KMACXOF256 invocation. Together with the customization string
+ * it tells which protocol step ran, e.g. “SKE” for the symmetric keystream or “PKA” for an EC tag.
+ * The event costs nothing when no recording is running.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+@Name("cryptography.Kmac")
+@Label("KMACXOF256")
+@Category({"Cryptography", "Keccak"})
+@Description("One KMACXOF256 invocation")
+final class KmacEvent extends jdk.jfr.Event {
+    /** The customization string S. */
+    @Label("Customization")
+    String customization;
+
+    /** Length of the data X. */
+    @Label("Input Length")
+    @DataAmount
+    long inputLength;
+
+    /** Length of the requested output L. */
+    @Label("Output Length")
+    @DataAmount
+    long outputLength;
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param theCustomization the customization string
+     * @param theInputLength   the input length in bytes
+     * @param theOutputLength  the output length in bytes
+     */
+    void complete(final String theCustomization, final long theInputLength, final long theOutputLength) {
+        end();
+        if (shouldCommit()) {
+            customization = theCustomization;
+            inputLength = theInputLength;
+            outputLength = theOutputLength;
+            commit();
+        }
+    }
+}
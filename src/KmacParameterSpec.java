@@ -0,0 +1,48 @@
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * Parameters of a KMAC256 or KMACXOF256 {@link javax.crypto.Mac} from the {@link CryptographyProvider}:
+ * the customization string S and the output length L.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class KmacParameterSpec implements AlgorithmParameterSpec {
+    /** The customization bit-string S. */
+    private final String customization;
+    /** The output bit-length L. */
+    private final int outputBits;
+
+    /**
+     * Constructs the parameters.
+     *
+     * @param theCustomization the customization bit-string S
+     * @param theOutputBits    the output bit-length L, a positive multiple of 8
+     * @throws IllegalArgumentException if the output length is not a positive multiple of 8
+     */
+    public KmacParameterSpec(final String theCustomization, final int theOutputBits) {
+        if (theOutputBits <= 0 || (theOutputBits & 7) != 0) {
+            throw new IllegalArgumentException("Implementation restriction: output length (in bits) must be a positive multiple of 8");
+        }
+        customization = theCustomization;
+        outputBits = theOutputBits;
+    }
+
+    /**
+     * Gets the customization bit-string S.
+     *
+     * @return the customization string
+     */
+    public String getCustomization() {
+        return customization;
+    }
+
+    /**
+     * Gets the output bit-length L.
+     *
+     * @return the output length in bits
+     */
+    public int getOutputBits() {
+        return outputBits;
+    }
+}
@@ -1,8 +1,15 @@
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 
@@ -21,9 +28,17 @@ public class Main {
     /**
      * Main method.
      *
-     * @param args input/output files and passphrase
+     * @param args input/output files and passphrase, or a subcommand followed by its options and files
      */
     public static void main(final String[] args) {
+        // non-interactive subcommands, see CommandLine
+        if (args.length > 0 && CommandLine.isCommand(args[0])) {
+            int status = CommandLine.run(args);
+            if (status != 0) {
+                System.exit(status);
+            }
+            return;
+        }
         // must have 3 arguments containing the input file name, output file name, and passphrase respectively
         if (args.length != 3) {
             System.out.println("Incorrect argument format. Please refer to the manuel. ");
@@ -65,10 +80,14 @@ public class Main {
             quitTerminal(out, scan, inputFile);
             return;
         }
-        if (opt != OptionSelect.DECRYPT_FILE_EC && opt != OptionSelect.DECRYPT_FILE && opt != OptionSelect.HASH_INPUT && opt != OptionSelect.MAC_INPUT) {
+        if (opt != OptionSelect.DECRYPT_FILE_EC && opt != OptionSelect.DECRYPT_FILE && opt != OptionSelect.HASH_INPUT && opt != OptionSelect.MAC_INPUT
+                && opt != OptionSelect.SIGN_FILE_PREHASHED && opt != OptionSelect.VERIFY_FILE_PREHASHED && opt != OptionSelect.DECRYPT_FILE_EC_BATCH) {
+            FileStageEvent read = new FileStageEvent();
+            read.begin();
             data = getDataFromFile(inputFile);
+            read.complete("read", opt, args[0], data.length);
         }
-        if (opt != OptionSelect.VERIFY_FILE) {
+        if (opt != OptionSelect.VERIFY_FILE && opt != OptionSelect.VERIFY_FILE_PREHASHED) {
             try {
                 out = new PrintStream(args[1]);
             } catch (FileNotFoundException e) {
@@ -78,6 +97,8 @@ public class Main {
         }
 
         // options
+        FileStageEvent process = new FileStageEvent();
+        process.begin();
         switch (opt) {
             case HASH_FILE -> {
                 // computing a cryptographic hash h of a byte array data
@@ -85,6 +106,11 @@ public class Main {
                 ByteStringUtil.printHexadecimals(KMAC.KMACXOF256("".getBytes(), data, 512, "D"), out);
                 System.out.println("Hash complete. See output file for the hash in hex.");
             }
+            case HASH_FILE_K12 -> {
+                // h <- KT128(data, “”, 256)
+                ByteStringUtil.printHexadecimals(KangarooTwelve.KT128(data, "".getBytes(), 32), out);
+                System.out.println("Hash complete. See output file for the hash in hex.");
+            }
             case HASH_INPUT -> {
                 System.out.println("Enter the data to be hashed.");
                 // change input data to be from the terminal
@@ -113,24 +139,27 @@ public class Main {
                 ByteStringUtil.printHexadecimals(KMAC.encrypt(data, passphrase), out);
                 System.out.println("Encryption Complete. See output file for the encryption.");
             }
+            case ENCRYPT_FILE_DUPLEX -> {
+                ByteStringUtil.printHexadecimals(KMAC.encryptDuplex(data, passphrase), out);
+                System.out.println("Encryption Complete. See output file for the encryption.");
+            }
             case DECRYPT_FILE -> {
                 if (!inputFile.hasNext()) {
                     System.out.println("Oh no! Decryption failed. ");
                     break;
                 }
-                data = ByteStringUtil.hexToBytes(inputFile.nextLine());
                 byte[] dec;
+                boolean t_equals_t_prime;
                 try {
-                    dec = KMAC.decrypt(data, passphrase);
+                    data = ByteStringUtil.hexToBytes(inputFile.nextLine());
+                    dec = new byte[KMAC.messageLength(data, 0, data.length)];
+                    t_equals_t_prime = KMAC.decrypt(data, 0, data.length, dec, 0, passphrase);
                 } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
                     System.out.println("Oh no! Decryption failed. Input has been tampered.");
                     break;
                 }
-                // removes the last bit because it just encodes whether t = t'
-                byte t_equals_t_prime = dec[dec.length - 1];
-                dec = Arrays.copyOf(dec, dec.length - 1);
                 // accept if and only if t = t'
-                if (t_equals_t_prime == 1) {
+                if (t_equals_t_prime) {
                     System.out.println("Decryption Complete. See output file for the decryption.");
                     out.println(new String(dec));
                 } else {
@@ -149,41 +178,53 @@ public class Main {
                 in_ec.close();
                 System.out.println("Generation Success.\nYour private key is stored in \"" + args[0] +"\".\nYour public key is stored in \"" + args[1] + "\"");
             }
-            case ENCRYPT_FILE_EC -> {
-                Scanner pkFile;
-                try {
-                    pkFile = new Scanner(new File(args[2]));
-                    if (!pkFile.hasNext()) {
-                        System.out.println("Warning! Empty public key file \"" + args[2] + "\".");
-                        break;
-                    }
-                } catch (FileNotFoundException e) {
-                    System.out.println("Sorry, cannot find public key file \"" + args[2] + "\". Please try again.");
+            case ENCRYPT_FILE_EC_DUPLEX -> {
+                EllipticCurvePoint pk = readPublicKey(args[2]);
+                if (pk == null) {
                     break;
                 }
-                pkFile.nextLine();
-                EllipticCurvePoint pk;
-                try {
-                    pk = new EllipticCurvePoint(new BigInteger(pkFile.nextLine()), new BigInteger(pkFile.nextLine()));
-                } catch (NoSuchElementException | NumberFormatException e) {
-                    System.out.println("Oh no! Public Key has been tampered.");
+                ec.encryptDuplex(data, pk, out);
+                System.out.println("Encryption Complete. See \"" + args[1] + "\" file for the cryptogram.");
+            }
+            case ENCRYPT_FILE_EC -> {
+                EllipticCurvePoint pk = readPublicKey(args[2]);
+                if (pk == null) {
                     break;
                 }
-
                 ec.encrypt(data, pk, out);
                 System.out.println("Encryption Complete. See \"" + args[1] + "\" file for the cryptogram.");
-                pkFile.close();
             }
             case DECRYPT_FILE_EC -> {
                 if (!inputFile.hasNext()) {
                     System.out.println("Oh no! Decryption failed. Empty cryptogram file \"" + args[0] + "\"");
                     break;
                 }
-                inputFile.nextLine();
+                String header = inputFile.nextLine();
+                if (header.equals(EllipticCurve.MULTI_RECIPIENT_HEADER)) {
+                    MultiRecipientCryptogram crypt;
+                    try {
+                        crypt = readMultiRecipientCryptogram(inputFile);
+                    } catch (NoSuchElementException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                        System.out.println("Oh no! Cryptogram file has been tampered.");
+                        break;
+                    }
+                    byte[] dec = ec.decrypt(crypt, passphrase);
+                    // removes the last bit because it just encodes whether t = t'
+                    byte t_equals_t_prime = dec[dec.length - 1];
+                    dec = Arrays.copyOf(dec, dec.length - 1);
+                    // accept if and only if t = t'
+                    if (t_equals_t_prime == 1) {
+                        System.out.println("Decryption Complete. See \"" + args[1] + "\" file for the decryption.");
+                        out.println(new String(dec));
+                    } else {
+                        System.out.println("Oh no! Decryption failed.");
+                    }
+                    break;
+                }
                 EllipticCurvePoint Z;
                 try {
-                    Z = new EllipticCurvePoint(new BigInteger(inputFile.nextLine()), new BigInteger(inputFile.nextLine()));
-                } catch (NoSuchElementException | NumberFormatException e) {
+                    Z = EllipticCurvePoint.of(new BigInteger(inputFile.nextLine()), new BigInteger(inputFile.nextLine()));
+                } catch (NoSuchElementException | IllegalArgumentException e) {
                     System.out.println("Oh no! Cryptogram file has been tampered.");
                     break;
                 }
@@ -201,7 +242,9 @@ public class Main {
                     System.out.println("Oh no! Cryptogram file has been tampered.");
                     break;
                 }
-                Cryptogram crypt = new Cryptogram(Z, c, t);
+                // anything but a version 2 header is read as version 1, as before there were versions
+                int version = Cryptogram.version(header) == Cryptogram.DUPLEX ? Cryptogram.DUPLEX : Cryptogram.KMAC;
+                Cryptogram crypt = new Cryptogram(Z, c, t, version);
 
                 byte[] dec = ec.decrypt(crypt, passphrase);
                 // removes the last bit because it just encodes whether t = t'
@@ -215,59 +258,96 @@ public class Main {
                     System.out.println("Oh no! Decryption failed.");
                 }
             }
+            case ENCRYPT_FILE_EC_MULTI -> {
+                // the public key files are separated by commas
+                List<EllipticCurvePoint> pks = new ArrayList<>();
+                for (String pkFileName : args[2].split(",")) {
+                    EllipticCurvePoint pk = readPublicKey(pkFileName);
+                    if (pk == null) {
+                        break;
+                    }
+                    pks.add(pk);
+                }
+                if (pks.size() != args[2].split(",").length) {
+                    break;
+                }
+
+                ec.encrypt(data, pks, out);
+                System.out.println("Encryption Complete for " + pks.size() + " recipients. See \"" + args[1] + "\" file for the cryptogram.");
+            }
             case SIGN_FILE -> {
                 ec.fileSignature(data, passphrase, out);
                 System.out.println("Signing Complete. See \"" + args[1] + "\" file for the signature.");
             }
             case VERIFY_FILE -> {
-                Scanner sigFile;
-                Scanner pkFile;
-                try {
-                    sigFile = new Scanner(new File(args[1]));
-                    if (!sigFile.hasNext()) {
-                        System.out.println("Warning! Empty signature file \"" + args[1] + "\".");
-                        break;
-                    }
-                } catch (FileNotFoundException e) {
-                    System.out.println("Sorry, cannot find signature file \"" + args[1] + "\". Please try again.");
+                Signature sig = readSignature(args[1]);
+                EllipticCurvePoint pk = sig == null ? null : readPublicKey(args[2]);
+                if (pk == null) {
                     break;
                 }
-                try {
-                    pkFile = new Scanner(new File(args[2]));
-                    if (!pkFile.hasNext()) {
-                        System.out.println("Warning! Empty public key file \"" + args[2] + "\".");
-                        break;
-                    }
-                } catch (FileNotFoundException e) {
-                    System.out.println("Sorry, cannot find public key file \"" + args[2] + "\". Please try again.");
+                if (ec.verifySignature(data, sig, pk)) {
+                    System.out.println("Signature Verified.");
+                } else {
+                    System.out.println("Rejected! Signature is not verified.");
+                }
+            }
+            case SIGN_FILE_PREHASHED -> {
+                // the input file is streamed as raw bytes and read exactly once
+                try (InputStream in = new BufferedInputStream(new FileInputStream(args[0]))) {
+                    ec.fileSignaturePrehashed(in, passphrase, out);
+                } catch (IOException e) {
+                    System.out.println("Sorry, cannot read input file \"" + args[0] + "\". Please try again.");
                     break;
                 }
-                sigFile.nextLine();
-                Signature sig;
-                try {
-                    sig = new Signature(new BigInteger(sigFile.nextLine()), new BigInteger(sigFile.nextLine()));
-                } catch (NoSuchElementException | NumberFormatException e) {
-                    System.out.println("Oh no! Signature has been tampered.");
+                System.out.println("Signing Complete. See \"" + args[1] + "\" file for the signature.");
+            }
+            case VERIFY_FILE_PREHASHED -> {
+                Signature sig = readSignature(args[1]);
+                EllipticCurvePoint pk = sig == null ? null : readPublicKey(args[2]);
+                if (pk == null) {
                     break;
                 }
-                EllipticCurvePoint pk;
-                pkFile.nextLine();
-                try {
-                    pk = new EllipticCurvePoint(new BigInteger(pkFile.nextLine()), new BigInteger(pkFile.nextLine()));
-                } catch (NoSuchElementException | NumberFormatException e) {
-                    System.out.println("Oh no! Public Key has been tampered.");
+                boolean verified;
+                try (InputStream in = new BufferedInputStream(new FileInputStream(args[0]))) {
+                    verified = ec.verifySignaturePrehashed(in, sig, pk);
+                } catch (IOException e) {
+                    System.out.println("Sorry, cannot read input file \"" + args[0] + "\". Please try again.");
                     break;
                 }
-
-                if (ec.verifySignature(data, sig, pk)) {
+                if (verified) {
                     System.out.println("Signature Verified.");
                 } else {
                     System.out.println("Rejected! Signature is not verified.");
                 }
-                pkFile.close();
-                sigFile.close();
+            }
+            case DECRYPT_FILE_EC_BATCH -> {
+                final PrintStream results = out;
+                final long[] accepted = {0};
+                long count;
+                try {
+                    count = ec.decryptAll(readCryptograms(inputFile), passphrase, Tuning.current().getThreads(), result -> {
+                        // accept if and only if t = t'
+                        if (result.isValid()) {
+                            accepted[0]++;
+                            results.println("Cryptogram " + result.getIndex() + ": " + new String(result.getPlaintext()));
+                        } else {
+                            results.println("Cryptogram " + result.getIndex() + ": Decryption failed.");
+                        }
+                    });
+                } catch (NoSuchElementException | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    System.out.println("Oh no! Cryptogram file has been tampered.");
+                    break;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    System.out.println("Oh no! Decryption was interrupted.");
+                    break;
+                }
+                System.out.println("Decryption Complete. " + accepted[0] + " of " + count + " cryptograms decrypted. See \"" + args[1] + "\" file for the decryptions.");
             }
         }
+        // the options write their output as they go, so the process stage covers the writes too
+        if (out != null) out.flush();
+        process.complete("process", opt, args[0], data == null ? 0 : data.length);
 
         quitTerminal(out, scan, inputFile);
     }
@@ -295,6 +375,13 @@ public class Main {
                 case (9)  -> { return OptionSelect.DECRYPT_FILE_EC; }
                 case (10) -> { return OptionSelect.SIGN_FILE;       }
                 case (11) -> { return OptionSelect.VERIFY_FILE;     }
+                case (12) -> { return OptionSelect.ENCRYPT_FILE_EC_MULTI; }
+                case (13) -> { return OptionSelect.SIGN_FILE_PREHASHED;   }
+                case (14) -> { return OptionSelect.VERIFY_FILE_PREHASHED; }
+                case (15) -> { return OptionSelect.DECRYPT_FILE_EC_BATCH; }
+                case (16) -> { return OptionSelect.HASH_FILE_K12;         }
+                case (17) -> { return OptionSelect.ENCRYPT_FILE_DUPLEX;   }
+                case (18) -> { return OptionSelect.ENCRYPT_FILE_EC_DUPLEX; }
                 default -> {
                     System.out.println("Illegal input. Please try again. ");
                     return OptionSelect.UNKNOWN;
@@ -320,6 +407,13 @@ public class Main {
         System.out.println("\nPart 2: Using Elliptic Curve");
         System.out.println("7) Generate a Key Pair using passphrase\n8) Encrypt the input file using public key\n9) Decrypt the input file using passphrase");
         System.out.println("10) Sign input file using passphrase\n11) Verify input file using signature and public key");
+        System.out.println("12) Encrypt the input file for several public keys (separated by commas)");
+        System.out.println("13) Sign a large input file in one pass (prehashed)\n14) Verify a large input file in one pass (prehashed)");
+        System.out.println("15) Decrypt every cryptogram in the input file using passphrase");
+        System.out.println("\nPart 3: Fast hashing (not NIST)");
+        System.out.println("16) Hash data from input file using KangarooTwelve");
+        System.out.println("\nPart 4: Single-pass encryption (duplex sponge, decrypt with 6 or 9)");
+        System.out.println("17) Encrypt the input file\n18) Encrypt the input file using public key");
     }
 
     /**
@@ -336,6 +430,115 @@ public class Main {
         if (theOut != null) theOut.close();
     }
 
+    /**
+     * Reads a public key file. Prints what went wrong if the file cannot be used.
+     *
+     * @param theFileName the public key file name
+     * @return the public key or null if it cannot be read
+     */
+    private static EllipticCurvePoint readPublicKey(final String theFileName) {
+        Scanner pkFile;
+        try {
+            pkFile = new Scanner(new File(theFileName));
+            if (!pkFile.hasNext()) {
+                System.out.println("Warning! Empty public key file \"" + theFileName + "\".");
+                return null;
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Sorry, cannot find public key file \"" + theFileName + "\". Please try again.");
+            return null;
+        }
+        try (pkFile) {
+            pkFile.nextLine();
+            return EllipticCurvePoint.of(new BigInteger(pkFile.nextLine()), new BigInteger(pkFile.nextLine()));
+        } catch (NoSuchElementException | IllegalArgumentException e) {
+            System.out.println("Oh no! Public Key \"" + theFileName + "\" has been tampered.");
+            return null;
+        }
+    }
+
+    /**
+     * Reads a signature file. Prints what went wrong if the file cannot be used.
+     *
+     * @param theFileName the signature file name
+     * @return the signature or null if it cannot be read
+     */
+    private static Signature readSignature(final String theFileName) {
+        Scanner sigFile;
+        try {
+            sigFile = new Scanner(new File(theFileName));
+            if (!sigFile.hasNext()) {
+                System.out.println("Warning! Empty signature file \"" + theFileName + "\".");
+                return null;
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println("Sorry, cannot find signature file \"" + theFileName + "\". Please try again.");
+            return null;
+        }
+        try (sigFile) {
+            sigFile.nextLine();
+            return new Signature(new BigInteger(sigFile.nextLine()), new BigInteger(sigFile.nextLine()));
+        } catch (NoSuchElementException | NumberFormatException e) {
+            System.out.println("Oh no! Signature has been tampered.");
+            return null;
+        }
+    }
+
+    /**
+     * Reads the cryptograms of a file one after another, as the iterator is advanced.
+     * Blank lines between the cryptograms are skipped.
+     *
+     * @param theFile the file of cryptograms
+     * @return the cryptograms, throwing NoSuchElementException or IllegalArgumentException
+     *         from next() if one of them cannot be parsed
+     */
+    private static Iterator<Cryptogram> readCryptograms(final Scanner theFile) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return theFile.hasNext();
+            }
+
+            @Override
+            public Cryptogram next() {
+                String header = theFile.nextLine();
+                while (header.isBlank()) {
+                    header = theFile.nextLine();
+                }
+                int version = Cryptogram.version(header);
+                if (version == 0) {
+                    throw new IllegalArgumentException("Expected a cryptogram header.");
+                }
+                EllipticCurvePoint Z = EllipticCurvePoint.of(new BigInteger(theFile.nextLine()), new BigInteger(theFile.nextLine()));
+                byte[] c = ByteStringUtil.hexToBytes(theFile.nextLine());
+                byte[] t = ByteStringUtil.hexToBytes(theFile.nextLine());
+                return new Cryptogram(Z, c, t, version);
+            }
+        };
+    }
+
+    /**
+     * Reads the rest of a multi-recipient cryptogram after its header line.
+     *
+     * @param theFile the cryptogram file
+     * @return the multi-recipient cryptogram
+     * @throws NoSuchElementException if the file ends too early
+     * @throws IllegalArgumentException if a value cannot be parsed
+     */
+    private static MultiRecipientCryptogram readMultiRecipientCryptogram(final Scanner theFile) {
+        EllipticCurvePoint Z = EllipticCurvePoint.of(new BigInteger(theFile.nextLine()), new BigInteger(theFile.nextLine()));
+        int n = Integer.parseInt(theFile.nextLine());
+        List<byte[]> wrappedKeys = new ArrayList<>();
+        List<byte[]> wrapTags = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            wrappedKeys.add(ByteStringUtil.hexToBytes(theFile.nextLine()));
+            wrapTags.add(ByteStringUtil.hexToBytes(theFile.nextLine()));
+        }
+        byte[] c = ByteStringUtil.hexToBytes(theFile.nextLine());
+        byte[] t = ByteStringUtil.hexToBytes(theFile.nextLine());
+        return new MultiRecipientCryptogram(Z, wrappedKeys, wrapTags, c, t);
+    }
+
     /**
      * Gets data as a byte string from a file.
      * <br>
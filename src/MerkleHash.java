@@ -0,0 +1,344 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+/**
+ * Merkle tree content hash on cSHAKE256 with fixed-size leaves, for large files that change a little
+ * at a time. The tree is kept in a sidecar index, so re-hashing a modified file only reads and hashes
+ * the dirty leaves and the nodes on their paths to the root.
+ * <pre>
+ * leaf i:  d_i <- cSHAKE256(m[i*B .. (i+1)*B), 256, “”, “ML”)
+ * node:    n   <- cSHAKE256(left || right, 256, “”, “MN”), a node without a right child is its left child
+ * hash:    h   <- cSHAKE256(root || |m| (8 bytes) || B (4 bytes), 512, “”, “MR”)
+ * </pre>
+ * An empty file is one empty leaf. Index file format, all integers big-endian:
+ * <pre>
+ * “MTRE” || version || 0 0 0 || B (4 bytes) || |m| (8 bytes) || the digests level by level from the
+ *        leaves up || check <- cSHAKE256(everything before, 256, “”, “MTRE”)
+ * </pre>
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class MerkleHash {
+    /** Default leaf size, 1 MiB. */
+    public static final int DEFAULT_LEAF_BYTES = 1 << 20;
+    /** Magic bytes at the start of an index file. */
+    private static final byte[] MAGIC = {'M', 'T', 'R', 'E'};
+    /** Version of the index format. */
+    private static final byte VERSION = 1;
+    /** Byte length of a digest in the tree. */
+    private static final int DIGEST_BYTES = 32;
+    /** Byte length of the index header. */
+    private static final int HEADER_BYTES = MAGIC.length + 4 + 4 + 8;
+
+    /** The leaf size B. */
+    private final int leafBytes;
+    /** The length of the file. */
+    private long length;
+    /** The digests, levels[0] holding the leaves and the last level the root, 32 bytes each. */
+    private byte[][] levels;
+
+    /**
+     * Constructs a tree of a file length with all digests zero, to be filled in.
+     *
+     * @param theLeafBytes the leaf size
+     * @param theLength    the length of the file
+     */
+    private MerkleHash(final int theLeafBytes, final long theLength) {
+        leafBytes = theLeafBytes;
+        length = theLength;
+        levels = shape(leafCount(theLength, theLeafBytes), null);
+    }
+
+    /**
+     * Hashes a whole file into a new tree, reading the leaves in parallel.
+     *
+     * @param theFile      the file
+     * @param theLeafBytes the leaf size
+     * @return the tree
+     * @throws IOException if reading the file fails
+     * @throws IllegalArgumentException if the leaf size is not positive
+     */
+    public static MerkleHash build(final Path theFile, final int theLeafBytes) throws IOException {
+        if (theLeafBytes <= 0) {
+            throw new IllegalArgumentException("Leaf size must be positive.");
+        }
+        MerkleHash tree = new MerkleHash(theLeafBytes, Files.size(theFile));
+        BitSet all = new BitSet();
+        all.set(0, tree.leafCount());
+        try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            tree.hashLeaves(in, all, false);
+        }
+        tree.rebuild(all);
+        return tree;
+    }
+
+    /**
+     * Re-hashes a modified file. Only the leaves overlapping the dirty ranges are read, together with
+     * the leaves that were added, removed or cut short by a change of length. Without dirty ranges
+     * every leaf is read and compared with the index, which still saves rebuilding the clean paths.
+     *
+     * @param theFile   the modified file
+     * @param theRanges the modified byte ranges as {offset, length}, or null to compare every leaf
+     * @return the number of dirty leaves whose paths were recomputed
+     * @throws IOException if reading the file fails
+     * @throws IllegalArgumentException if a dirty range is negative
+     */
+    public int update(final Path theFile, final long[][] theRanges) throws IOException {
+        int oldCount = leafCount();
+        long newLength = Files.size(theFile);
+        int newCount = leafCount(newLength, leafBytes);
+        length = newLength;
+        if (newCount != oldCount) {
+            levels = shape(newCount, levels);
+        }
+
+        BitSet dirty = new BitSet();
+        if (theRanges == null) {
+            dirty.set(0, newCount);
+        } else {
+            for (long[] range : theRanges) {
+                if (range.length != 2 || range[0] < 0 || range[1] < 0) {
+                    throw new IllegalArgumentException("A dirty range is an offset and a length of at least 0.");
+                }
+                if (range[1] > 0 && range[0] < newLength) {
+                    long end = Math.min(range[0] + range[1], newLength);
+                    dirty.set((int) (range[0] / leafBytes), (int) ((end - 1) / leafBytes) + 1);
+                }
+            }
+        }
+        // the old last leaf may have been partial, and every leaf from there on changed with the length
+        dirty.set(Math.max(0, Math.min(oldCount, newCount) - 1), newCount);
+
+        try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            dirty = hashLeaves(in, dirty, theRanges == null);
+        }
+        if (newCount != oldCount) {
+            // the nodes at the end of every level may have gained or lost a child
+            dirty.set(Math.min(oldCount, newCount) - 1, newCount);
+        }
+        rebuild(dirty);
+        return dirty.cardinality();
+    }
+
+    /**
+     * Gets the content hash.
+     *
+     * @return h <- cSHAKE256(root || |m| || B, 512, “”, “MR”)
+     */
+    public byte[] hash() {
+        ByteBuffer data = ByteBuffer.allocate(DIGEST_BYTES + 12);
+        data.put(levels[levels.length - 1]).putLong(length).putInt(leafBytes);
+        return cShake256(data.array(), 0, data.capacity(), 64, "MR");
+    }
+
+    /**
+     * Gets the leaf size.
+     *
+     * @return the leaf size B in bytes
+     */
+    public int getLeafBytes() {
+        return leafBytes;
+    }
+
+    /**
+     * Writes the index atomically.
+     *
+     * @param theIndex the index file
+     * @throws IOException if the index cannot be written
+     */
+    public void save(final Path theIndex) throws IOException {
+        int digests = Arrays.stream(levels).mapToInt(level -> level.length).sum();
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + digests + DIGEST_BYTES);
+        buf.put(MAGIC).put(VERSION).put(new byte[3]).putInt(leafBytes).putLong(length);
+        for (byte[] level : levels) {
+            buf.put(level);
+        }
+        buf.put(cShake256(buf.array(), 0, buf.position(), DIGEST_BYTES, "MTRE"));
+        SpongeCheckpoint.writeAtomically(theIndex, buf.array());
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param theIndex the index file
+     * @return the tree
+     * @throws IOException if the index cannot be read
+     * @throws IllegalArgumentException if the index is damaged or not an index
+     */
+    public static MerkleHash load(final Path theIndex) throws IOException {
+        byte[] bytes = Files.readAllBytes(theIndex);
+        if (bytes.length < HEADER_BYTES + 2 * DIGEST_BYTES || !Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new IllegalArgumentException("Not a Merkle index.");
+        }
+        int body = bytes.length - DIGEST_BYTES;
+        if (!Arrays.equals(cShake256(bytes, 0, body, DIGEST_BYTES, "MTRE"), 0, DIGEST_BYTES, bytes, body, bytes.length)) {
+            throw new IllegalArgumentException("Merkle index is damaged.");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes, MAGIC.length, body - MAGIC.length);
+        if (buf.get() != VERSION) {
+            throw new IllegalArgumentException("Unknown Merkle index version.");
+        }
+        buf.position(buf.position() + 3);
+        int leafBytes = buf.getInt();
+        long length = buf.getLong();
+        if (leafBytes <= 0 || length < 0) {
+            throw new IllegalArgumentException("Merkle index is damaged.");
+        }
+        MerkleHash tree = new MerkleHash(leafBytes, length);
+        for (byte[] level : tree.levels) {
+            if (buf.remaining() < level.length) {
+                throw new IllegalArgumentException("Merkle index is damaged.");
+            }
+            buf.get(level);
+        }
+        if (buf.hasRemaining()) {
+            throw new IllegalArgumentException("Merkle index is damaged.");
+        }
+        return tree;
+    }
+
+    /**
+     * Hashes leaves of the file in parallel into the tree.
+     *
+     * @param theIn      the file
+     * @param theLeaves  the leaves to hash
+     * @param theCompare true to keep only the leaves whose digest changed
+     * @return the leaves whose digest was written
+     * @throws IOException if reading the file fails
+     */
+    private BitSet hashLeaves(final FileChannel theIn, final BitSet theLeaves, final boolean theCompare) throws IOException {
+        final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(leafBytes));
+        final byte[] leaves = levels[0];
+        final BitSet changed = new BitSet();
+        try {
+            IntStream.range(0, leafCount()).filter(theLeaves::get).parallel().forEach(i -> {
+                ByteBuffer buf = buffers.get().clear();
+                long start = (long) i * leafBytes;
+                buf.limit((int) Math.min(leafBytes, length - start));
+                try {
+                    while (buf.hasRemaining()) {
+                        if (theIn.read(buf, start + buf.position()) < 0) {
+                            throw new EOFException("File shrank while hashing.");
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // d_i <- cSHAKE256(leaf, 256, “”, “ML”)
+                byte[] d = cShake256(buf.array(), 0, buf.limit(), DIGEST_BYTES, "ML");
+                if (!theCompare || !Arrays.equals(d, 0, DIGEST_BYTES, leaves, i * DIGEST_BYTES, (i + 1) * DIGEST_BYTES)) {
+                    System.arraycopy(d, 0, leaves, i * DIGEST_BYTES, DIGEST_BYTES);
+                    synchronized (changed) {
+                        changed.set(i);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return changed;
+    }
+
+    /**
+     * Recomputes the nodes above the dirty leaves, level by level up to the root.
+     *
+     * @param theDirty the dirty leaves
+     */
+    private void rebuild(final BitSet theDirty) {
+        BitSet dirty = theDirty;
+        for (int k = 0; k + 1 < levels.length; k++) {
+            byte[] children = levels[k];
+            byte[] parents = levels[k + 1];
+            BitSet next = new BitSet();
+            for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+                next.set(i >> 1);
+            }
+            for (int p = next.nextSetBit(0); p >= 0 && p < parents.length / DIGEST_BYTES; p = next.nextSetBit(p + 1)) {
+                int left = 2 * p * DIGEST_BYTES;
+                if (left + DIGEST_BYTES < children.length) {
+                    // n <- cSHAKE256(left || right, 256, “”, “MN”)
+                    System.arraycopy(cShake256(children, left, 2 * DIGEST_BYTES, DIGEST_BYTES, "MN"), 0, parents, p * DIGEST_BYTES, DIGEST_BYTES);
+                } else {
+                    System.arraycopy(children, left, parents, p * DIGEST_BYTES, DIGEST_BYTES);
+                }
+            }
+            dirty = next;
+        }
+    }
+
+    /**
+     * Gets the number of leaves.
+     *
+     * @return the number of leaves
+     */
+    private int leafCount() {
+        return levels[0].length / DIGEST_BYTES;
+    }
+
+    /**
+     * Gets the number of leaves of a file length.
+     *
+     * @param theLength    the length of the file
+     * @param theLeafBytes the leaf size
+     * @return the number of leaves, at least one
+     * @throws IllegalArgumentException if the file has too many leaves for an index
+     */
+    private static int leafCount(final long theLength, final int theLeafBytes) {
+        long count = Math.max(1, (theLength + theLeafBytes - 1) / theLeafBytes);
+        if (count > Integer.MAX_VALUE / (2 * DIGEST_BYTES)) {
+            throw new IllegalArgumentException("Too many leaves, use a larger leaf size.");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Lays out the levels of a tree, keeping the digests of an older layout where they fit.
+     *
+     * @param theLeafCount the number of leaves
+     * @param theOld       the old levels, or null
+     * @return the levels from the leaves up to the root
+     */
+    private static byte[][] shape(final int theLeafCount, final byte[][] theOld) {
+        int height = 1;
+        for (int n = theLeafCount; n > 1; n = (n + 1) / 2) {
+            height++;
+        }
+        byte[][] shaped = new byte[height][];
+        int n = theLeafCount;
+        for (int k = 0; k < height; k++, n = (n + 1) / 2) {
+            shaped[k] = theOld != null && k < theOld.length ? Arrays.copyOf(theOld[k], n * DIGEST_BYTES) : new byte[n * DIGEST_BYTES];
+        }
+        return shaped;
+    }
+
+    /**
+     * Computes cSHAKE256 of a range.
+     *
+     * @param theData   the array holding the data
+     * @param theOff    the index of the first byte
+     * @param theLen    the length of the data
+     * @param theBytes  the requested output byte-length
+     * @param S         customization bit-string
+     * @return the digest
+     */
+    private static byte[] cShake256(final byte[] theData, final int theOff, final int theLen, final int theBytes, final String S) {
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.cShake256_init(c, "", S);
+        shake.sha3_update(c, theData, theOff, theLen);
+        shake.xof(c);
+        byte[] digest = new byte[theBytes];
+        shake.shake_out(c, digest, digest.length);
+        return digest;
+    }
+}
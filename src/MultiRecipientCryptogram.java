@@ -0,0 +1,72 @@
+import java.util.List;
+
+/**
+ * Class to store the values of a multi-recipient cryptogram (Z, (w_1, t_1) ... (w_n, t_n), c, t).
+ * Every recipient gets the content key wrapped as (w_i, t_i) under their own shared secret
+ * W_i = k*V_i, while the payload (c, t) is encrypted only once under the content key.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class MultiRecipientCryptogram {
+    /** The Z as a elliptic curve point shared by all recipients. */
+    private final EllipticCurvePoint Z;
+    /** The wrapped content keys w_i, one per recipient. */
+    private final List<byte[]> wrappedKeys;
+    /** The tags t_i of the wrapped content keys, one per recipient. */
+    private final List<byte[]> wrapTags;
+    /** The c as a byte array. */
+    private final byte[] c;
+    /** The t as a byte array. */
+    private final byte[] t;
+
+    /**
+     * Constructs the multi-recipient cryptogram.
+     *
+     * @param Z           the elliptic curve point
+     * @param wrappedKeys the wrapped content keys
+     * @param wrapTags    the tags of the wrapped content keys
+     * @param c           the c byte array
+     * @param t           the t byte array
+     */
+    public MultiRecipientCryptogram(EllipticCurvePoint Z, List<byte[]> wrappedKeys, List<byte[]> wrapTags, byte[] c, byte[] t) {
+        if (wrappedKeys.size() != wrapTags.size()) {
+            throw new IllegalArgumentException("Every wrapped key needs exactly one tag.");
+        }
+        this.Z = Z;
+        this.wrappedKeys = wrappedKeys;
+        this.wrapTags = wrapTags;
+        this.c = c;
+        this.t = t;
+    }
+
+    /**
+     * Getter for Z.
+     * @return the elliptic curve point Z
+     */
+    EllipticCurvePoint getZ() { return Z; }
+
+    /**
+     * Getter for the wrapped content keys.
+     * @return the wrapped content keys w_i
+     */
+    List<byte[]> getWrappedKeys() { return wrappedKeys; }
+
+    /**
+     * Getter for the tags of the wrapped content keys.
+     * @return the tags t_i
+     */
+    List<byte[]> getWrapTags() { return wrapTags; }
+
+    /**
+     * Getter for c.
+     * @return the byte array c
+     */
+    byte[] getC() { return c; }
+
+    /**
+     * Getter for t.
+     * @return the byte array t
+     */
+    byte[] getT() { return t; }
+}
@@ -0,0 +1,155 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Optimized scalar Keccak-p[1600] backend. The 25 lanes live in local variables for the whole
+ * permutation, the rounds are unrolled over the lanes with rho and pi folded into fixed names,
+ * and the state is read and written as little-endian longs. Nothing is allocated per call.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+final class OptimizedKeccak implements KeccakBackend {
+    /** Little-endian view of the state bytes as longs. */
+    private static final VarHandle LANE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return "optimized";
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * Lane a_xy is the 64-bit word x + 5y of the state.
+     */
+    @Override
+    public void permute(final byte[] b, final int rounds) {
+        long a00 = (long) LANE.get(b, 0);
+        long a10 = (long) LANE.get(b, 8);
+        long a20 = (long) LANE.get(b, 16);
+        long a30 = (long) LANE.get(b, 24);
+        long a40 = (long) LANE.get(b, 32);
+        long a01 = (long) LANE.get(b, 40);
+        long a11 = (long) LANE.get(b, 48);
+        long a21 = (long) LANE.get(b, 56);
+        long a31 = (long) LANE.get(b, 64);
+        long a41 = (long) LANE.get(b, 72);
+        long a02 = (long) LANE.get(b, 80);
+        long a12 = (long) LANE.get(b, 88);
+        long a22 = (long) LANE.get(b, 96);
+        long a32 = (long) LANE.get(b, 104);
+        long a42 = (long) LANE.get(b, 112);
+        long a03 = (long) LANE.get(b, 120);
+        long a13 = (long) LANE.get(b, 128);
+        long a23 = (long) LANE.get(b, 136);
+        long a33 = (long) LANE.get(b, 144);
+        long a43 = (long) LANE.get(b, 152);
+        long a04 = (long) LANE.get(b, 160);
+        long a14 = (long) LANE.get(b, 168);
+        long a24 = (long) LANE.get(b, 176);
+        long a34 = (long) LANE.get(b, 184);
+        long a44 = (long) LANE.get(b, 192);
+
+        for (int r = ReferenceKeccak.ROUNDS - rounds; r < ReferenceKeccak.ROUNDS; r++) {
+            // Theta
+            long c0 = a00 ^ a01 ^ a02 ^ a03 ^ a04;
+            long c1 = a10 ^ a11 ^ a12 ^ a13 ^ a14;
+            long c2 = a20 ^ a21 ^ a22 ^ a23 ^ a24;
+            long c3 = a30 ^ a31 ^ a32 ^ a33 ^ a34;
+            long c4 = a40 ^ a41 ^ a42 ^ a43 ^ a44;
+            long d0 = c4 ^ Long.rotateLeft(c1, 1);
+            long d1 = c0 ^ Long.rotateLeft(c2, 1);
+            long d2 = c1 ^ Long.rotateLeft(c3, 1);
+            long d3 = c2 ^ Long.rotateLeft(c4, 1);
+            long d4 = c3 ^ Long.rotateLeft(c0, 1);
+
+            // Rho Pi
+            long b00 = a00 ^ d0;
+            long b10 = Long.rotateLeft(a11 ^ d1, 44);
+            long b20 = Long.rotateLeft(a22 ^ d2, 43);
+            long b30 = Long.rotateLeft(a33 ^ d3, 21);
+            long b40 = Long.rotateLeft(a44 ^ d4, 14);
+            long b01 = Long.rotateLeft(a30 ^ d3, 28);
+            long b11 = Long.rotateLeft(a41 ^ d4, 20);
+            long b21 = Long.rotateLeft(a02 ^ d0, 3);
+            long b31 = Long.rotateLeft(a13 ^ d1, 45);
+            long b41 = Long.rotateLeft(a24 ^ d2, 61);
+            long b02 = Long.rotateLeft(a10 ^ d1, 1);
+            long b12 = Long.rotateLeft(a21 ^ d2, 6);
+            long b22 = Long.rotateLeft(a32 ^ d3, 25);
+            long b32 = Long.rotateLeft(a43 ^ d4, 8);
+            long b42 = Long.rotateLeft(a04 ^ d0, 18);
+            long b03 = Long.rotateLeft(a40 ^ d4, 27);
+            long b13 = Long.rotateLeft(a01 ^ d0, 36);
+            long b23 = Long.rotateLeft(a12 ^ d1, 10);
+            long b33 = Long.rotateLeft(a23 ^ d2, 15);
+            long b43 = Long.rotateLeft(a34 ^ d3, 56);
+            long b04 = Long.rotateLeft(a20 ^ d2, 62);
+            long b14 = Long.rotateLeft(a31 ^ d3, 55);
+            long b24 = Long.rotateLeft(a42 ^ d4, 39);
+            long b34 = Long.rotateLeft(a03 ^ d0, 41);
+            long b44 = Long.rotateLeft(a14 ^ d1, 2);
+
+            // Chi
+            a00 = b00 ^ (~b10 & b20);
+            a10 = b10 ^ (~b20 & b30);
+            a20 = b20 ^ (~b30 & b40);
+            a30 = b30 ^ (~b40 & b00);
+            a40 = b40 ^ (~b00 & b10);
+            a01 = b01 ^ (~b11 & b21);
+            a11 = b11 ^ (~b21 & b31);
+            a21 = b21 ^ (~b31 & b41);
+            a31 = b31 ^ (~b41 & b01);
+            a41 = b41 ^ (~b01 & b11);
+            a02 = b02 ^ (~b12 & b22);
+            a12 = b12 ^ (~b22 & b32);
+            a22 = b22 ^ (~b32 & b42);
+            a32 = b32 ^ (~b42 & b02);
+            a42 = b42 ^ (~b02 & b12);
+            a03 = b03 ^ (~b13 & b23);
+            a13 = b13 ^ (~b23 & b33);
+            a23 = b23 ^ (~b33 & b43);
+            a33 = b33 ^ (~b43 & b03);
+            a43 = b43 ^ (~b03 & b13);
+            a04 = b04 ^ (~b14 & b24);
+            a14 = b14 ^ (~b24 & b34);
+            a24 = b24 ^ (~b34 & b44);
+            a34 = b34 ^ (~b44 & b04);
+            a44 = b44 ^ (~b04 & b14);
+
+            // Iota
+            a00 ^= ReferenceKeccak.keccakf_rndc[r];
+        }
+
+        LANE.set(b, 0, a00);
+        LANE.set(b, 8, a10);
+        LANE.set(b, 16, a20);
+        LANE.set(b, 24, a30);
+        LANE.set(b, 32, a40);
+        LANE.set(b, 40, a01);
+        LANE.set(b, 48, a11);
+        LANE.set(b, 56, a21);
+        LANE.set(b, 64, a31);
+        LANE.set(b, 72, a41);
+        LANE.set(b, 80, a02);
+        LANE.set(b, 88, a12);
+        LANE.set(b, 96, a22);
+        LANE.set(b, 104, a32);
+        LANE.set(b, 112, a42);
+        LANE.set(b, 120, a03);
+        LANE.set(b, 128, a13);
+        LANE.set(b, 136, a23);
+        LANE.set(b, 144, a33);
+        LANE.set(b, 152, a43);
+        LANE.set(b, 160, a04);
+        LANE.set(b, 168, a14);
+        LANE.set(b, 176, a24);
+        LANE.set(b, 184, a34);
+        LANE.set(b, 192, a44);
+    }
+}
@@ -13,5 +13,12 @@ public enum OptionSelect {
     DECRYPT_FILE_EC,
     SIGN_FILE,
     VERIFY_FILE,
+    ENCRYPT_FILE_EC_MULTI,
+    SIGN_FILE_PREHASHED,
+    VERIFY_FILE_PREHASHED,
+    DECRYPT_FILE_EC_BATCH,
+    HASH_FILE_K12,
+    ENCRYPT_FILE_DUPLEX,
+    ENCRYPT_FILE_EC_DUPLEX,
     UNKNOWN
 }
@@ -0,0 +1,117 @@
+/**
+ * Reference Keccak-p[1600] backend, a direct translation of the tiny_sha3 permutation.
+ * Slow but easy to check against the C code, so the other backends are tested against it.
+ *
+ * @author Markku-Juhani Saarinen (<a href="https://github.com/mjosaarinen/tiny_sha3/blob/master/sha3.c" >Their C code implementation</a>)
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+final class ReferenceKeccak implements KeccakBackend {
+    /** Round Constant. Taken from Markku-Juhani Saarinen. (line 14 in sha.c) */
+    static final long[] keccakf_rndc = {
+            0x0000000000000001L, 0x0000000000008082L, 0x800000000000808aL,
+            0x8000000080008000L, 0x000000000000808bL, 0x0000000080000001L,
+            0x8000000080008081L, 0x8000000000008009L, 0x000000000000008aL,
+            0x0000000000000088L, 0x0000000080008009L, 0x000000008000000aL,
+            0x000000008000808bL, 0x800000000000008bL, 0x8000000000008089L,
+            0x8000000000008003L, 0x8000000000008002L, 0x8000000000000080L,
+            0x000000000000800aL, 0x800000008000000aL, 0x8000000080008081L,
+            0x8000000000008080L, 0x0000000080000001L, 0x8000000080008008L
+    };
+    /** Round Constant. Taken from Markku-Juhani Saarinen. (line 24 in sha.c)*/
+    static final int[] keccakf_rotc = {
+            1,  3,  6,  10, 15, 21, 28, 36, 45, 55, 2,  14, 27, 41, 56, 8,  25, 43, 62, 18, 39, 61, 20, 44
+    };
+    /** Round Constant. Taken from Markku-Juhani Saarinen. (line 28 in sha.c)*/
+    static final int[] keccakf_piln = {
+            10, 7,  11, 17, 18, 3, 5,  16, 8,  21, 24, 4, 15, 23, 19, 13, 12, 2, 20, 14, 22, 9,  6,  1
+    };
+    /** Keccak rounds. */
+    static final int ROUNDS = 24;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return "reference";
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * Code is taken directly from Markku-Juhani Saarinen 's C code and translated to Java (line 11 in sha.c).
+     */
+    @Override
+    public void permute(byte[] b, int rounds) {
+        int i, j, r;
+        long t;
+        long[] st = new long[25];
+        long[] bc = new long[5];
+
+        // endianess conversion. this is redundant on little-endian targets
+        for (i = 0, j = 0; i < 25; i++, j += 8) {
+            st[i] = (((long)b[j    ] & 0xFFL)      ) | (((long)b[j + 1] & 0xFFL) <<  8) |
+                    (((long)b[j + 2] & 0xFFL) << 16) | (((long)b[j + 3] & 0xFFL) << 24) |
+                    (((long)b[j + 4] & 0xFFL) << 32) | (((long)b[j + 5] & 0xFFL) << 40) |
+                    (((long)b[j + 6] & 0xFFL) << 48) | (((long)b[j + 7] & 0xFFL) << 56);
+        }
+
+        for (r = ROUNDS - rounds; r < ROUNDS; r++) {
+
+            // Theta
+            for (i = 0; i < 5; i++)
+                bc[i] = st[i] ^ st[i + 5] ^ st[i + 10] ^ st[i + 15] ^ st[i + 20];
+
+            for (i = 0; i < 5; i++) {
+                t = bc[(i + 4) % 5] ^ ROTL64(bc[(i + 1) % 5], 1);
+                for (j = 0; j < 25; j += 5)
+                    st[j + i] ^= t;
+            }
+
+            // Rho Pi
+            t = st[1];
+            for (i = 0; i < 24; i++) {
+                j = keccakf_piln[i];
+                bc[0] = st[j];
+                st[j] = ROTL64(t, keccakf_rotc[i]);
+                t = bc[0];
+            }
+
+            //  Chi
+            for (j = 0; j < 25; j += 5) {
+                for (i = 0; i < 5; i++)
+                    bc[i] = st[j + i];
+                for (i = 0; i < 5; i++)
+                    st[j + i] ^= (~bc[(i + 1) % 5]) & bc[(i + 2) % 5];
+            }
+
+            //  Iota
+            st[0] ^= keccakf_rndc[r];
+        }
+
+        // endianess conversion. this is redundant on little-endian targets
+        for (i = 0, j = 0; i < 25; i++, j += 8) {
+            t = st[i];
+            b[j    ] = (byte)((t      ) & 0xFF);
+            b[j + 1] = (byte)((t >>  8) & 0xFF);
+            b[j + 2] = (byte)((t >> 16) & 0xFF);
+            b[j + 3] = (byte)((t >> 24) & 0xFF);
+            b[j + 4] = (byte)((t >> 32) & 0xFF);
+            b[j + 5] = (byte)((t >> 40) & 0xFF);
+            b[j + 6] = (byte)((t >> 48) & 0xFF);
+            b[j + 7] = (byte)((t >> 56) & 0xFF);
+        }
+    }
+
+    /**
+     * Used for the keccak algorithm. Markku-Juhani Saarinen (line 15 in sha.h).
+     *
+     * @param x the x
+     * @param y the y
+     * @return the rot
+     */
+    private static long ROTL64(long x, int y) {
+        return ((x << y) | (x >>> (64 - y)));
+    }
+}
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * KMACXOF256 of a file that survives being stopped. While hashing, a {@link SpongeCheckpoint} is
+ * saved every so many bytes, and a restarted hash seeks to the offset of the checkpoint and carries
+ * on from there without reading the start of the file again.
+ * <br>
+ * A checkpoint only resumes the same job: the same key, customization, file size and modification
+ * time. Any other checkpoint is ignored and the hash starts over.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class ResumableHash {
+    /** Read buffer size. */
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    /**
+     * Utility class.
+     */
+    private ResumableHash() {
+    }
+
+    /**
+     * Computes KMACXOF256(K, file, L, S), resuming from a checkpoint if there is one for this job.
+     * The checkpoint file is deleted once the hash is done.
+     *
+     * @param theFile       the file to hash
+     * @param K             MAC key, empty for a plain hash
+     * @param L             requested output bit-length, a multiple of 8
+     * @param S             customization bit-string
+     * @param theCheckpoint the checkpoint file
+     * @param theInterval   bytes between two checkpoints, 0 or less to never save one
+     * @return the hash
+     * @throws IOException if reading the file or writing the checkpoint fails
+     */
+    public static byte[] kmacXof256(final Path theFile, final byte[] K, final int L, final String S,
+                                    final Path theCheckpoint, final long theInterval) throws IOException {
+        if ((L & 7) != 0) {
+            throw new IllegalArgumentException("Implementation restriction: output length (in bits) must be a multiple of 8");
+        }
+        final byte[] job = job(theFile, K, S);
+        // the event covers this run, the input length is the whole file even when resumed
+        KmacEvent event = new KmacEvent();
+        event.begin();
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        long offset = 0;
+
+        SpongeCheckpoint checkpoint = resumable(theCheckpoint, job);
+        if (checkpoint != null) {
+            checkpoint.restore(shake, c);
+            offset = checkpoint.getOffset();
+        } else {
+            shake.kinit256(c, K, S);
+        }
+
+        try (FileChannel in = FileChannel.open(theFile, StandardOpenOption.READ)) {
+            in.position(offset);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            long saved = offset;
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                shake.sha3_update(c, buffer.array(), 0, n);
+                offset += n;
+                buffer.clear();
+                if (theInterval > 0 && offset - saved >= theInterval) {
+                    SpongeCheckpoint.of(shake, c, offset, job).save(theCheckpoint);
+                    saved = offset;
+                }
+            }
+        }
+
+        shake.xof(c);
+        byte[] val = new byte[L >>> 3];
+        shake.shake_out(c, val, val.length);
+        event.complete(S, offset, val.length);
+        Files.deleteIfExists(theCheckpoint);
+        return val;
+    }
+
+    /**
+     * Reads the checkpoint of a job, if there is a usable one.
+     *
+     * @param theCheckpoint the checkpoint file
+     * @param theJob        the job
+     * @return the checkpoint, or null to start from the beginning
+     */
+    private static SpongeCheckpoint resumable(final Path theCheckpoint, final byte[] theJob) {
+        if (!Files.isRegularFile(theCheckpoint)) {
+            return null;
+        }
+        try {
+            SpongeCheckpoint checkpoint = SpongeCheckpoint.load(theCheckpoint);
+            if (checkpoint.isJob(theJob)) {
+                return checkpoint;
+            }
+            System.err.println("Warning! Checkpoint \"" + theCheckpoint + "\" belongs to another job, starting over.");
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Warning! Ignoring checkpoint \"" + theCheckpoint + "\": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Identifies a job, so a checkpoint is only resumed into the same computation over the same file.
+     *
+     * @param theFile the file to hash
+     * @param K       MAC key
+     * @param S       customization bit-string
+     * @return job <- KMACXOF256(K, encode_string(S) || size || modification time, 256, “CKJ”)
+     * @throws IOException if the attributes of the file cannot be read
+     */
+    private static byte[] job(final Path theFile, final byte[] K, final String S) throws IOException {
+        byte[] encodedS = new CSHAKE().encode_string(S);
+        ByteBuffer data = ByteBuffer.allocate(encodedS.length + 16);
+        data.put(encodedS).putLong(Files.size(theFile)).putLong(Files.getLastModifiedTime(theFile).toMillis());
+        return KMAC.KMACXOF256(K, data.array(), 8 * SpongeCheckpoint.DIGEST_BYTES, "CKJ");
+    }
+}
@@ -12,6 +12,8 @@ public final class SHA3Context {
     private int rsiz;
     /** The requested length of the hash output in bits. */
     private int mdlen;
+    /** The number of Keccak-p[1600] rounds of the permutation, 24 for SHA-3 and 12 for TurboSHAKE. */
+    private int rounds;
 
     /**
      * Constructs the context for hashing.
@@ -23,6 +25,33 @@ public final class SHA3Context {
         pt = 0;
         rsiz = 0;
         mdlen = 0;
+        rounds = 24;
+    }
+
+    /**
+     * Constructs a copy of another context, for snapshots of a sponge in the middle of absorbing.
+     *
+     * @param theOther the context to copy
+     */
+    public SHA3Context(final SHA3Context theOther) {
+        b = theOther.b.clone();
+        pt = theOther.pt;
+        rsiz = theOther.rsiz;
+        mdlen = theOther.mdlen;
+        rounds = theOther.rounds;
+    }
+
+    /**
+     * Overwrites this context with another one without allocating, e.g. to rewind to a snapshot.
+     *
+     * @param theOther the context to copy
+     */
+    public void copyFrom(final SHA3Context theOther) {
+        System.arraycopy(theOther.b, 0, b, 0, b.length);
+        pt = theOther.pt;
+        rsiz = theOther.rsiz;
+        mdlen = theOther.mdlen;
+        rounds = theOther.rounds;
     }
 
     // getters
@@ -50,6 +79,22 @@ public final class SHA3Context {
         return rsiz;
     }
 
+    /**
+     * Gets the mdlen.
+     * @return mdlen
+     */
+    public int getMdlen() {
+        return mdlen;
+    }
+
+    /**
+     * Gets the rounds.
+     * @return rounds
+     */
+    public int getRounds() {
+        return rounds;
+    }
+
     // setters
 
     /**
@@ -75,4 +120,12 @@ public final class SHA3Context {
     public void setMdlen(int mdlen) {
         this.mdlen = mdlen;
     }
+
+    /**
+     * Sets the rounds.
+     * @param rounds value for rounds
+     */
+    public void setRounds(int rounds) {
+        this.rounds = rounds;
+    }
 }
@@ -0,0 +1,213 @@
+import java.math.BigInteger;
+
+/**
+ * A scalar mod r, the order of the Ed448-Goldilocks subgroup generated by G.
+ * Values are always kept fully reduced in [0, r), and products are reduced with Barrett
+ * reduction, so there is no generic division on the hot paths of keygen and signing.
+ * Scalars load from and store to fixed-width little-endian unsigned byte strings.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class Scalar {
+    /** The modulus r. */
+    private static final BigInteger R = EllipticCurve.r;
+    /** Bit length k of r. Barrett reduction works for any input below 2^(2k). */
+    private static final int K = R.bitLength();
+    /** Barrett constant mu = floor(4^k / r). */
+    private static final BigInteger MU = BigInteger.ONE.shiftLeft(2 * K).divide(R);
+    /** Byte length of the fixed-width encoding. 448 / 8 = 56 */
+    public static final int BYTES = 56;
+
+    /** The scalar 0. */
+    public static final Scalar ZERO = new Scalar(BigInteger.ZERO);
+    /** The scalar 1. */
+    public static final Scalar ONE = new Scalar(BigInteger.ONE);
+    /** The scalar 4, the cofactor of Ed448-Goldilocks. */
+    public static final Scalar FOUR = new Scalar(BigInteger.valueOf(4));
+
+    /** The value in [0, r). */
+    private final BigInteger value;
+
+    /**
+     * Constructs a scalar from an already reduced value.
+     *
+     * @param theValue the value in [0, r)
+     */
+    private Scalar(final BigInteger theValue) {
+        value = theValue;
+    }
+
+    /**
+     * Constructs a scalar from any integer by reducing it mod r.
+     *
+     * @param theValue the integer
+     * @return the integer mod r as a scalar
+     */
+    public static Scalar of(final BigInteger theValue) {
+        if (theValue.signum() < 0) {
+            // -x mod r = r - (x mod r)
+            BigInteger negated = reduce(theValue.negate());
+            return new Scalar(negated.signum() == 0 ? negated : R.subtract(negated));
+        }
+        return new Scalar(reduce(theValue));
+    }
+
+    /**
+     * Loads a scalar from a little-endian unsigned byte string and reduces it mod r.
+     *
+     * @param theBytes the byte string, at most 2 * 56 bytes
+     * @return the byte string mod r as a scalar
+     */
+    public static Scalar fromLittleEndian(final byte[] theBytes) {
+        return new Scalar(reduce(ByteStringUtil.fromLittleEndian(theBytes, 0, theBytes.length)));
+    }
+
+    /**
+     * Loads a scalar from a big-endian two's complement byte string and reduces it mod r.
+     * This is how the project specification turns KMAC outputs into scalars with new BigInteger(byte[]),
+     * so keys and signatures derived this way stay the same.
+     *
+     * @param theBytes the byte string, at most 2 * 56 bytes
+     * @return the byte string mod r as a scalar
+     */
+    public static Scalar fromTwosComplement(final byte[] theBytes) {
+        return of(new BigInteger(theBytes));
+    }
+
+    /**
+     * Adds another scalar to this scalar.
+     *
+     * @param theOther the other scalar
+     * @return this + other (mod r)
+     */
+    public Scalar add(final Scalar theOther) {
+        BigInteger sum = value.add(theOther.value);
+        return new Scalar(sum.compareTo(R) >= 0 ? sum.subtract(R) : sum);
+    }
+
+    /**
+     * Subtracts another scalar from this scalar.
+     *
+     * @param theOther the other scalar
+     * @return this - other (mod r)
+     */
+    public Scalar subtract(final Scalar theOther) {
+        BigInteger difference = value.subtract(theOther.value);
+        return new Scalar(difference.signum() < 0 ? difference.add(R) : difference);
+    }
+
+    /**
+     * Multiplies this scalar with another scalar.
+     *
+     * @param theOther the other scalar
+     * @return this * other (mod r)
+     */
+    public Scalar multiply(final Scalar theOther) {
+        return new Scalar(reduce(value.multiply(theOther.value)));
+    }
+
+    /**
+     * Tests a bit of this scalar.
+     *
+     * @param theIndex the bit index, 0 being the least significant bit
+     * @return true if the bit is 1
+     */
+    public boolean testBit(final int theIndex) {
+        return value.testBit(theIndex);
+    }
+
+    /**
+     * Extracts a window of bits of this scalar.
+     *
+     * @param theOffset the index of the least significant bit of the window
+     * @param theWidth  the width of the window in bits, at most 31
+     * @return the bits offset + width - 1 ... offset as an unsigned integer
+     */
+    public int window(final int theOffset, final int theWidth) {
+        int w = 0;
+        for (int i = theWidth - 1; i >= 0; i--) {
+            w = (w << 1) | (value.testBit(theOffset + i) ? 1 : 0);
+        }
+        return w;
+    }
+
+    /**
+     * Gets the bit length of this scalar.
+     *
+     * @return the index of the highest set bit + 1, or 0 for the zero scalar
+     */
+    public int bitLength() {
+        return value.bitLength();
+    }
+
+    /**
+     * Stores this scalar as a fixed-width little-endian unsigned byte string.
+     *
+     * @return the 56 byte encoding
+     */
+    public byte[] toLittleEndian() {
+        byte[] b = new byte[BYTES];
+        ByteStringUtil.toLittleEndian(value, b, 0, BYTES);
+        return b;
+    }
+
+    /**
+     * Getter of the value.
+     *
+     * @return the value in [0, r) as a BigInteger
+     */
+    public BigInteger toBigInteger() {
+        return value;
+    }
+
+    /**
+     * Barrett reduction of x mod r without division.
+     * q = floor( floor(x / 2^(k-1)) * mu / 2^(k+1) ) underestimates floor(x / r) by at most 2.
+     *
+     * @param theX the integer in [0, 2^(2k))
+     * @return x mod r
+     */
+    private static BigInteger reduce(final BigInteger theX) {
+        if (theX.bitLength() > 2 * K) {
+            return theX.mod(R); // out of range for Barrett, never happens for products of two scalars
+        }
+        BigInteger q = theX.shiftRight(K - 1).multiply(MU).shiftRight(K + 1);
+        BigInteger x = theX.subtract(q.multiply(R));
+        while (x.compareTo(R) >= 0) {
+            x = x.subtract(R);
+        }
+        return x;
+    }
+
+    /**
+     * Tests if another scalar is equal to this one.
+     *
+     * @param theObj the object to test for equality
+     * @return true or false for equality
+     */
+    @Override
+    public boolean equals(final Object theObj) {
+        return theObj instanceof Scalar other && value.equals(other.value);
+    }
+
+    /**
+     * Hash code of the value.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    /**
+     * Returns the value of this scalar in decimal.
+     *
+     * @return the value as a decimal string
+     */
+    @Override
+    public String toString() {
+        return value.toString();
+    }
+}
@@ -0,0 +1,47 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of one elliptic curve scalar multiplication. Fixed-base multiplications
+ * of the public generator G use the cached window table and are far cheaper than variable-base ones.
+ * The event costs nothing when no recording is running.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+@Name("cryptography.ScalarMultiplication")
+@Label("Scalar Multiplication")
+@Category({"Cryptography", "Elliptic Curve"})
+@Description("One scalar multiplication s * P on Ed448-Goldilocks")
+final class ScalarMultiplicationEvent extends jdk.jfr.Event {
+    /** Whether the base point is the public generator G. */
+    @Label("Fixed Base")
+    boolean fixedBase;
+
+    /** Bit length of the scalar s. */
+    @Label("Scalar Bit Length")
+    int scalarBits;
+
+    /** The multiplication algorithm. */
+    @Label("Algorithm")
+    String algorithm;
+
+    /**
+     * Ends the event and commits it if it is recorded.
+     *
+     * @param theFixedBase  whether the base point is G
+     * @param theScalarBits the bit length of the scalar
+     * @param theAlgorithm  the multiplication algorithm
+     */
+    void complete(final boolean theFixedBase, final int theScalarBits, final String theAlgorithm) {
+        end();
+        if (shouldCommit()) {
+            fixedBase = theFixedBase;
+            scalarBits = theScalarBits;
+            algorithm = theAlgorithm;
+            commit();
+        }
+    }
+}
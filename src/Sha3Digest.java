@@ -0,0 +1,205 @@
+import java.security.DigestException;
+import java.security.MessageDigest;
+
+/**
+ * SHA3 and (c)SHAKE message digests for the {@link CryptographyProvider}. The sponge is initialized
+ * once, and {@link #reset()} rewinds it to that snapshot, so an instance can be reused in a loop
+ * without allocating. {@link #clone()} copies a digest in the middle of absorbing, e.g. to hash a
+ * common prefix only once.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public class Sha3Digest extends MessageDigest implements Cloneable {
+    /** The sponge. */
+    private CSHAKE shake;
+    /** The working context. */
+    private SHA3Context c;
+    /** The context right after initialization, never modified. */
+    private final SHA3Context initial;
+    /** Whether the digest is SHA3 instead of an XOF. */
+    private final boolean sha3;
+    /** The digest length in bytes. */
+    private final int length;
+
+    /**
+     * Constructs a digest.
+     *
+     * @param theAlgorithm the algorithm name
+     * @param theShake     the initialized sponge
+     * @param theContext   the initialized context
+     * @param theSha3      true for SHA3 padding, false for the (c)SHAKE XOF
+     * @param theLength    the digest length in bytes
+     */
+    private Sha3Digest(final String theAlgorithm, final CSHAKE theShake, final SHA3Context theContext,
+                       final boolean theSha3, final int theLength) {
+        super(theAlgorithm);
+        shake = theShake;
+        c = theContext;
+        initial = new SHA3Context(theContext);
+        sha3 = theSha3;
+        length = theLength;
+    }
+
+    /**
+     * Constructs a digest with the state of a prototype, for the registered subclasses.
+     *
+     * @param thePrototype the freshly initialized prototype
+     */
+    private Sha3Digest(final Sha3Digest thePrototype) {
+        this(thePrototype, thePrototype.getAlgorithm());
+    }
+
+    /**
+     * Constructs a digest with the state of a prototype under another name.
+     *
+     * @param thePrototype the freshly initialized prototype
+     * @param theAlgorithm the algorithm name
+     */
+    private Sha3Digest(final Sha3Digest thePrototype, final String theAlgorithm) {
+        this(theAlgorithm, thePrototype.shake, thePrototype.c, thePrototype.sha3, thePrototype.length);
+    }
+
+    /**
+     * Constructs a customized cSHAKE256 digest, encoded exactly as NIST SP 800-185 defines it for
+     * function names and customizations of every length.
+     *
+     * @param N       function name bit-string
+     * @param S       customization bit-string
+     * @param theBits the digest length in bits, a multiple of 8
+     * @return the digest
+     * @throws IllegalArgumentException if the length is not a positive multiple of 8
+     */
+    public static Sha3Digest cShake256(final String N, final String S, final int theBits) {
+        if (theBits <= 0 || (theBits & 7) != 0) {
+            throw new IllegalArgumentException("Digest length (in bits) must be a positive multiple of 8.");
+        }
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.cShake256_init_nist(c, N, S);
+        return new Sha3Digest("cSHAKE256", shake, c, false, theBits >>> 3);
+    }
+
+    /**
+     * Constructs a SHA3 digest.
+     *
+     * @param theAlgorithm the algorithm name
+     * @param mdlen        the md length in bytes
+     * @return the digest
+     */
+    private static Sha3Digest sha3(final String theAlgorithm, final int mdlen) {
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.sha3_init(c, mdlen);
+        return new Sha3Digest(theAlgorithm, shake, c, true, mdlen);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return length;
+    }
+
+    @Override
+    protected void engineUpdate(final byte input) {
+        shake.sha3_update(c, new byte[] {input}, 1);
+    }
+
+    @Override
+    protected void engineUpdate(final byte[] input, final int offset, final int len) {
+        shake.sha3_update(c, input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        byte[] md = new byte[length];
+        finish(md, 0);
+        return md;
+    }
+
+    @Override
+    protected int engineDigest(final byte[] buf, final int offset, final int len) throws DigestException {
+        if (len < length) {
+            throw new DigestException("Output buffer is too short for " + length + " bytes.");
+        }
+        finish(buf, offset);
+        return length;
+    }
+
+    /**
+     * Pads, squeezes the digest and rewinds to the initial state.
+     *
+     * @param theOut    the output array
+     * @param theOffset the index of the first digest byte
+     */
+    private void finish(final byte[] theOut, final int theOffset) {
+        if (sha3) {
+            shake.sha3_final(c);
+        } else {
+            shake.xof(c);
+        }
+        shake.shake_out(c, theOut, theOffset, length);
+        engineReset();
+    }
+
+    @Override
+    protected void engineReset() {
+        c.copyFrom(initial);
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        Sha3Digest copy = (Sha3Digest) super.clone();
+        copy.shake = new CSHAKE(shake);
+        copy.c = new SHA3Context(c);
+        return copy;
+    }
+
+    /**
+     * SHA3-256.
+     */
+    public static final class SHA3_256 extends Sha3Digest {
+        /**
+         * Constructs a SHA3-256 digest.
+         */
+        public SHA3_256() {
+            super(sha3("SHA3-256", 32));
+        }
+    }
+
+    /**
+     * SHA3-512.
+     */
+    public static final class SHA3_512 extends Sha3Digest {
+        /**
+         * Constructs a SHA3-512 digest.
+         */
+        public SHA3_512() {
+            super(sha3("SHA3-512", 64));
+        }
+    }
+
+    /**
+     * SHAKE256 with a 512-bit digest.
+     */
+    public static final class SHAKE256 extends Sha3Digest {
+        /**
+         * Constructs a SHAKE256 digest.
+         */
+        public SHAKE256() {
+            super(cShake256("", "", 512), "SHAKE256");
+        }
+    }
+
+    /**
+     * cSHAKE256 with a 512-bit digest and empty N and S, which by definition is SHAKE256.
+     * Customized digests are made with {@link Sha3Digest#cShake256(String, String, int)}.
+     */
+    public static final class CSHAKE256 extends Sha3Digest {
+        /**
+         * Constructs a cSHAKE256 digest.
+         */
+        public CSHAKE256() {
+            super(cShake256("", "", 512));
+        }
+    }
+}
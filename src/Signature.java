@@ -7,6 +7,8 @@ import java.math.BigInteger;
  * @version 1.0.0
  */
 public final class Signature {
+    /** Byte length of h and of z in the binary encoding. 448 / 8 = 56 */
+    private static final int BYTES = 56;
     /** The h as a bigInt.*/
     private BigInteger h;
     /** The z as a bigInt.*/
@@ -33,4 +35,30 @@ public final class Signature {
      * @return z as a big int
      */
     BigInteger getZ() { return z; }
+
+    /**
+     * Encodes this signature as h || z, each a fixed-width 56 byte little-endian integer.
+     *
+     * @return the binary signature
+     */
+    public byte[] toBytes() {
+        byte[] b = new byte[2 * BYTES];
+        ByteStringUtil.toLittleEndian(h, b, 0, BYTES);
+        ByteStringUtil.toLittleEndian(z, b, BYTES, BYTES);
+        return b;
+    }
+
+    /**
+     * Decodes a signature from h || z, each a fixed-width 56 byte little-endian integer.
+     *
+     * @param theBytes the binary signature
+     * @return the signature
+     * @throws IllegalArgumentException if the signature is not 112 bytes
+     */
+    public static Signature fromBytes(final byte[] theBytes) {
+        if (theBytes.length != 2 * BYTES) {
+            throw new IllegalArgumentException("Signature must be " + 2 * BYTES + " bytes.");
+        }
+        return new Signature(ByteStringUtil.fromLittleEndian(theBytes, 0, BYTES), ByteStringUtil.fromLittleEndian(theBytes, BYTES, BYTES));
+    }
 }
@@ -0,0 +1,255 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Snapshot of a cSHAKE or KMAC computation in progress: the 200 byte state, the position in the
+ * rate, the rate, md length and rounds, the mode flags of the sponge and how many bytes of the
+ * input were absorbed. A checkpoint can be written to disk and restored into a fresh sponge,
+ * which then continues as if it had never stopped.
+ * <br>
+ * File format, all integers big-endian:
+ * <pre>
+ * “SPCK” || version || flags || rounds || 0 || pt || rsiz || mdlen (4 bytes each) || offset (8 bytes)
+ *        || job (32 bytes) || state (200 bytes) || check (32 bytes)
+ * </pre>
+ * The job identifies the computation, so a checkpoint is never resumed into a different one, and
+ * check <- cSHAKE256(everything before, 256, “”, “CKPT”) catches a damaged file.
+ * <br>
+ * The state of a KMAC has absorbed the key, so a checkpoint can compute MACs under that key and
+ * must be kept as safe as the key.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class SpongeCheckpoint {
+    /** Magic bytes at the start of a checkpoint file. */
+    private static final byte[] MAGIC = {'S', 'P', 'C', 'K'};
+    /** Version of the file format. */
+    private static final byte VERSION = 1;
+    /** Byte length of the job and of the check. */
+    static final int DIGEST_BYTES = 32;
+    /** Byte length of the sponge state. */
+    private static final int STATE_BYTES = 200;
+    /** Byte length of a checkpoint file. */
+    private static final int FILE_BYTES = MAGIC.length + 4 + 3 * 4 + 8 + DIGEST_BYTES + STATE_BYTES + DIGEST_BYTES;
+    /** Flag bit of a KMAC sponge. */
+    private static final int KMAC = 1;
+    /** Flag bit of a cSHAKE sponge. */
+    private static final int EXT = 2;
+
+    /** Copy of the context. */
+    private final SHA3Context context;
+    /** Whether the sponge finishes as KMAC. */
+    private final boolean kmac;
+    /** Whether the sponge finishes as cSHAKE. */
+    private final boolean ext;
+    /** Bytes of the input absorbed so far. */
+    private final long offset;
+    /** Identifies the computation. */
+    private final byte[] job;
+
+    /**
+     * Constructs a checkpoint.
+     *
+     * @param theContext the context, copied
+     * @param theKmac    whether the sponge finishes as KMAC
+     * @param theExt     whether the sponge finishes as cSHAKE
+     * @param theOffset  bytes of the input absorbed so far
+     * @param theJob     32 bytes identifying the computation
+     */
+    private SpongeCheckpoint(final SHA3Context theContext, final boolean theKmac, final boolean theExt,
+                             final long theOffset, final byte[] theJob) {
+        context = new SHA3Context(theContext);
+        kmac = theKmac;
+        ext = theExt;
+        offset = theOffset;
+        job = theJob.clone();
+    }
+
+    /**
+     * Takes a checkpoint of a sponge in the middle of absorbing.
+     *
+     * @param theShake   the sponge
+     * @param theContext its context
+     * @param theOffset  bytes of the input absorbed so far
+     * @param theJob     32 bytes identifying the computation
+     * @return the checkpoint
+     * @throws IllegalArgumentException if the job is not 32 bytes or the offset is negative
+     */
+    public static SpongeCheckpoint of(final CSHAKE theShake, final SHA3Context theContext, final long theOffset, final byte[] theJob) {
+        if (theJob.length != DIGEST_BYTES || theOffset < 0) {
+            throw new IllegalArgumentException("A checkpoint needs a 32 byte job and an offset of at least 0.");
+        }
+        return new SpongeCheckpoint(theContext, theShake.isKmac(), theShake.isExt(), theOffset, theJob);
+    }
+
+    /**
+     * Restores this checkpoint into a sponge, which then continues absorbing at {@link #getOffset()}.
+     *
+     * @param theShake   the sponge
+     * @param theContext its context
+     */
+    public void restore(final CSHAKE theShake, final SHA3Context theContext) {
+        theContext.copyFrom(context);
+        theShake.setMode(kmac, ext);
+    }
+
+    /**
+     * Gets how many bytes of the input were absorbed when the checkpoint was taken.
+     *
+     * @return the offset to resume reading at
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Tests if this checkpoint belongs to a computation.
+     *
+     * @param theJob the 32 bytes identifying the computation
+     * @return true if it is the job of this checkpoint
+     */
+    public boolean isJob(final byte[] theJob) {
+        return Arrays.equals(job, theJob);
+    }
+
+    /**
+     * Encodes this checkpoint in the file format.
+     *
+     * @return the checkpoint file contents
+     */
+    public byte[] toBytes() {
+        ByteBuffer buf = ByteBuffer.allocate(FILE_BYTES);
+        buf.put(MAGIC).put(VERSION).put((byte) ((kmac ? KMAC : 0) | (ext ? EXT : 0)))
+           .put((byte) context.getRounds()).put((byte) 0)
+           .putInt(context.getPt()).putInt(context.getRsiz()).putInt(context.getMdlen())
+           .putLong(offset).put(job).put(context.getB());
+        buf.put(check(buf.array(), buf.position()));
+        return buf.array();
+    }
+
+    /**
+     * Decodes a checkpoint from the file format.
+     *
+     * @param theBytes the checkpoint file contents
+     * @return the checkpoint
+     * @throws IllegalArgumentException if the contents are damaged or not a checkpoint
+     */
+    public static SpongeCheckpoint fromBytes(final byte[] theBytes) {
+        if (theBytes.length != FILE_BYTES || !Arrays.equals(theBytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new IllegalArgumentException("Not a checkpoint.");
+        }
+        int body = FILE_BYTES - DIGEST_BYTES;
+        if (!Arrays.equals(check(theBytes, body), 0, DIGEST_BYTES, theBytes, body, FILE_BYTES)) {
+            throw new IllegalArgumentException("Checkpoint is damaged.");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(theBytes, MAGIC.length, body - MAGIC.length);
+        if (buf.get() != VERSION) {
+            throw new IllegalArgumentException("Unknown checkpoint version.");
+        }
+        int flags = buf.get();
+        SHA3Context c = new SHA3Context();
+        c.setRounds(buf.get());
+        buf.get();
+        c.setPt(buf.getInt());
+        c.setRsiz(buf.getInt());
+        c.setMdlen(buf.getInt());
+        long offset = buf.getLong();
+        byte[] job = new byte[DIGEST_BYTES];
+        buf.get(job);
+        buf.get(c.getB());
+        if (c.getRsiz() <= 0 || c.getRsiz() >= STATE_BYTES || c.getPt() < 0 || c.getPt() >= c.getRsiz()
+            || c.getRounds() < 1 || c.getRounds() > 24 || offset < 0) {
+            throw new IllegalArgumentException("Checkpoint is damaged.");
+        }
+        return new SpongeCheckpoint(c, (flags & KMAC) != 0, (flags & EXT) != 0, offset, job);
+    }
+
+    /**
+     * Writes this checkpoint to disk atomically, see {@link #writeAtomically(Path, byte[])}.
+     *
+     * @param theFile the checkpoint file
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void save(final Path theFile) throws IOException {
+        writeAtomically(theFile, toBytes());
+    }
+
+    /**
+     * Writes a file atomically. It is written and flushed to a file next to its final location first
+     * and then moved over it, so a crash leaves either the old or the new file.
+     *
+     * @param theFile     the file
+     * @param theContents the new contents
+     * @throws IOException if the file cannot be written
+     */
+    static void writeAtomically(final Path theFile, final byte[] theContents) throws IOException {
+        Path dir = theFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, "atomic", ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.wrap(theContents);
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(true);
+            }
+            replace(temp, theFile);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves a finished file over its final location, atomically where the file system can.
+     *
+     * @param theTemp the finished file
+     * @param theFile the final location
+     * @throws IOException if the file cannot be moved
+     */
+    static void replace(final Path theTemp, final Path theFile) throws IOException {
+        try {
+            Files.move(theTemp, theFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(theTemp, theFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads a checkpoint from disk.
+     *
+     * @param theFile the checkpoint file
+     * @return the checkpoint
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is damaged or not a checkpoint
+     */
+    public static SpongeCheckpoint load(final Path theFile) throws IOException {
+        return fromBytes(Files.readAllBytes(theFile));
+    }
+
+    /**
+     * Computes the check of a checkpoint.
+     *
+     * @param theBytes the checkpoint file contents
+     * @param theLen   the length of everything before the check
+     * @return check <- cSHAKE256(contents, 256, “”, “CKPT”)
+     */
+    private static byte[] check(final byte[] theBytes, final int theLen) {
+        CSHAKE shake = new CSHAKE();
+        SHA3Context c = new SHA3Context();
+        shake.cShake256_init(c, "", "CKPT");
+        shake.sha3_update(c, theBytes, 0, theLen);
+        shake.xof(c);
+        byte[] digest = new byte[DIGEST_BYTES];
+        shake.shake_out(c, digest, digest.length);
+        return digest;
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe KMACXOF256 engine for concurrent callers. A {@link CSHAKE} keeps per-operation
+ * flags next to its {@link SHA3Context}, so the pair must never be shared by two threads at once.
+ * Instead of allocating a fresh pair per call, the engine lends out reusable sponges:
+ * <ul>
+ *     <li>platform threads keep one sponge in a thread-local, which never contends;</li>
+ *     <li>virtual threads are too many and too short-lived for thread-locals, so they borrow from a
+ *     bounded lock-free pool and give the sponge back when done.</li>
+ * </ul>
+ * A sponge is zeroed whenever it is given back, so no key or keyed state outlives the call that
+ * absorbed it in a thread-local or the pool.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class SpongeEngine {
+    /** Sponges kept for virtual threads, twice the worker threads so a burst rarely misses. */
+    private static final int POOL_SIZE = 2 * Tuning.current().getThreads();
+    /** The sponge of each platform thread. */
+    private static final ThreadLocal<Sponge> LOCAL = ThreadLocal.withInitial(Sponge::new);
+    /** The pool for virtual threads, an empty slot is null. */
+    private static final AtomicReferenceArray<Sponge> POOL = new AtomicReferenceArray<>(POOL_SIZE);
+
+    /**
+     * Utility class.
+     */
+    private SpongeEngine() {
+    }
+
+    /**
+     * Computes KMACXOF256, safe to call from any number of threads at once.
+     *
+     * @param K MAC key
+     * @param X data to be hashed
+     * @param L requested output bit-length, a multiple of 8
+     * @param S customization bit-string
+     * @return the desired MAC tag
+     */
+    public static byte[] kmacXof256(final byte[] K, final byte[] X, final int L, final String S) {
+        byte[] val = new byte[L >>> 3];
+        kmacXof256(K, X, 0, X.length, S, val, 0, val.length);
+        return val;
+    }
+
+    /**
+     * Computes KMACXOF256 of a range into a caller-owned range, without allocating once the
+     * calling thread has a sponge.
+     *
+     * @param K      MAC key
+     * @param X      the array holding the data to be hashed
+     * @param off    the index of the first data byte
+     * @param len    the length of the data
+     * @param S      customization bit-string
+     * @param out    the array for the output
+     * @param outOff the index of the first output byte
+     * @param outLen the requested output byte-length
+     */
+    public static void kmacXof256(final byte[] K, final byte[] X, final int off, final int len, final String S,
+                                  final byte[] out, final int outOff, final int outLen) {
+        Sponge sponge = acquire();
+        try {
+            sponge.kinit256(K, S);
+            sponge.shake.sha3_update(sponge.c, X, off, len);
+            sponge.shake.xof(sponge.c);
+            sponge.shake.shake_out(sponge.c, out, outOff, outLen);
+        } finally {
+            release(sponge);
+        }
+    }
+
+    /**
+     * Borrows a sponge for the calling thread. It must be given back with {@link #release(Sponge)}.
+     *
+     * @return a sponge nobody else is using
+     */
+    static Sponge acquire() {
+        if (Thread.currentThread().isVirtual()) {
+            // start at a slot picked by the thread, so concurrent threads rarely race for one slot
+            int start = (int) (Thread.currentThread().threadId() % POOL_SIZE);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                Sponge sponge = POOL.getAndSet((start + i) % POOL_SIZE, null);
+                if (sponge != null) {
+                    return sponge;
+                }
+            }
+            return new Sponge();
+        }
+        Sponge sponge = LOCAL.get();
+        if (sponge.inUse) {
+            // borrowed again before it was given back, e.g. from a nested call
+            return new Sponge();
+        }
+        sponge.inUse = true;
+        return sponge;
+    }
+
+    /**
+     * Gives a sponge back after {@link #acquire()}, zeroing it first. A sponge that does not fit
+     * into the pool is dropped.
+     *
+     * @param theSponge the sponge
+     */
+    static void release(final Sponge theSponge) {
+        theSponge.wipe();
+        if (Thread.currentThread().isVirtual()) {
+            int start = (int) (Thread.currentThread().threadId() % POOL_SIZE);
+            for (int i = 0; i < POOL_SIZE; i++) {
+                if (POOL.compareAndSet((start + i) % POOL_SIZE, null, theSponge)) {
+                    return;
+                }
+            }
+        } else if (theSponge == LOCAL.get()) {
+            theSponge.inUse = false;
+        }
+    }
+
+    /**
+     * A reusable sponge.
+     */
+    static final class Sponge {
+        /** The sponge. */
+        final CSHAKE shake = new CSHAKE();
+        /** The state. */
+        final SHA3Context c = new SHA3Context();
+        /** Whether the thread-local sponge is lent out. */
+        private boolean inUse;
+
+        /**
+         * Initializes KMACXOF256.
+         *
+         * @param K MAC key
+         * @param S customization bit-string
+         */
+        void kinit256(final byte[] K, final String S) {
+            shake.kinit256(c, K, S);
+        }
+
+        /**
+         * Zeroes the state and the mode, so nothing derived from the last key is left behind.
+         */
+        void wipe() {
+            Arrays.fill(c.getB(), (byte) 0);
+            c.setPt(0);
+            shake.setMode(false, false);
+        }
+    }
+}
@@ -0,0 +1,234 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Single-pass authenticated encryption on the Keccak duplex construction, in the style of SpongeWrap
+ * by Bertoni, Daemen, Peeters and Van Assche. The key is absorbed once behind a cSHAKE256 prefix, then
+ * the rate of the state is the keystream of a block and the ciphertext of that block is written back
+ * over the rate, which is the same as absorbing the plaintext. One permutation per block both encrypts
+ * and authenticates it, where the KMAC modes spend one permutation per block on the keystream and
+ * another one on the tag.
+ * <pre>
+ * init:    bytepad(encode_string(“”) || encode_string(S), 136) || bytepad(encode_string(K), 136)
+ * block i: c_i <- m_i XOR rate, rate <- c_i || frame || 0* || 80, Keccak-f[1600]
+ * tag:     t <- rate after the last block
+ * </pre>
+ * The frame byte is 01 after a block that is followed by more blocks and 02 after the last one,
+ * so a message cannot be cut short or extended without changing the tag. A key must encrypt only
+ * one message, which holds for the cryptograms since every key is derived from a fresh z or k.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class SpongeWrap {
+    /** Rate of cSHAKE256 in bytes. */
+    private static final int RATE = 136;
+    /** Largest block, leaving room in the rate for the frame byte and the final padding bit. */
+    static final int BLOCK_BYTES = RATE - 2;
+    /** Frame byte of a block that is followed by more blocks. */
+    private static final byte MORE = 0x01;
+    /** Frame byte of the last block, after which the tag is squeezed. */
+    private static final byte LAST = 0x02;
+
+    /** The sponge. */
+    private final CSHAKE shake = new CSHAKE();
+    /** The duplex state. */
+    private final SHA3Context c = new SHA3Context();
+
+    /**
+     * Keys a duplex for one message.
+     *
+     * @param theKey           the key, used for one message only
+     * @param theCustomization the customization string S that separates the uses of the mode
+     */
+    public SpongeWrap(final byte[] theKey, final String theCustomization) {
+        shake.cShake256_init(c, "", theCustomization);
+        byte[] k_encoded = shake.bytepad(shake.encode_string(theKey), RATE);
+        // both paddings fill whole blocks, so the first block starts at a fresh permutation
+        shake.sha3_update(c, k_encoded, k_encoded.length);
+    }
+
+    /**
+     * Encrypts a whole message. The ranges may be the same array at the same offset.
+     *
+     * @param in     the plaintext
+     * @param inOff  the index of the first plaintext byte
+     * @param out    the array for the ciphertext
+     * @param outOff the index of the first ciphertext byte
+     * @param len    the length of the message
+     */
+    public void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        duplex(in, inOff, out, outOff, len, false);
+    }
+
+    /**
+     * Decrypts a whole message. The ranges may be the same array at the same offset.
+     *
+     * @param in     the ciphertext
+     * @param inOff  the index of the first ciphertext byte
+     * @param out    the array for the plaintext
+     * @param outOff the index of the first plaintext byte
+     * @param len    the length of the message
+     */
+    public void decrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+        duplex(in, inOff, out, outOff, len, true);
+    }
+
+    /**
+     * Encrypts a whole message between buffers at absolute indices, leaving their positions alone.
+     * The ranges may be the same memory.
+     *
+     * @param in       the plaintext
+     * @param inIndex  the index of the first plaintext byte
+     * @param out      the buffer for the ciphertext
+     * @param outIndex the index of the first ciphertext byte
+     * @param len      the length of the message
+     */
+    public void encrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex, int len) {
+        duplex(in, inIndex, out, outIndex, len, false);
+    }
+
+    /**
+     * Decrypts a whole message between buffers at absolute indices, leaving their positions alone.
+     * The ranges may be the same memory.
+     *
+     * @param in       the ciphertext
+     * @param inIndex  the index of the first ciphertext byte
+     * @param out      the buffer for the plaintext
+     * @param outIndex the index of the first plaintext byte
+     * @param len      the length of the message
+     */
+    public void decrypt(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex, int len) {
+        duplex(in, inIndex, out, outIndex, len, true);
+    }
+
+    /**
+     * Squeezes the tag after the message has been encrypted or decrypted.
+     *
+     * @param out the array for the tag
+     * @param off the index of the first tag byte
+     * @param len the length of the tag, at most the rate of 136 bytes
+     */
+    public void tag(byte[] out, int off, int len) {
+        tagLength(len);
+        shake.shake_out(c, out, off, len);
+    }
+
+    /**
+     * Squeezes the tag into a buffer at an absolute index.
+     *
+     * @param out   the buffer for the tag
+     * @param index the index of the first tag byte
+     * @param len   the length of the tag, at most the rate of 136 bytes
+     */
+    public void tag(ByteBuffer out, int index, int len) {
+        tagLength(len);
+        shake.shake_out(c, out, index, len);
+    }
+
+    /**
+     * Squeezes the tag and compares it with a received one in constant time.
+     *
+     * @param t   the array holding the received tag
+     * @param off the index of the first tag byte
+     * @param len the length of the tag
+     * @return true if t = t'
+     */
+    public boolean verify(byte[] t, int off, int len) {
+        tagLength(len);
+        return shake.shake_verify(c, t, off, len);
+    }
+
+    /**
+     * Squeezes the tag and compares it with a received one in a buffer in constant time.
+     *
+     * @param t     the buffer holding the received tag
+     * @param index the index of the first tag byte
+     * @param len   the length of the tag
+     * @return true if t = t'
+     */
+    public boolean verify(ByteBuffer t, int index, int len) {
+        tagLength(len);
+        return shake.shake_verify(c, t, index, len);
+    }
+
+    /**
+     * Checks that a tag fits into one squeeze of the rate.
+     *
+     * @param len the length of the tag
+     * @throws IllegalArgumentException if the tag is longer than the rate
+     */
+    private static void tagLength(int len) {
+        if (len > RATE) {
+            throw new IllegalArgumentException("Tag is longer than the rate.");
+        }
+    }
+
+    /**
+     * Runs the message through the duplex, one block of at most {@link #BLOCK_BYTES} bytes per
+     * permutation. An empty message is still one (empty) last block.
+     *
+     * @param in      the input
+     * @param inOff   the index of the first input byte
+     * @param out     the array for the output
+     * @param outOff  the index of the first output byte
+     * @param len     the length of the message
+     * @param decrypt true if the input is the ciphertext
+     */
+    private void duplex(byte[] in, int inOff, byte[] out, int outOff, int len, boolean decrypt) {
+        CryptoMetrics.absorbed(len);
+        CryptoMetrics.squeezed(len);
+        byte[] b = c.getB();
+        int done = 0;
+        do {
+            int n = Math.min(BLOCK_BYTES, len - done);
+            for (int j = 0; j < n; j++) {
+                byte x = in[inOff + done + j];
+                // c_i <- m_i XOR rate, and m_i <- c_i XOR rate when decrypting
+                byte y = (byte) (x ^ b[j]);
+                out[outOff + done + j] = y;
+                // rate <- c_i, the same as rate XOR m_i
+                b[j] = decrypt ? x : y;
+            }
+            done += n;
+            b[n] ^= done == len ? LAST : MORE;
+            b[RATE - 1] ^= (byte) 0x80;
+            shake.keccak(b, c.getRounds());
+        } while (done < len);
+        c.setPt(0);
+    }
+
+    /**
+     * Runs the message through the duplex between buffers, straight on the arrays if both have one.
+     *
+     * @param in       the input
+     * @param inIndex  the index of the first input byte
+     * @param out      the buffer for the output
+     * @param outIndex the index of the first output byte
+     * @param len      the length of the message
+     * @param decrypt  true if the input is the ciphertext
+     */
+    private void duplex(ByteBuffer in, int inIndex, ByteBuffer out, int outIndex, int len, boolean decrypt) {
+        if (in.hasArray() && out.hasArray()) {
+            duplex(in.array(), in.arrayOffset() + inIndex, out.array(), out.arrayOffset() + outIndex, len, decrypt);
+            return;
+        }
+        CryptoMetrics.absorbed(len);
+        CryptoMetrics.squeezed(len);
+        byte[] b = c.getB();
+        int done = 0;
+        do {
+            int n = Math.min(BLOCK_BYTES, len - done);
+            for (int j = 0; j < n; j++) {
+                byte x = in.get(inIndex + done + j);
+                byte y = (byte) (x ^ b[j]);
+                out.put(outIndex + done + j, y);
+                b[j] = decrypt ? x : y;
+            }
+            done += n;
+            b[n] ^= done == len ? LAST : MORE;
+            b[RATE - 1] ^= (byte) 0x80;
+            shake.keccak(b, c.getRounds());
+        } while (done < len);
+        c.setPt(0);
+    }
+}
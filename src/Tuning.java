@@ -0,0 +1,186 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Implementation choices tuned for the host, as measured by the {@code bench} subcommand.
+ * The profile is a properties file loaded once at startup from {@code ~/.cryptography/tuning.properties},
+ * or from the file named by {@code -Dcrypto.tuning=<file>}. Without a profile the defaults are used.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+public final class Tuning {
+    /** System property naming the profile file. */
+    public static final String PROFILE_PROPERTY = "crypto.tuning";
+    /** Largest supported window width, so a table holds at most 256 points. */
+    public static final int MAX_WINDOW_WIDTH = 8;
+
+    /** Key of the window width of variable-base scalar multiplication. */
+    private static final String WINDOW_WIDTH = "window.width";
+    /** Key of the window width of the table of the public generator G. */
+    private static final String GENERATOR_WINDOW_WIDTH = "generator.window.width";
+    /** Key of the Keccak permutation backend. */
+    private static final String BACKEND = "keccak.backend";
+    /** Key of the number of worker threads. */
+    private static final String THREADS = "threads";
+
+    /** The profile loaded at startup. */
+    private static final Tuning CURRENT = load(path());
+
+    /** Window width of variable-base scalar multiplication. */
+    private final int windowWidth;
+    /** Window width of the table of the public generator G. */
+    private final int generatorWindowWidth;
+    /** Name of the Keccak permutation backend. */
+    private final String backend;
+    /** Number of worker threads for batch operations. */
+    private final int threads;
+
+    /**
+     * Constructs a tuning profile.
+     *
+     * @param theWindowWidth          window width of variable-base scalar multiplication
+     * @param theGeneratorWindowWidth window width of the table of the public generator G
+     * @param theBackend              name of the Keccak permutation backend
+     * @param theThreads              number of worker threads for batch operations
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    public Tuning(final int theWindowWidth, final int theGeneratorWindowWidth, final String theBackend, final int theThreads) {
+        if (theWindowWidth < 1 || theWindowWidth > MAX_WINDOW_WIDTH
+                || theGeneratorWindowWidth < 1 || theGeneratorWindowWidth > MAX_WINDOW_WIDTH) {
+            throw new IllegalArgumentException("Window widths must be between 1 and " + MAX_WINDOW_WIDTH + ".");
+        }
+        if (theThreads < 1) {
+            throw new IllegalArgumentException("Threads must be positive.");
+        }
+        windowWidth = theWindowWidth;
+        generatorWindowWidth = theGeneratorWindowWidth;
+        backend = theBackend;
+        threads = theThreads;
+    }
+
+    /**
+     * Gets the defaults used without a profile.
+     *
+     * @return the default tuning
+     */
+    public static Tuning defaults() {
+        return new Tuning(4, 4, "optimized", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Gets the profile loaded at startup.
+     *
+     * @return the current tuning
+     */
+    public static Tuning current() {
+        return CURRENT;
+    }
+
+    /**
+     * Gets the location of the profile.
+     *
+     * @return the file named by the system property, or the default file in the home directory
+     */
+    public static Path path() {
+        String file = System.getProperty(PROFILE_PROPERTY);
+        return file != null ? Paths.get(file) : Paths.get(System.getProperty("user.home"), ".cryptography", "tuning.properties");
+    }
+
+    /**
+     * Loads a profile. Missing keys keep their defaults. A profile that cannot be read or has a bad
+     * value is ignored with a warning, so a broken profile never stops the program.
+     *
+     * @param theFile the profile file
+     * @return the tuning of the profile, or the defaults
+     */
+    public static Tuning load(final Path theFile) {
+        Tuning defaults = defaults();
+        if (!Files.isRegularFile(theFile)) {
+            return defaults;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(theFile)) {
+            props.load(in);
+            return new Tuning(Integer.parseInt(props.getProperty(WINDOW_WIDTH, String.valueOf(defaults.windowWidth)).strip()),
+                              Integer.parseInt(props.getProperty(GENERATOR_WINDOW_WIDTH, String.valueOf(defaults.generatorWindowWidth)).strip()),
+                              props.getProperty(BACKEND, defaults.backend).strip(),
+                              Integer.parseInt(props.getProperty(THREADS, String.valueOf(defaults.threads)).strip()));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Warning! Ignoring tuning profile \"" + theFile + "\": " + e.getMessage());
+            return defaults;
+        }
+    }
+
+    /**
+     * Saves this profile. The file is written next to its final location first and then moved
+     * over it, so a reader never sees a half-written profile, and no temporary file is left behind
+     * if the write fails.
+     *
+     * @param theFile the profile file
+     * @throws IOException if the profile cannot be written
+     */
+    public void save(final Path theFile) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(WINDOW_WIDTH, String.valueOf(windowWidth));
+        props.setProperty(GENERATOR_WINDOW_WIDTH, String.valueOf(generatorWindowWidth));
+        props.setProperty(BACKEND, backend);
+        props.setProperty(THREADS, String.valueOf(threads));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        props.store(out, "Written by Main bench");
+        SpongeCheckpoint.writeAtomically(theFile, out.toByteArray());
+    }
+
+    /**
+     * Gets the window width of variable-base scalar multiplication.
+     *
+     * @return the window width in bits
+     */
+    public int getWindowWidth() {
+        return windowWidth;
+    }
+
+    /**
+     * Gets the window width of the table of the public generator G.
+     *
+     * @return the window width in bits, the table holding 2^width points
+     */
+    public int getGeneratorWindowWidth() {
+        return generatorWindowWidth;
+    }
+
+    /**
+     * Gets the name of the Keccak permutation backend.
+     *
+     * @return the backend name
+     */
+    public String getBackend() {
+        return backend;
+    }
+
+    /**
+     * Gets the number of worker threads for batch operations.
+     *
+     * @return the number of threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the profile as it is written to the file.
+     *
+     * @return the keys and values of the profile
+     */
+    @Override
+    public String toString() {
+        return WINDOW_WIDTH + "=" + windowWidth + "\n" + GENERATOR_WINDOW_WIDTH + "=" + generatorWindowWidth
+               + "\n" + BACKEND + "=" + backend + "\n" + THREADS + "=" + threads;
+    }
+}
@@ -0,0 +1,219 @@
+import static jdk.incubator.vector.VectorOperators.ROL;
+import static jdk.incubator.vector.VectorOperators.XOR;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Keccak-p[1600] backend on the Vector API. Lane a_xy of several independent states is held in one
+ * vector, so one permutation runs on as many states as the preferred vector has longs:
+ * 2 with SSE or NEON, 4 with AVX2 and 8 with AVX-512. A single state runs on {@link OptimizedKeccak}.
+ * <br>
+ * Needs the incubating module, both to compile and to run:
+ * {@code javac --add-modules jdk.incubator.vector} and {@code java --add-modules jdk.incubator.vector}.
+ * {@link KeccakBackends} loads this class reflectively and falls back when the module is missing.
+ *
+ * @author Bairu Li
+ * @version 1.0.0
+ */
+final class VectorKeccak implements KeccakBackend {
+    /** The preferred vector shape of this host. */
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    /** Little-endian view of the state bytes as longs. */
+    private static final VarHandle LANE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    /** Round constants. */
+    private static final long[] RNDC = ReferenceKeccak.keccakf_rndc;
+
+    /** Single states are permuted by the scalar backend. */
+    private final KeccakBackend scalar = new OptimizedKeccak();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String name() {
+        return "vector";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void permute(final byte[] b, final int rounds) {
+        scalar.permute(b, rounds);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The states are transposed into one array, lane i of state l at i * n + l, permuted
+     * {@link #lanes()} at a time, and transposed back.
+     */
+    @Override
+    public void permuteAll(final byte[][] theStates, final int rounds) {
+        int n = SPECIES.length();
+        long[] lanes = new long[25 * n];
+        for (int first = 0; first < theStates.length; first += n) {
+            int count = Math.min(n, theStates.length - first);
+            if (count == 1) {
+                scalar.permute(theStates[first], rounds);
+                continue;
+            }
+            for (int l = 0; l < n; l++) {
+                for (int i = 0; i < 25; i++) {
+                    // missing states of the last group are permuted as zeros and dropped
+                    lanes[i * n + l] = l < count ? (long) LANE.get(theStates[first + l], 8 * i) : 0;
+                }
+            }
+            permute(lanes, rounds);
+            for (int l = 0; l < count; l++) {
+                for (int i = 0; i < 25; i++) {
+                    LANE.set(theStates[first + l], 8 * i, lanes[i * n + l]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Permutes the transposed states.
+     *
+     * @param theLanes lane i of state l at i * n + l, n being the vector length
+     * @param rounds   the number of rounds
+     */
+    private static void permute(final long[] theLanes, final int rounds) {
+        int n = SPECIES.length();
+        LongVector a00 = LongVector.fromArray(SPECIES, theLanes, 0 * n);
+        LongVector a10 = LongVector.fromArray(SPECIES, theLanes, 1 * n);
+        LongVector a20 = LongVector.fromArray(SPECIES, theLanes, 2 * n);
+        LongVector a30 = LongVector.fromArray(SPECIES, theLanes, 3 * n);
+        LongVector a40 = LongVector.fromArray(SPECIES, theLanes, 4 * n);
+        LongVector a01 = LongVector.fromArray(SPECIES, theLanes, 5 * n);
+        LongVector a11 = LongVector.fromArray(SPECIES, theLanes, 6 * n);
+        LongVector a21 = LongVector.fromArray(SPECIES, theLanes, 7 * n);
+        LongVector a31 = LongVector.fromArray(SPECIES, theLanes, 8 * n);
+        LongVector a41 = LongVector.fromArray(SPECIES, theLanes, 9 * n);
+        LongVector a02 = LongVector.fromArray(SPECIES, theLanes, 10 * n);
+        LongVector a12 = LongVector.fromArray(SPECIES, theLanes, 11 * n);
+        LongVector a22 = LongVector.fromArray(SPECIES, theLanes, 12 * n);
+        LongVector a32 = LongVector.fromArray(SPECIES, theLanes, 13 * n);
+        LongVector a42 = LongVector.fromArray(SPECIES, theLanes, 14 * n);
+        LongVector a03 = LongVector.fromArray(SPECIES, theLanes, 15 * n);
+        LongVector a13 = LongVector.fromArray(SPECIES, theLanes, 16 * n);
+        LongVector a23 = LongVector.fromArray(SPECIES, theLanes, 17 * n);
+        LongVector a33 = LongVector.fromArray(SPECIES, theLanes, 18 * n);
+        LongVector a43 = LongVector.fromArray(SPECIES, theLanes, 19 * n);
+        LongVector a04 = LongVector.fromArray(SPECIES, theLanes, 20 * n);
+        LongVector a14 = LongVector.fromArray(SPECIES, theLanes, 21 * n);
+        LongVector a24 = LongVector.fromArray(SPECIES, theLanes, 22 * n);
+        LongVector a34 = LongVector.fromArray(SPECIES, theLanes, 23 * n);
+        LongVector a44 = LongVector.fromArray(SPECIES, theLanes, 24 * n);
+
+        for (int r = ReferenceKeccak.ROUNDS - rounds; r < ReferenceKeccak.ROUNDS; r++) {
+            // Theta
+            LongVector c0 = a00.lanewise(XOR, a01).lanewise(XOR, a02).lanewise(XOR, a03).lanewise(XOR, a04);
+            LongVector c1 = a10.lanewise(XOR, a11).lanewise(XOR, a12).lanewise(XOR, a13).lanewise(XOR, a14);
+            LongVector c2 = a20.lanewise(XOR, a21).lanewise(XOR, a22).lanewise(XOR, a23).lanewise(XOR, a24);
+            LongVector c3 = a30.lanewise(XOR, a31).lanewise(XOR, a32).lanewise(XOR, a33).lanewise(XOR, a34);
+            LongVector c4 = a40.lanewise(XOR, a41).lanewise(XOR, a42).lanewise(XOR, a43).lanewise(XOR, a44);
+            LongVector d0 = c4.lanewise(XOR, c1.lanewise(ROL, 1));
+            LongVector d1 = c0.lanewise(XOR, c2.lanewise(ROL, 1));
+            LongVector d2 = c1.lanewise(XOR, c3.lanewise(ROL, 1));
+            LongVector d3 = c2.lanewise(XOR, c4.lanewise(ROL, 1));
+            LongVector d4 = c3.lanewise(XOR, c0.lanewise(ROL, 1));
+
+            // Rho Pi
+            LongVector b00 = a00.lanewise(XOR, d0);
+            LongVector b10 = a11.lanewise(XOR, d1).lanewise(ROL, 44);
+            LongVector b20 = a22.lanewise(XOR, d2).lanewise(ROL, 43);
+            LongVector b30 = a33.lanewise(XOR, d3).lanewise(ROL, 21);
+            LongVector b40 = a44.lanewise(XOR, d4).lanewise(ROL, 14);
+            LongVector b01 = a30.lanewise(XOR, d3).lanewise(ROL, 28);
+            LongVector b11 = a41.lanewise(XOR, d4).lanewise(ROL, 20);
+            LongVector b21 = a02.lanewise(XOR, d0).lanewise(ROL, 3);
+            LongVector b31 = a13.lanewise(XOR, d1).lanewise(ROL, 45);
+            LongVector b41 = a24.lanewise(XOR, d2).lanewise(ROL, 61);
+            LongVector b02 = a10.lanewise(XOR, d1).lanewise(ROL, 1);
+            LongVector b12 = a21.lanewise(XOR, d2).lanewise(ROL, 6);
+            LongVector b22 = a32.lanewise(XOR, d3).lanewise(ROL, 25);
+            LongVector b32 = a43.lanewise(XOR, d4).lanewise(ROL, 8);
+            LongVector b42 = a04.lanewise(XOR, d0).lanewise(ROL, 18);
+            LongVector b03 = a40.lanewise(XOR, d4).lanewise(ROL, 27);
+            LongVector b13 = a01.lanewise(XOR, d0).lanewise(ROL, 36);
+            LongVector b23 = a12.lanewise(XOR, d1).lanewise(ROL, 10);
+            LongVector b33 = a23.lanewise(XOR, d2).lanewise(ROL, 15);
+            LongVector b43 = a34.lanewise(XOR, d3).lanewise(ROL, 56);
+            LongVector b04 = a20.lanewise(XOR, d2).lanewise(ROL, 62);
+            LongVector b14 = a31.lanewise(XOR, d3).lanewise(ROL, 55);
+            LongVector b24 = a42.lanewise(XOR, d4).lanewise(ROL, 39);
+            LongVector b34 = a03.lanewise(XOR, d0).lanewise(ROL, 41);
+            LongVector b44 = a14.lanewise(XOR, d1).lanewise(ROL, 2);
+
+            // Chi
+            a00 = b00.lanewise(XOR, b10.not().and(b20));
+            a10 = b10.lanewise(XOR, b20.not().and(b30));
+            a20 = b20.lanewise(XOR, b30.not().and(b40));
+            a30 = b30.lanewise(XOR, b40.not().and(b00));
+            a40 = b40.lanewise(XOR, b00.not().and(b10));
+            a01 = b01.lanewise(XOR, b11.not().and(b21));
+            a11 = b11.lanewise(XOR, b21.not().and(b31));
+            a21 = b21.lanewise(XOR, b31.not().and(b41));
+            a31 = b31.lanewise(XOR, b41.not().and(b01));
+            a41 = b41.lanewise(XOR, b01.not().and(b11));
+            a02 = b02.lanewise(XOR, b12.not().and(b22));
+            a12 = b12.lanewise(XOR, b22.not().and(b32));
+            a22 = b22.lanewise(XOR, b32.not().and(b42));
+            a32 = b32.lanewise(XOR, b42.not().and(b02));
+            a42 = b42.lanewise(XOR, b02.not().and(b12));
+            a03 = b03.lanewise(XOR, b13.not().and(b23));
+            a13 = b13.lanewise(XOR, b23.not().and(b33));
+            a23 = b23.lanewise(XOR, b33.not().and(b43));
+            a33 = b33.lanewise(XOR, b43.not().and(b03));
+            a43 = b43.lanewise(XOR, b03.not().and(b13));
+            a04 = b04.lanewise(XOR, b14.not().and(b24));
+            a14 = b14.lanewise(XOR, b24.not().and(b34));
+            a24 = b24.lanewise(XOR, b34.not().and(b44));
+            a34 = b34.lanewise(XOR, b44.not().and(b04));
+            a44 = b44.lanewise(XOR, b04.not().and(b14));
+
+            // Iota
+            a00 = a00.lanewise(XOR, RNDC[r]);
+        }
+
+        a00.intoArray(theLanes, 0 * n);
+        a10.intoArray(theLanes, 1 * n);
+        a20.intoArray(theLanes, 2 * n);
+        a30.intoArray(theLanes, 3 * n);
+        a40.intoArray(theLanes, 4 * n);
+        a01.intoArray(theLanes, 5 * n);
+        a11.intoArray(theLanes, 6 * n);
+        a21.intoArray(theLanes, 7 * n);
+        a31.intoArray(theLanes, 8 * n);
+        a41.intoArray(theLanes, 9 * n);
+        a02.intoArray(theLanes, 10 * n);
+        a12.intoArray(theLanes, 11 * n);
+        a22.intoArray(theLanes, 12 * n);
+        a32.intoArray(theLanes, 13 * n);
+        a42.intoArray(theLanes, 14 * n);
+        a03.intoArray(theLanes, 15 * n);
+        a13.intoArray(theLanes, 16 * n);
+        a23.intoArray(theLanes, 17 * n);
+        a33.intoArray(theLanes, 18 * n);
+        a43.intoArray(theLanes, 19 * n);
+        a04.intoArray(theLanes, 20 * n);
+        a14.intoArray(theLanes, 21 * n);
+        a24.intoArray(theLanes, 22 * n);
+        a34.intoArray(theLanes, 23 * n);
+        a44.intoArray(theLanes, 24 * n);
+    }
+}